@@ -0,0 +1,219 @@
+package com.example.fintrack;
+
+import android.content.Context;
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.annotation.NonNull;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+// Upgrades a version 1 database, written with the schema Room generated for the first release,
+// through every migration to the current version. Opening it through ExpenseDatabase runs the
+// migrations and then Room's own validation of every entity table, so a migration or
+// createTable() SQL that drifts from the entities fails here without exported schema files.
+@RunWith(AndroidJUnit4.class)
+public class MigrationTest {
+    private static final String TEST_DB = "migration-test";
+
+    private Context context;
+    private ExpenseDatabase database;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @After
+    public void tearDown() {
+        if (database != null) {
+            database.close();
+        }
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void migrateFromVersion1() {
+        createVersion1();
+
+        // Room throws here if any table differs from its entity after the migrations
+        database = ExpenseDatabase.create(context, TEST_DB, false);
+        ExpenseDao expenseDao = database.expenseDao();
+        assertEquals(5, expenseDao.getExpenseCount());
+
+        // REAL amounts rounded to minor units
+        assertEquals(1250, expenseDao.getExpenseById(1).getAmountMinor());
+        assertEquals(275, expenseDao.getExpenseById(2).getAmountMinor());
+        assertEquals(1999, expenseDao.getExpenseById(3).getAmountMinor());
+        assertEquals(10, expenseDao.getExpenseById(4).getAmountMinor());
+        assertEquals(-500, expenseDao.getExpenseById(5).getAmountMinor());
+
+        Expense lunch = expenseDao.getExpenseById(1);
+        assertEquals("Lunch", lunch.getTitle());
+        assertEquals("2024-01-15", lunch.getDate());
+        assertEquals("12:30", lunch.getTime());
+        assertEquals("Receipt attached", lunch.getNotes());
+        assertEquals("/data/receipt.jpg", lunch.getPhotoPath());
+        assertEquals(ExpenseDates.toTimestamp("2024-01-15", "12:30"), lunch.getTimestamp());
+
+        // Default names keep their seeded ids, unknown names become categories, blanks go to Other
+        Map<String, Integer> categoryIds = new HashMap<>();
+        for (Category category : database.categoryDao().getAllCategories()) {
+            categoryIds.put(category.getName(), category.getId());
+        }
+        assertEquals(9, categoryIds.size());
+        Integer gadgets = categoryIds.get("Gadgets");
+        assertNotNull(gadgets);
+        assertEquals((int) categoryIds.get("Food & Dining"), lunch.getCategoryId());
+        assertEquals((int) categoryIds.get("Transportation"), expenseDao.getExpenseById(2).getCategoryId());
+        assertEquals((int) gadgets, expenseDao.getExpenseById(3).getCategoryId());
+        assertEquals(Category.OTHER_ID, expenseDao.getExpenseById(4).getCategoryId());
+        assertEquals((int) gadgets, expenseDao.getExpenseById(5).getCategoryId());
+
+        // Rollups rebuilt from the migrated rows
+        assertEquals(0, database.verifyRollups(false));
+        assertEquals(1250 + 275 + 1999 + 10 - 500, expenseDao.getRollupTotal());
+        assertEquals(1250 + 275, expenseDao.getMonthTotal("2024-01"));
+        assertEquals(1999 + 10 - 500, expenseDao.getMonthTotal("2024-02"));
+        long gadgetTotal = 0;
+        for (DashboardSummary.CategoryTotal total : expenseDao.getCategoryTotals()) {
+            if (total.categoryId == gadgets) {
+                gadgetTotal = total.total;
+            }
+        }
+        assertEquals(1999 - 500, gadgetTotal);
+
+        // Full-text index populated and kept in sync after the table rebuilds
+        List<Expense> found = expenseDao.searchExpenses("receipt", 10);
+        assertEquals(1, found.size());
+        assertEquals(1, found.get(0).getId());
+
+        // Triggers survive the upgrade: a new row reaches the rollups
+        expenseDao.insertExpense(new Expense("Taxi", 900, "2024-02-11", "22:00",
+                categoryIds.get("Transportation"), "", ""));
+        assertEquals(0, database.verifyRollups(false));
+        assertEquals(1999 + 10 - 500 + 900, expenseDao.getMonthTotal("2024-02"));
+    }
+
+    // Budget alert columns move to budget_alerts, and budgets keep their amounts. The v10
+    // database is the v1 one taken through the earlier migrations without Room, so only
+    // MIGRATION_10_11 runs when ExpenseDatabase opens it.
+    @Test
+    public void migrateBudgetAlertsFromVersion10() {
+        createVersion1();
+        SupportSQLiteOpenHelper openHelper = openWithoutRoom();
+        SupportSQLiteDatabase db = openHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            Migration[] migrations = {
+                    ExpenseDatabase.MIGRATION_1_2, ExpenseDatabase.MIGRATION_2_3, ExpenseDatabase.MIGRATION_3_4,
+                    ExpenseDatabase.MIGRATION_4_5, ExpenseDatabase.MIGRATION_5_6, ExpenseDatabase.MIGRATION_6_7,
+                    ExpenseDatabase.MIGRATION_7_8, ExpenseDatabase.MIGRATION_8_9, ExpenseDatabase.MIGRATION_9_10};
+            for (Migration migration : migrations) {
+                migration.migrate(db);
+            }
+            db.execSQL("INSERT INTO `budgets` (`categoryId`, `amountMinor`, `alertedMonth`, `alertedPercent`) "
+                    + "SELECT `id`, 50000, '2024-02', 80 FROM `categories` WHERE `name` = 'Gadgets'");
+            db.execSQL("INSERT INTO `budgets` (`categoryId`, `amountMinor`, `alertedMonth`, `alertedPercent`) "
+                    + "VALUES (" + Category.OTHER_ID + ", 20000, NULL, 0)");
+            db.setVersion(10);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        openHelper.close();
+
+        database = ExpenseDatabase.create(context, TEST_DB, false);
+        int gadgets = -1;
+        for (Category category : database.categoryDao().getAllCategories()) {
+            if (category.getName().equals("Gadgets")) {
+                gadgets = category.getId();
+            }
+        }
+        Map<Integer, Budget.Status> statuses = new HashMap<>();
+        for (Budget.Status status : database.budgetDao().getStatuses("2024-02")) {
+            statuses.put(status.categoryId, status);
+        }
+        assertEquals(2, statuses.size());
+        assertEquals(50000, statuses.get(gadgets).amountMinor);
+        assertEquals(1999 - 500, statuses.get(gadgets).spentMinor);
+        assertEquals("2024-02", statuses.get(gadgets).alertedMonth);
+        assertEquals(80, statuses.get(gadgets).alertedPercent);
+        assertEquals(20000, statuses.get(Category.OTHER_ID).amountMinor);
+        assertNull(statuses.get(Category.OTHER_ID).alertedMonth);
+        assertEquals(0, statuses.get(Category.OTHER_ID).alertedPercent);
+
+        // A new amount starts the thresholds over
+        database.budgetDao().setBudget(gadgets, 60000);
+        for (Budget.Status status : database.budgetDao().getStatuses("2024-02")) {
+            if (status.categoryId == gadgets) {
+                assertNull(status.alertedMonth);
+            }
+        }
+    }
+
+    // The test database at whatever version it is, without Room's migrations or callbacks
+    private SupportSQLiteOpenHelper openWithoutRoom() {
+        SupportSQLiteOpenHelper.Callback callback = new SupportSQLiteOpenHelper.Callback(1) {
+            @Override
+            public void onCreate(@NonNull SupportSQLiteDatabase db) {
+            }
+
+            @Override
+            public void onUpgrade(@NonNull SupportSQLiteDatabase db, int oldVersion, int newVersion) {
+            }
+        };
+        return new FrameworkSQLiteOpenHelperFactory().create(
+                SupportSQLiteOpenHelper.Configuration.builder(context).name(TEST_DB).callback(callback).build());
+    }
+
+    // The expenses table exactly as Room created it in version 1
+    private void createVersion1() {
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(TEST_DB), null);
+        try {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `expenses` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`title` TEXT, `amount` REAL NOT NULL, `date` TEXT, `time` TEXT, `category` TEXT, "
+                    + "`notes` TEXT, `photoPath` TEXT)");
+            insertVersion1(db, "Lunch", 12.5, "2024-01-15", "12:30", "Food & Dining", "Receipt attached",
+                    "/data/receipt.jpg");
+            insertVersion1(db, "Bus", 2.75, "2024-01-20", "08:05", " Transportation ", "", "");
+            insertVersion1(db, "Headphones", 19.99, "2024-02-03", "18:00", "Gadgets", "", "");
+            insertVersion1(db, "Stamp", 0.1, "2024-02-10", "09:00", "", null, null);
+            insertVersion1(db, "Headphones refund", -5.0, "2024-02-12", "10:15", "Gadgets", "", "");
+            db.setVersion(1);
+        } finally {
+            db.close();
+        }
+    }
+
+    private static void insertVersion1(SQLiteDatabase db, String title, double amount, String date, String time,
+                                       String category, String notes, String photoPath) {
+        ContentValues values = new ContentValues();
+        values.put("title", title);
+        values.put("amount", amount);
+        values.put("date", date);
+        values.put("time", time);
+        values.put("category", category);
+        values.put("notes", notes);
+        values.put("photoPath", photoPath);
+        db.insertOrThrow("expenses", null, values);
+    }
+}
@@ -3,7 +3,6 @@ package com.example.fintrack;
 import android.app.DatePickerDialog;
 import android.app.TimePickerDialog;
 import android.content.Intent;
-import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Bundle;
 import android.provider.MediaStore;
@@ -17,8 +16,6 @@ import android.widget.Toast;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
@@ -28,13 +25,22 @@ import java.util.Locale;
 public class AddExpenseActivity extends AppCompatActivity {
     private EditText titleEditText, amountEditText, notesEditText;
     private Button dateButton, timeButton, photoButton, saveButton;
-    private AutoCompleteTextView categorySpinner;
+    private AutoCompleteTextView categorySpinner, repeatSpinner;
+    private EditText repeatEveryEditText;
+    private View repeatEveryLayout;
     private ImageView photoImageView;
+    private CategoryRegistry categoryRegistry;
     
     private String selectedDate = "";
     private String selectedTime = "";
     private String photoPath = "";
+    private Uri pendingPhotoUri;
+    // A RecurringExpense frequency, or NO_REPEAT
+    private int repeatFrequency = NO_REPEAT;
     private static final int PICK_IMAGE_REQUEST = 1;
+    private static final int NO_REPEAT = -1;
+    // Position i is frequency i - 1
+    private static final String[] REPEAT_OPTIONS = {"Does not repeat", "Daily", "Weekly", "Monthly"};
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -59,12 +65,21 @@ public class AddExpenseActivity extends AppCompatActivity {
         saveButton = findViewById(R.id.button_save);
         categorySpinner = findViewById(R.id.spinner_category);
         photoImageView = findViewById(R.id.image_view_photo);
+        repeatSpinner = findViewById(R.id.spinner_repeat);
+        repeatEveryEditText = findViewById(R.id.edit_text_repeat_every);
+        repeatEveryLayout = findViewById(R.id.layout_repeat_every);
 
         // Set up category spinner
-        String[] categories = {"Food & Dining", "Transportation", "Shopping", "Entertainment", "Healthcare", "Education", "Utilities", "Other"};
-        android.widget.ArrayAdapter<String> categoryAdapter = new android.widget.ArrayAdapter<>(this, android.R.layout.simple_dropdown_item_1line, categories);
-        categorySpinner.setAdapter(categoryAdapter);
-        categorySpinner.setText(categories[0], false); // Set first item as default
+        categoryRegistry = CategoryRegistry.getInstance(this);
+        loadCategories(this, categorySpinner, categoryRegistry);
+
+        repeatSpinner.setAdapter(new android.widget.ArrayAdapter<>(this,
+                android.R.layout.simple_dropdown_item_1line, REPEAT_OPTIONS));
+        repeatSpinner.setText(REPEAT_OPTIONS[0], false);
+        repeatSpinner.setOnItemClickListener((parent, view, position, id) -> {
+            repeatFrequency = position - 1;
+            repeatEveryLayout.setVisibility(repeatFrequency == NO_REPEAT ? View.GONE : View.VISIBLE);
+        });
 
         // Set current date and time as default
         Calendar calendar = Calendar.getInstance();
@@ -161,40 +176,20 @@ public class AddExpenseActivity extends AppCompatActivity {
         if (requestCode == PICK_IMAGE_REQUEST && resultCode == RESULT_OK && data != null) {
             Uri imageUri = data.getData();
             if (imageUri != null) {
-                try {
-                    Bitmap bitmap = MediaStore.Images.Media.getBitmap(getContentResolver(), imageUri);
-                    photoImageView.setImageBitmap(bitmap);
-                    photoImageView.setVisibility(View.VISIBLE);
-                    
-                    // Save image to internal storage
-                    photoPath = saveImageToInternalStorage(bitmap);
-                } catch (IOException e) {
-                    e.printStackTrace();
-                    Toast.makeText(this, "Error loading image", Toast.LENGTH_SHORT).show();
-                }
-            }
-        }
-    }
+                // Decoded off the main thread at the view's size
+                photoImageView.setVisibility(View.VISIBLE);
+                ReceiptImageLoader.load(photoImageView, imageUri);
 
-    private String saveImageToInternalStorage(Bitmap bitmap) {
-        String fileName = "expense_photo_" + System.currentTimeMillis() + ".jpg";
-        File file = new File(getFilesDir(), fileName);
-        
-        try {
-            FileOutputStream fos = new FileOutputStream(file);
-            bitmap.compress(Bitmap.CompressFormat.JPEG, 90, fos);
-            fos.close();
-            return file.getAbsolutePath();
-        } catch (IOException e) {
-            e.printStackTrace();
-            return "";
+                // Stored when the expense is saved, so abandoned picks leave no files behind
+                pendingPhotoUri = imageUri;
+            }
         }
     }
 
     private void saveExpense() {
         String title = titleEditText.getText().toString().trim();
         String amountStr = amountEditText.getText().toString().trim();
-        String category = categorySpinner.getText().toString();
+        String categoryName = categorySpinner.getText().toString();
         String notes = notesEditText.getText().toString().trim();
 
         if (title.isEmpty()) {
@@ -207,29 +202,125 @@ public class AddExpenseActivity extends AppCompatActivity {
             return;
         }
 
-        double amount;
+        long amountMinor;
         try {
-            amount = Double.parseDouble(amountStr);
+            amountMinor = Money.parse(amountStr);
         } catch (NumberFormatException e) {
             amountEditText.setError("Invalid amount");
             return;
         }
 
-        Expense expense = new Expense(title, amount, selectedDate, selectedTime, category, notes, photoPath);
-        
+        RecurringExpense template = null;
+        if (repeatFrequency != NO_REPEAT) {
+            int repeatEvery;
+            try {
+                repeatEvery = Integer.parseInt(repeatEveryEditText.getText().toString().trim());
+            } catch (NumberFormatException e) {
+                repeatEvery = 0;
+            }
+            if (repeatEvery < 1) {
+                repeatEveryEditText.setError("At least 1");
+                return;
+            }
+            template = newTemplate(title, amountMinor, notes, repeatEvery);
+        }
+
+        Expense expense = new Expense(title, amountMinor, selectedDate, selectedTime, Category.OTHER_ID, notes, photoPath);
+        final PhotoStore photoStore = PhotoStore.getInstance(this);
+        final Uri photoUri = pendingPhotoUri;
+        if (template == null) {
+            if (photoUri == null) {
+                addToStore(expense, categoryName, true);
+                return;
+            }
+            // The picker's read grant ends with this activity, so the photo is copied before
+            // it finishes; only the row is written after the editor has closed
+            saveButton.setEnabled(false);
+            DatabaseDispatcher.getInstance().write("storePhoto", this,
+                    () -> storePhoto(photoStore, photoUri, expense),
+                    photoSaved -> addToStore(expense, categoryName, photoSaved));
+            return;
+        }
+
         // Save to database
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                ExpenseDatabase.getInstance(AddExpenseActivity.this).expenseDao().insertExpense(expense);
-                runOnUiThread(new Runnable() {
-                    @Override
-                    public void run() {
-                        Toast.makeText(AddExpenseActivity.this, "Expense saved successfully", Toast.LENGTH_SHORT).show();
-                        finish();
+        final ExpenseDatabase database = ExpenseDatabase.getInstance(this);
+        final ExpenseDao expenseDao = database.expenseDao();
+        final RecurringScheduler scheduler = RecurringScheduler.getInstance(this);
+        final RecurringExpense recurring = template;
+        DatabaseDispatcher.getInstance().write("insertExpense", this,
+                () -> {
+                    expense.setCategoryId(categoryRegistry.getOrCreate(categoryName).getId());
+                    boolean photoSaved = storePhoto(photoStore, photoUri, expense);
+                    // This expense is occurrence 0; a back-dated series is filled in up to
+                    // today in the same transaction
+                    recurring.categoryId = expense.getCategoryId();
+                    database.runInTransaction(() -> {
+                        expenseDao.insertExpense(expense);
+                        database.recurringExpenseDao().insert(recurring);
+                        scheduler.catchUp(ExpenseDates.toEpochDay(Calendar.getInstance()));
+                    });
+                    return photoSaved;
+                },
+                photoSaved -> {
+                    Toast.makeText(AddExpenseActivity.this,
+                            photoSaved ? "Expense saved successfully" : "Expense saved, but the photo could not be stored",
+                            Toast.LENGTH_SHORT).show();
+                    finish();
+                });
+    }
+
+    // Shown in the feed right away; the store writes it and undoes it if that fails
+    private void addToStore(Expense expense, String categoryName, boolean photoSaved) {
+        ExpenseStore.getInstance(this).add(expense, categoryName);
+        Toast.makeText(this,
+                photoSaved ? "Expense saved successfully" : "Expense saved, but the photo could not be stored",
+                Toast.LENGTH_SHORT).show();
+        finish();
+    }
+
+    // Anchored on the selected date, with that first occurrence already accounted for
+    private RecurringExpense newTemplate(String title, long amountMinor, String notes, int repeatEvery) {
+        RecurringExpense template = new RecurringExpense();
+        template.title = title;
+        template.amountMinor = amountMinor;
+        template.notes = notes;
+        template.time = selectedTime;
+        template.frequency = repeatFrequency;
+        template.repeatEvery = repeatEvery;
+        template.anchorDay = ExpenseDates.toEpochDay(selectedDate);
+        template.nextIndex = 1;
+        template.nextDueDay = template.occurrenceDay(1);
+        return template;
+    }
+
+    // Fills the dropdown from the categories table. The field is editable, and a name that
+    // isn't listed is added as a new category when the expense is saved.
+    static void loadCategories(AppCompatActivity activity, AutoCompleteTextView categorySpinner,
+                               CategoryRegistry categoryRegistry) {
+        DatabaseDispatcher.getInstance().read("expenseForm.categories", activity,
+                categoryRegistry::getNames,
+                names -> {
+                    categorySpinner.setAdapter(new android.widget.ArrayAdapter<>(activity,
+                            android.R.layout.simple_dropdown_item_1line, names));
+                    if (categorySpinner.getText().length() == 0 && !names.isEmpty()) {
+                        categorySpinner.setText(names.get(0), false); // Set first item as default
                     }
                 });
-            }
-        }).start();
+    }
+
+    // Runs on the write lane while the picking activity is still alive, since its permission
+    // to read the Uri goes with it; a failed copy saves the expense without a photo
+    static boolean storePhoto(PhotoStore photoStore, Uri photoUri, Expense expense) {
+        if (photoUri == null) {
+            return true;
+        }
+        try {
+            expense.setPhotoPath(photoStore.store(photoUri));
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            expense.setPhotoPath("");
+            return false;
+        }
     }
 } 
\ No newline at end of file
@@ -0,0 +1,286 @@
+package com.example.fintrack;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+// Column-oriented copy of the expenses table: one primitive array per column, rows in id
+// order, about 20 bytes a row. Snapshots are immutable once built, so queries need no locks;
+// ExpenseAnalytics publishes a new one after each refresh. A snapshot only reads its first
+// size slots, so the builder for the next one appends into the spare capacity after them
+// instead of copying the columns. Plain Java, no Android types.
+public final class AnalyticsSnapshot {
+    // Epoch day of rows whose date couldn't be parsed; counted in totals but not in ranges
+    public static final int NO_DAY = Integer.MIN_VALUE;
+    // Category id of deleted rows still holding a slot until the next compaction
+    static final int DELETED = -1;
+
+    // Below this, splitting work across cores costs more than it saves
+    private static final int PARALLEL_THRESHOLD = 100_000;
+
+    public static final AnalyticsSnapshot EMPTY = new Builder(0).build();
+
+    private final int size;
+    private final int liveCount;
+    private final int[] ids;
+    private final int[] epochDays;
+    private final long[] amounts;
+    private final int[] categoryIds;
+    private final int maxCategoryId;
+    // Set once a builder has taken the slots past size; any later builder copies
+    private final AtomicBoolean tailTaken = new AtomicBoolean();
+
+    private AnalyticsSnapshot(int size, int liveCount, int[] ids, int[] epochDays, long[] amounts,
+                              int[] categoryIds, int maxCategoryId) {
+        this.size = size;
+        this.liveCount = liveCount;
+        this.ids = ids;
+        this.epochDays = epochDays;
+        this.amounts = amounts;
+        this.categoryIds = categoryIds;
+        this.maxCategoryId = maxCategoryId;
+    }
+
+    public int getRowCount() {
+        return liveCount;
+    }
+
+    // Minor units
+    public long getTotal() {
+        return sumBetween(Integer.MIN_VALUE, Integer.MAX_VALUE, true);
+    }
+
+    // Sum over the half-open epoch-day range [fromDay, toDay)
+    public long getTotalBetween(int fromDay, int toDay) {
+        return sumBetween(fromDay, toDay, false);
+    }
+
+    // Totals indexed by category id
+    public long[] getCategoryTotals() {
+        return categoryTotalsBetween(Integer.MIN_VALUE, Integer.MAX_VALUE, true);
+    }
+
+    public long[] getCategoryTotalsBetween(int fromDay, int toDay) {
+        return categoryTotalsBetween(fromDay, toDay, false);
+    }
+
+    // Totals per weekday, Monday first
+    public long[] getDayOfWeekTotals() {
+        return reduce(7, (from, to, totals) -> {
+            for (int i = from; i < to; i++) {
+                int day = epochDays[i];
+                if (day != NO_DAY) {
+                    // 1970-01-01 was a Thursday
+                    totals[Math.floorMod(day + 3, 7)] += amounts[i];
+                }
+            }
+        });
+    }
+
+    private long sumBetween(int fromDay, int toDay, boolean all) {
+        return reduce(1, (from, to, totals) -> {
+            long sum = 0;
+            for (int i = from; i < to; i++) {
+                int day = epochDays[i];
+                if (all || (day != NO_DAY && day >= fromDay && day < toDay)) {
+                    sum += amounts[i];
+                }
+            }
+            totals[0] += sum;
+        })[0];
+    }
+
+    private long[] categoryTotalsBetween(int fromDay, int toDay, boolean all) {
+        return reduce(maxCategoryId + 1, (from, to, totals) -> {
+            for (int i = from; i < to; i++) {
+                int day = epochDays[i];
+                int categoryId = categoryIds[i];
+                if (categoryId != DELETED && (all || (day != NO_DAY && day >= fromDay && day < toDay))) {
+                    totals[categoryId] += amounts[i];
+                }
+            }
+        });
+    }
+
+    private interface RangeReducer {
+        // Adds rows [from, to) into totals
+        void reduce(int from, int to, long[] totals);
+    }
+
+    // Runs the reducer over all rows, in per-core slices merged at the end for large snapshots.
+    // Deleted rows hold an amount of 0, so sums can include them without a check.
+    private long[] reduce(int width, RangeReducer reducer) {
+        if (size < PARALLEL_THRESHOLD) {
+            long[] totals = new long[width];
+            reducer.reduce(0, size, totals);
+            return totals;
+        }
+        int slices = Math.max(1, Runtime.getRuntime().availableProcessors());
+        int sliceSize = (size + slices - 1) / slices;
+        return IntStream.range(0, slices).parallel()
+                .mapToObj(slice -> {
+                    long[] totals = new long[width];
+                    reducer.reduce(slice * sliceSize, Math.min(size, (slice + 1) * sliceSize), totals);
+                    return totals;
+                })
+                .reduce(new long[width], (a, b) -> {
+                    long[] merged = new long[width];
+                    for (int i = 0; i < width; i++) {
+                        merged[i] = a[i] + b[i];
+                    }
+                    return merged;
+                });
+    }
+
+    // Slot access for DayTotalsIndex and ExpenseAnalytics. Slots include deleted rows, which
+    // have category DELETED and no day.
+    int getSlotCount() {
+        return size;
+    }
+
+    // Slot holding the row with this id, or -1
+    int indexOf(int id) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        return index >= 0 ? index : -1;
+    }
+
+    int getEpochDayAt(int slot) {
+        return epochDays[slot];
+    }
+
+    long getAmountAt(int slot) {
+        return amounts[slot];
+    }
+
+    int getCategoryIdAt(int slot) {
+        return categoryIds[slot];
+    }
+
+    Builder toBuilder() {
+        return new Builder(this, tailTaken.compareAndSet(false, true));
+    }
+
+    // Keeps rows sorted by id; put() on an existing id overwrites it in place
+    static final class Builder {
+        private int size;
+        private int deleted;
+        private int[] ids;
+        private int[] epochDays;
+        private long[] amounts;
+        private int[] categoryIds;
+        // Kept as rows arrive; removing a row can leave it too high, which only widens totals
+        private int maxCategoryId;
+        // False while the columns are still the source snapshot's. Appends go past its size
+        // and leave it as it was; anything that writes an existing slot copies first.
+        private boolean ownsColumns;
+
+        Builder(int capacity) {
+            capacity = Math.max(capacity, 16);
+            ids = new int[capacity];
+            epochDays = new int[capacity];
+            amounts = new long[capacity];
+            categoryIds = new int[capacity];
+            ownsColumns = true;
+        }
+
+        // Without the source's spare capacity the columns are copied straight away
+        private Builder(AnalyticsSnapshot snapshot, boolean shareTail) {
+            size = snapshot.size;
+            deleted = snapshot.size - snapshot.liveCount;
+            maxCategoryId = snapshot.maxCategoryId;
+            ids = snapshot.ids;
+            epochDays = snapshot.epochDays;
+            amounts = snapshot.amounts;
+            categoryIds = snapshot.categoryIds;
+            if (!shareTail) {
+                copyColumns(Math.max(size + size / 8, 16));
+            }
+        }
+
+        void put(int id, int epochDay, long amountMinor, int categoryId) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0) {
+                // New ids are normally the largest yet, so this is almost always an append
+                index = -index - 1;
+                ensureCapacity(size + 1);
+                if (index < size) {
+                    ownColumns();
+                    int tail = size - index;
+                    System.arraycopy(ids, index, ids, index + 1, tail);
+                    System.arraycopy(epochDays, index, epochDays, index + 1, tail);
+                    System.arraycopy(amounts, index, amounts, index + 1, tail);
+                    System.arraycopy(categoryIds, index, categoryIds, index + 1, tail);
+                }
+                size++;
+                ids[index] = id;
+            } else {
+                ownColumns();
+                if (categoryIds[index] == DELETED) {
+                    deleted--;
+                }
+            }
+            epochDays[index] = epochDay;
+            amounts[index] = amountMinor;
+            categoryIds[index] = categoryId;
+            maxCategoryId = Math.max(maxCategoryId, categoryId);
+        }
+
+        void remove(int id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0 && categoryIds[index] != DELETED) {
+                ownColumns();
+                epochDays[index] = NO_DAY;
+                amounts[index] = 0;
+                categoryIds[index] = DELETED;
+                deleted++;
+            }
+        }
+
+        AnalyticsSnapshot build() {
+            // Deleted slots are squeezed out once they are a quarter of the table
+            if (deleted > 0 && deleted >= size / 4) {
+                compact();
+            }
+            return new AnalyticsSnapshot(size, size - deleted, ids, epochDays, amounts, categoryIds, maxCategoryId);
+        }
+
+        // Also settles maxCategoryId again, since it is one pass over every row anyway
+        private void compact() {
+            ownColumns();
+            int live = 0;
+            maxCategoryId = 0;
+            for (int i = 0; i < size; i++) {
+                if (categoryIds[i] != DELETED) {
+                    ids[live] = ids[i];
+                    epochDays[live] = epochDays[i];
+                    amounts[live] = amounts[i];
+                    categoryIds[live] = categoryIds[i];
+                    maxCategoryId = Math.max(maxCategoryId, categoryIds[i]);
+                    live++;
+                }
+            }
+            size = live;
+            deleted = 0;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > ids.length) {
+                copyColumns(Math.max(capacity, ids.length + ids.length / 2));
+            }
+        }
+
+        private void ownColumns() {
+            if (!ownsColumns) {
+                copyColumns(Math.max(ids.length, 16));
+            }
+        }
+
+        private void copyColumns(int capacity) {
+            ids = Arrays.copyOf(ids, capacity);
+            epochDays = Arrays.copyOf(epochDays, capacity);
+            amounts = Arrays.copyOf(amounts, capacity);
+            categoryIds = Arrays.copyOf(categoryIds, capacity);
+            ownsColumns = true;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.fintrack;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.PrimaryKey;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+// A monthly spending limit for one category. Spending itself isn't stored here: the
+// category_month_rollups row for the month is kept current by triggers on every write, so
+// BudgetMonitor only compares the two. What it has already notified lives in budget_alerts,
+// so recording an alert doesn't invalidate observers of this table.
+@Entity(tableName = "budgets",
+        foreignKeys = {
+                @ForeignKey(entity = Category.class, parentColumns = "id", childColumns = "categoryId",
+                        onDelete = ForeignKey.CASCADE)
+        })
+public class Budget {
+    @PrimaryKey
+    public int categoryId;
+    // Minor units per month
+    public long amountMinor;
+
+    // The highest BudgetMonitor threshold notified for a category's budget in a month
+    @Entity(tableName = "budget_alerts",
+            foreignKeys = {
+                    @ForeignKey(entity = Category.class, parentColumns = "id", childColumns = "categoryId",
+                            onDelete = ForeignKey.CASCADE)
+            })
+    public static class Alert {
+        @PrimaryKey
+        public int categoryId;
+        // "yyyy-MM"
+        @NonNull
+        public String month = "";
+        public int percent;
+    }
+
+    // A budget with this month's spending, from BudgetDao
+    public static class Status {
+        public int categoryId;
+        public long amountMinor;
+        public long spentMinor;
+        // From budget_alerts: null and 0 when nothing was notified yet
+        public String alertedMonth;
+        public int alertedPercent;
+
+        public Status copy() {
+            Status copy = new Status();
+            copy.categoryId = categoryId;
+            copy.amountMinor = amountMinor;
+            copy.spentMinor = spentMinor;
+            copy.alertedMonth = alertedMonth;
+            copy.alertedPercent = alertedPercent;
+            return copy;
+        }
+
+        // Whole percent of the budget spent; a zero budget counts as exceeded once anything is spent
+        public int getPercentSpent() {
+            if (amountMinor <= 0) {
+                return spentMinor > 0 ? 100 : 0;
+            }
+            return (int) Math.min(Integer.MAX_VALUE, spentMinor * 100 / amountMinor);
+        }
+    }
+
+    // Same schema Room generates for Alert
+    static void createAlertsTable(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS `budget_alerts` (`categoryId` INTEGER NOT NULL, "
+                + "`month` TEXT NOT NULL, `percent` INTEGER NOT NULL, PRIMARY KEY(`categoryId`), "
+                + "FOREIGN KEY(`categoryId`) REFERENCES `categories`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+    }
+}
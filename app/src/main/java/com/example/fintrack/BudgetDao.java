@@ -0,0 +1,50 @@
+package com.example.fintrack;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import java.util.List;
+
+@Dao
+public interface BudgetDao {
+    // One primary-key lookup in category_month_rollups per budget, whatever the history size
+    @Query("SELECT b.categoryId, b.amountMinor, IFNULL(r.total, 0) AS spentMinor, " +
+            "a.month AS alertedMonth, IFNULL(a.percent, 0) AS alertedPercent " +
+            "FROM budgets b LEFT JOIN category_month_rollups r ON r.categoryId = b.categoryId AND r.month = :month " +
+            "LEFT JOIN budget_alerts a ON a.categoryId = b.categoryId")
+    List<Budget.Status> getStatuses(String month);
+
+    @Query("UPDATE budgets SET amountMinor = :amountMinor WHERE categoryId = :categoryId")
+    int updateAmount(int categoryId, long amountMinor);
+
+    @Query("INSERT INTO budgets (categoryId, amountMinor) VALUES (:categoryId, :amountMinor)")
+    void insert(int categoryId, long amountMinor);
+
+    // A changed amount clears the alert state, so thresholds are judged against the new limit.
+    // SQLite on API 24 has no upsert, hence update-then-insert.
+    @Transaction
+    default void setBudget(int categoryId, long amountMinor) {
+        if (updateAmount(categoryId, amountMinor) == 0) {
+            insert(categoryId, amountMinor);
+        }
+        clearAlerted(categoryId);
+    }
+
+    @Query("DELETE FROM budgets WHERE categoryId = :categoryId")
+    void deleteBudgetRow(int categoryId);
+
+    @Transaction
+    default void deleteBudget(int categoryId) {
+        deleteBudgetRow(categoryId);
+        clearAlerted(categoryId);
+    }
+
+    // Alert state is kept in budget_alerts, which nothing observes, so recording an alert
+    // doesn't reload the dashboard
+    @Query("INSERT OR REPLACE INTO budget_alerts (categoryId, month, percent) VALUES (:categoryId, :month, :percent)")
+    void setAlerted(int categoryId, String month, int percent);
+
+    @Query("DELETE FROM budget_alerts WHERE categoryId = :categoryId")
+    void clearAlerted(int categoryId);
+}
@@ -0,0 +1,143 @@
+package com.example.fintrack;
+
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+import androidx.room.InvalidationTracker;
+
+import java.util.Calendar;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Checks budgets after every write to expenses, from any screen, import or background job,
+// and posts a notification the first time a category crosses WARNING_PERCENT or
+// LIMIT_PERCENT of its budget in a month. A check reads one rollup row per budget, so its
+// cost doesn't grow with the number of expenses.
+public final class BudgetMonitor {
+    public static final int WARNING_PERCENT = 80;
+    public static final int LIMIT_PERCENT = 100;
+    private static final String CHANNEL_ID = "budgets";
+    // Notification ids are this plus the category id, so a newer alert replaces an older one
+    private static final int NOTIFICATION_ID_BASE = 1000;
+
+    private static BudgetMonitor instance;
+
+    private final Context context;
+    private final ExpenseDatabase database;
+    private final AtomicBoolean checkPending = new AtomicBoolean(false);
+    private boolean started;
+
+    private final InvalidationTracker.Observer expensesObserver = new InvalidationTracker.Observer("expenses") {
+        @Override
+        public void onInvalidated(@NonNull Set<String> tables) {
+            requestCheck();
+        }
+    };
+
+    private BudgetMonitor(Context context) {
+        this.context = context.getApplicationContext();
+        database = ExpenseDatabase.getInstance(this.context);
+    }
+
+    public static synchronized BudgetMonitor getInstance(Context context) {
+        if (instance == null) {
+            instance = new BudgetMonitor(context);
+        }
+        return instance;
+    }
+
+    // Watches the expenses table for the rest of the process; later calls do nothing
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        createChannel();
+        database.getInvalidationTracker().addObserver(expensesObserver);
+        requestCheck();
+    }
+
+    // Queues a check on the write lane, since it records alerts, unless one is already waiting.
+    // A burst of writes, such as an import, is checked once.
+    public void requestCheck() {
+        if (checkPending.compareAndSet(false, true)) {
+            DatabaseDispatcher.getInstance().write("budgetCheck", () -> {
+                checkPending.set(false);
+                check();
+            });
+        }
+    }
+
+    private void check() {
+        BudgetDao budgetDao = database.budgetDao();
+        String month = ExpenseDates.monthKey(Calendar.getInstance());
+        List<Budget.Status> statuses = budgetDao.getStatuses(month);
+        for (Budget.Status status : statuses) {
+            int level = thresholdReached(status.getPercentSpent());
+            int alerted = month.equals(status.alertedMonth) ? status.alertedPercent : 0;
+            if (level > alerted) {
+                notify(status, level);
+                budgetDao.setAlerted(status.categoryId, month, level);
+            } else if (level < alerted) {
+                // Spending went back down, e.g. after a delete; crossing again alerts again
+                budgetDao.setAlerted(status.categoryId, month, level);
+            }
+        }
+    }
+
+    static int thresholdReached(int percentSpent) {
+        if (percentSpent >= LIMIT_PERCENT) {
+            return LIMIT_PERCENT;
+        }
+        return percentSpent >= WARNING_PERCENT ? WARNING_PERCENT : 0;
+    }
+
+    private void notify(Budget.Status status, int level) {
+        NotificationManagerCompat manager = NotificationManagerCompat.from(context);
+        // Without the permission on Android 13+ nothing would be shown anyway
+        if (!manager.areNotificationsEnabled()) {
+            return;
+        }
+        ExpenseFormatter formatter = ExpenseFormatter.getInstance(context);
+        String category = CategoryRegistry.getInstance(context).get(status.categoryId).getName();
+        String title = level >= LIMIT_PERCENT
+                ? category + " budget exceeded"
+                : category + " budget " + level + "% used";
+        String text = formatter.formatAmount(status.spentMinor) + " of " + formatter.formatAmount(status.amountMinor)
+                + " spent this month";
+
+        Intent intent = new Intent(context, MainActivity.class).setFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
+        PendingIntent contentIntent = PendingIntent.getActivity(context, 0, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_trending)
+                .setContentTitle(title)
+                .setContentText(text)
+                .setContentIntent(contentIntent)
+                .setAutoCancel(true)
+                .setPriority(NotificationCompat.PRIORITY_DEFAULT);
+        try {
+            manager.notify(NOTIFICATION_ID_BASE + status.categoryId, builder.build());
+        } catch (SecurityException e) {
+            // Permission revoked between the check and the post
+        }
+    }
+
+    private void createChannel() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, "Budget alerts",
+                    NotificationManager.IMPORTANCE_DEFAULT);
+            channel.setDescription("When a category reaches " + WARNING_PERCENT + "% or "
+                    + LIMIT_PERCENT + "% of its monthly budget");
+            context.getSystemService(NotificationManager.class).createNotificationChannel(channel);
+        }
+    }
+}
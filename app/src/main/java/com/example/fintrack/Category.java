@@ -0,0 +1,105 @@
+package com.example.fintrack;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+// A row of the categories table. Expenses reference categories by id; names, colours and
+// ordering live here, so new categories are data rather than code.
+@Entity(tableName = "categories",
+        indices = {
+                @Index(value = "name", unique = true)
+        })
+public class Category {
+    // Ids of the seeded categories are fixed, OTHER_ID is the fallback for unknown names
+    public static final int OTHER_ID = 8;
+
+    // Seeded on a fresh install and by MIGRATION_5_6, in display order with ids 1..8.
+    // Colours match the category_* entries in colors.xml.
+    private static final String[] DEFAULT_NAMES = {
+            "Food & Dining", "Transportation", "Shopping", "Entertainment",
+            "Healthcare", "Education", "Utilities", "Other"
+    };
+    private static final int[] DEFAULT_COLORS = {
+            0xFFFF9800, 0xFF2196F3, 0xFF9C27B0, 0xFFE91E63,
+            0xFF4CAF50, 0xFF607D8B, 0xFF795548, 0xFF9E9E9E
+    };
+    // Custom categories pick one of these by name, so a name keeps its colour across devices
+    private static final int[] CUSTOM_COLORS = {
+            0xFF009688, 0xFF3F51B5, 0xFFFFC107, 0xFF00BCD4, 0xFFFF5722, 0xFF8BC34A
+    };
+
+    @PrimaryKey(autoGenerate = true)
+    private int id;
+
+    @NonNull
+    private String name;
+    // ARGB
+    private int color;
+    private int sortOrder;
+
+    public Category(@NonNull String name, int color, int sortOrder) {
+        this.name = name;
+        this.color = color;
+        this.sortOrder = sortOrder;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    public void setName(@NonNull String name) {
+        this.name = name;
+    }
+
+    public int getColor() {
+        return color;
+    }
+
+    public void setColor(int color) {
+        this.color = color;
+    }
+
+    public int getSortOrder() {
+        return sortOrder;
+    }
+
+    public void setSortOrder(int sortOrder) {
+        this.sortOrder = sortOrder;
+    }
+
+    static int customColor(String name) {
+        return CUSTOM_COLORS[(name.hashCode() & 0x7FFFFFFF) % CUSTOM_COLORS.length];
+    }
+
+    // Same schema Room generates for this entity
+    static void createTable(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS `categories` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                + "`name` TEXT NOT NULL, `color` INTEGER NOT NULL, `sortOrder` INTEGER NOT NULL)");
+        db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_categories_name` ON `categories` (`name`)");
+    }
+
+    static void insertDefaults(SupportSQLiteDatabase db) {
+        SupportSQLiteStatement insert = db.compileStatement(
+                "INSERT OR IGNORE INTO `categories` (`id`, `name`, `color`, `sortOrder`) VALUES (?, ?, ?, ?)");
+        for (int i = 0; i < DEFAULT_NAMES.length; i++) {
+            insert.bindLong(1, i + 1);
+            insert.bindString(2, DEFAULT_NAMES[i]);
+            insert.bindLong(3, DEFAULT_COLORS[i]);
+            insert.bindLong(4, i);
+            insert.executeInsert();
+        }
+    }
+}
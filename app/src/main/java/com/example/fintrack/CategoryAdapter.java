@@ -6,28 +6,59 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.List;
-import java.util.Map;
+import java.util.Objects;
 
-public class CategoryAdapter extends RecyclerView.Adapter<CategoryAdapter.CategoryViewHolder> {
-    private List<CategorySummary> categories;
+public class CategoryAdapter extends ListAdapter<CategoryAdapter.CategorySummary, CategoryAdapter.CategoryViewHolder> {
+    private static final DiffUtil.ItemCallback<CategorySummary> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<CategorySummary>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull CategorySummary oldItem, @NonNull CategorySummary newItem) {
+            return oldItem.categoryId == newItem.categoryId;
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull CategorySummary oldItem, @NonNull CategorySummary newItem) {
+            return oldItem.amount == newItem.amount
+                    && oldItem.color == newItem.color
+                    && oldItem.category.equals(newItem.category)
+                    && Double.compare(oldItem.percentage, newItem.percentage) == 0
+                    && oldItem.amountText.equals(newItem.amountText)
+                    && Objects.equals(oldItem.budgetText, newItem.budgetText);
+        }
+    };
 
+    // Render model: texts and colour are resolved by ExpenseFormatter off the main thread
     public static class CategorySummary {
+        public int categoryId;
         public String category;
-        public double amount;
+        // Minor units
+        public long amount;
         public double percentage;
-
-        public CategorySummary(String category, double amount, double percentage) {
+        public String amountText;
+        public String percentageText;
+        public int color;
+        // This month against the category's budget, null without one
+        public String budgetText;
+
+        public CategorySummary(int categoryId, String category, long amount, double percentage,
+                               String amountText, String percentageText, int color) {
+            this.categoryId = categoryId;
             this.category = category;
             this.amount = amount;
             this.percentage = percentage;
+            this.amountText = amountText;
+            this.percentageText = percentageText;
+            this.color = color;
         }
     }
 
-    public CategoryAdapter(List<CategorySummary> categories) {
-        this.categories = categories;
+    public CategoryAdapter() {
+        super(DIFF_CALLBACK);
+        setHasStableIds(true);
     }
 
     @NonNull
@@ -40,24 +71,20 @@ public class CategoryAdapter extends RecyclerView.Adapter<CategoryAdapter.Catego
 
     @Override
     public void onBindViewHolder(@NonNull CategoryViewHolder holder, int position) {
-        CategorySummary category = categories.get(position);
+        CategorySummary category = getItem(position);
         holder.bind(category);
     }
 
     @Override
-    public int getItemCount() {
-        return categories.size();
-    }
-
-    public void updateCategories(List<CategorySummary> newCategories) {
-        this.categories = newCategories;
-        notifyDataSetChanged();
+    public long getItemId(int position) {
+        return getItem(position).categoryId;
     }
 
     static class CategoryViewHolder extends RecyclerView.ViewHolder {
         private TextView tvCategory;
         private TextView tvAmount;
         private TextView tvPercentage;
+        private TextView tvBudget;
         private View colorIndicator;
 
         public CategoryViewHolder(@NonNull View itemView) {
@@ -65,46 +92,17 @@ public class CategoryAdapter extends RecyclerView.Adapter<CategoryAdapter.Catego
             tvCategory = itemView.findViewById(R.id.tv_category);
             tvAmount = itemView.findViewById(R.id.tv_amount);
             tvPercentage = itemView.findViewById(R.id.tv_percentage);
+            tvBudget = itemView.findViewById(R.id.tv_budget);
             colorIndicator = itemView.findViewById(R.id.color_indicator);
         }
 
         public void bind(CategorySummary category) {
             tvCategory.setText(category.category);
-            tvAmount.setText(String.format("%s%.2f", getCurrencySymbol(), category.amount));
-            tvPercentage.setText(String.format("%.1f%%", category.percentage));
-            
-            // Set color based on category
-            int color = getCategoryColor(category.category);
-            colorIndicator.setBackgroundColor(color);
-        }
-
-        private String getCurrencySymbol() {
-            // Get currency from SharedPreferences
-            android.content.SharedPreferences prefs = itemView.getContext()
-                .getSharedPreferences("FinTrackSettings", android.content.Context.MODE_PRIVATE);
-            String currency = prefs.getString("currency", "RM");
-            return SettingsActivity.getCurrencySymbol(currency);
-        }
-
-        private int getCategoryColor(String category) {
-            switch (category) {
-                case "Food & Dining":
-                    return itemView.getContext().getColor(R.color.category_food);
-                case "Transportation":
-                    return itemView.getContext().getColor(R.color.category_transport);
-                case "Shopping":
-                    return itemView.getContext().getColor(R.color.category_shopping);
-                case "Entertainment":
-                    return itemView.getContext().getColor(R.color.category_entertainment);
-                case "Healthcare":
-                    return itemView.getContext().getColor(R.color.category_healthcare);
-                case "Education":
-                    return itemView.getContext().getColor(R.color.category_education);
-                case "Utilities":
-                    return itemView.getContext().getColor(R.color.category_utilities);
-                default:
-                    return itemView.getContext().getColor(R.color.category_other);
-            }
+            tvAmount.setText(category.amountText);
+            tvPercentage.setText(category.percentageText);
+            colorIndicator.setBackgroundColor(category.color);
+            tvBudget.setVisibility(category.budgetText != null ? View.VISIBLE : View.GONE);
+            tvBudget.setText(category.budgetText);
         }
     }
-} 
\ No newline at end of file
+}
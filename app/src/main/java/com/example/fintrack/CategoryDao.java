@@ -0,0 +1,16 @@
+package com.example.fintrack;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface CategoryDao {
+    @Query("SELECT * FROM categories ORDER BY sortOrder, id")
+    List<Category> getAllCategories();
+
+    @Insert
+    long insertCategory(Category category);
+}
@@ -0,0 +1,128 @@
+package com.example.fintrack;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// In-memory copy of the categories table, indexed by id. It is loaded once, on first use, and
+// kept current by getOrCreate(), so formatting rows and grouping never go back to the database.
+public final class CategoryRegistry {
+    private static CategoryRegistry instance;
+
+    private final CategoryDao categoryDao;
+    // byId[id] is the category with that id, or null; both are replaced together on a change
+    private volatile Category[] byId;
+    private volatile List<Category> ordered;
+    private final Map<String, Category> byName = new HashMap<>();
+
+    private CategoryRegistry(Context context) {
+        categoryDao = ExpenseDatabase.getInstance(context).categoryDao();
+    }
+
+    public static synchronized CategoryRegistry getInstance(Context context) {
+        if (instance == null) {
+            instance = new CategoryRegistry(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    // Queries the table the first time only; call off the main thread until isLoaded()
+    public synchronized void load() {
+        if (byId == null) {
+            publish(categoryDao.getAllCategories());
+        }
+    }
+
+    public boolean isLoaded() {
+        return byId != null;
+    }
+
+    // Unknown ids resolve to Other rather than null
+    public Category get(int id) {
+        Category[] table = byId;
+        if (table == null) {
+            load();
+            table = byId;
+        }
+        Category category = id >= 0 && id < table.length ? table[id] : null;
+        return category != null ? category : table[Category.OTHER_ID];
+    }
+
+    // In display order
+    public List<Category> getAll() {
+        load();
+        return ordered;
+    }
+
+    public List<String> getNames() {
+        List<Category> categories = getAll();
+        List<String> names = new ArrayList<>(categories.size());
+        for (Category category : categories) {
+            names.add(category.getName());
+        }
+        return names;
+    }
+
+    // The category getOrCreate() would return without inserting, or null if it would insert one.
+    // Reads the published list only, so it is safe on the main thread once loaded.
+    public Category find(String name) {
+        // publish() sets byId last, so once it is visible the list is too
+        Category[] table = byId;
+        if (table == null) {
+            return null;
+        }
+        String trimmed = name != null ? name.trim() : "";
+        if (trimmed.isEmpty()) {
+            return table[Category.OTHER_ID];
+        }
+        for (Category category : ordered) {
+            if (category.getName().equals(trimmed)) {
+                return category;
+            }
+        }
+        return null;
+    }
+
+    // Returns the category with this name, adding it after the existing ones if there is none.
+    // Blank names map to Other. Inserts, so it belongs on the dispatcher's write lane.
+    public synchronized Category getOrCreate(String name) {
+        load();
+        String trimmed = name != null ? name.trim() : "";
+        if (trimmed.isEmpty()) {
+            return byId[Category.OTHER_ID];
+        }
+        Category category = byName.get(trimmed);
+        if (category != null) {
+            return category;
+        }
+
+        List<Category> current = ordered;
+        int sortOrder = current.isEmpty() ? 0 : current.get(current.size() - 1).getSortOrder() + 1;
+        category = new Category(trimmed, Category.customColor(trimmed), sortOrder);
+        category.setId((int) categoryDao.insertCategory(category));
+
+        List<Category> categories = new ArrayList<>(current);
+        categories.add(category);
+        publish(categories);
+        return category;
+    }
+
+    private void publish(List<Category> categories) {
+        int maxId = Category.OTHER_ID;
+        for (Category category : categories) {
+            maxId = Math.max(maxId, category.getId());
+        }
+        Category[] table = new Category[maxId + 1];
+        byName.clear();
+        for (Category category : categories) {
+            table[category.getId()] = category;
+            byName.put(category.getName(), category);
+        }
+        ordered = Collections.unmodifiableList(categories);
+        byId = table;
+    }
+}
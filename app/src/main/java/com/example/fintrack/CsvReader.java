@@ -0,0 +1,109 @@
+package com.example.fintrack;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// Streaming RFC 4180 reader: quoted fields, doubled quotes and line breaks inside quotes.
+// One record is held at a time, so memory does not grow with the file.
+public class CsvReader {
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final Reader reader;
+    private final char delimiter;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    private final StringBuilder field = new StringBuilder();
+    private final List<String> record = new ArrayList<>();
+    private long lineNumber = 0;
+
+    public CsvReader(Reader reader) {
+        this(reader, ',');
+    }
+
+    public CsvReader(Reader reader, char delimiter) {
+        this.reader = reader;
+        this.delimiter = delimiter;
+    }
+
+    // Line number of the record most recently returned, 1-based
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    // Next record, or null at end of input. The returned list is reused by the next call.
+    public List<String> readRecord() throws IOException {
+        record.clear();
+        field.setLength(0);
+        boolean inQuotes = false;
+        boolean sawAnything = false;
+        lineNumber++;
+
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                if (!sawAnything) {
+                    return null;
+                }
+                record.add(field.toString());
+                return record;
+            }
+            sawAnything = true;
+            char ch = (char) c;
+
+            if (inQuotes) {
+                if (ch == '"') {
+                    if (peek() == '"') {
+                        read();
+                        field.append('"');
+                    } else {
+                        inQuotes = false;
+                    }
+                } else {
+                    if (ch == '\n') {
+                        lineNumber++;
+                    }
+                    field.append(ch);
+                }
+            } else if (ch == '"' && field.length() == 0) {
+                inQuotes = true;
+            } else if (ch == delimiter) {
+                record.add(field.toString());
+                field.setLength(0);
+            } else if (ch == '\r') {
+                if (peek() == '\n') {
+                    read();
+                }
+                record.add(field.toString());
+                return record;
+            } else if (ch == '\n') {
+                record.add(field.toString());
+                return record;
+            } else {
+                field.append(ch);
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (position >= limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position >= limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        limit = reader.read(buffer, 0, buffer.length);
+        position = 0;
+        return limit > 0;
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.fintrack;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.Collections;
+import java.util.List;
+
+// Single-item adapter that renders the dashboard above the expense list
+public class DashboardAdapter extends RecyclerView.Adapter<DashboardAdapter.DashboardViewHolder> {
+    // Render model for the header, formatted off the main thread by the ViewModel
+    public static class DashboardModel {
+        public final DashboardSummary summary;
+        public final String totalText;
+        public final String monthText;
+        public final String avgPerDayText;
+        public final List<CategoryAdapter.CategorySummary> categories;
+        // Kept so pending changes can be applied on top; empty for a restored snapshot
+        public final List<Budget.Status> budgets;
+
+        public DashboardModel(DashboardSummary summary, ExpenseFormatter formatter) {
+            this(summary, formatter, Collections.emptyList());
+        }
+
+        // Budgets last, as a List<CategorySummary> in the same place would clash with the
+        // constructor below
+        public DashboardModel(DashboardSummary summary, ExpenseFormatter formatter, List<Budget.Status> budgets) {
+            this(summary, formatter.toCategorySummaries(summary, budgets), budgets, formatter);
+        }
+
+        // With the category rows already resolved, as DashboardSnapshotStore restores them
+        public DashboardModel(DashboardSummary summary, List<CategoryAdapter.CategorySummary> categories,
+                              ExpenseFormatter formatter) {
+            this(summary, categories, Collections.emptyList(), formatter);
+        }
+
+        private DashboardModel(DashboardSummary summary, List<CategoryAdapter.CategorySummary> categories,
+                               List<Budget.Status> budgets, ExpenseFormatter formatter) {
+            this.summary = summary;
+            totalText = "Total Expenses: " + formatter.formatAmount(summary.totalAmount);
+            monthText = formatter.formatAmount(summary.monthAmount);
+            avgPerDayText = formatter.formatAmount(summary.getAveragePerDay());
+            this.categories = categories;
+            this.budgets = budgets;
+        }
+    }
+
+    // Rolling windows and the picked range, read from DayTotalsIndex by the ViewModel
+    public static class PeriodTotals {
+        public final String last7DaysText;
+        public final String last30DaysText;
+        public final String last90DaysText;
+        // Null until a range has been picked
+        public final String rangeText;
+
+        public PeriodTotals(String last7DaysText, String last30DaysText, String last90DaysText, String rangeText) {
+            this.last7DaysText = last7DaysText;
+            this.last30DaysText = last30DaysText;
+            this.last90DaysText = last90DaysText;
+            this.rangeText = rangeText;
+        }
+    }
+
+    private final CategoryAdapter categoryAdapter;
+    private String totalText;
+    private String monthText;
+    private String avgPerDayText;
+    private PeriodTotals periodTotals;
+    private View.OnClickListener pickRangeListener;
+
+    public DashboardAdapter(CategoryAdapter categoryAdapter) {
+        this.categoryAdapter = categoryAdapter;
+        setHasStableIds(true);
+    }
+
+    public void updateStatistics(String totalText, String monthText, String avgPerDayText) {
+        this.totalText = totalText;
+        this.monthText = monthText;
+        this.avgPerDayText = avgPerDayText;
+        notifyItemChanged(0);
+    }
+
+    public void updatePeriodTotals(PeriodTotals periodTotals) {
+        this.periodTotals = periodTotals;
+        notifyItemChanged(0);
+    }
+
+    public void setOnPickRangeListener(View.OnClickListener listener) {
+        pickRangeListener = listener;
+        notifyItemChanged(0);
+    }
+
+    @NonNull
+    @Override
+    public DashboardViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.dashboard_header, parent, false);
+        return new DashboardViewHolder(view, categoryAdapter);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull DashboardViewHolder holder, int position) {
+        holder.bind(totalText, monthText, avgPerDayText);
+        holder.bindPeriodTotals(periodTotals, pickRangeListener);
+    }
+
+    @Override
+    public int getItemCount() {
+        return 1;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return 0;
+    }
+
+    static class DashboardViewHolder extends RecyclerView.ViewHolder {
+        private TextView tvTotalExpenses;
+        private TextView tvMonthAmount;
+        private TextView tvAvgPerDay;
+        private TextView tvLast7Days;
+        private TextView tvLast30Days;
+        private TextView tvLast90Days;
+        private TextView tvRangeTotal;
+        private View btnPickRange;
+
+        public DashboardViewHolder(@NonNull View itemView, CategoryAdapter categoryAdapter) {
+            super(itemView);
+            tvTotalExpenses = itemView.findViewById(R.id.tv_total_expenses);
+            tvMonthAmount = itemView.findViewById(R.id.tv_month_amount);
+            tvAvgPerDay = itemView.findViewById(R.id.tv_avg_per_day);
+            tvLast7Days = itemView.findViewById(R.id.tv_last_7_days);
+            tvLast30Days = itemView.findViewById(R.id.tv_last_30_days);
+            tvLast90Days = itemView.findViewById(R.id.tv_last_90_days);
+            tvRangeTotal = itemView.findViewById(R.id.tv_range_total);
+            btnPickRange = itemView.findViewById(R.id.btn_pick_range);
+
+            RecyclerView categoryRecyclerView = itemView.findViewById(R.id.rv_categories);
+            categoryRecyclerView.setLayoutManager(new LinearLayoutManager(itemView.getContext()));
+            categoryRecyclerView.setAdapter(categoryAdapter);
+        }
+
+        public void bind(String totalText, String monthText, String avgPerDayText) {
+            // Keep the layout placeholders until the first statistics arrive
+            if (totalText != null) {
+                tvTotalExpenses.setText(totalText);
+                tvMonthAmount.setText(monthText);
+                tvAvgPerDay.setText(avgPerDayText);
+            }
+        }
+
+        public void bindPeriodTotals(PeriodTotals periodTotals, View.OnClickListener pickRangeListener) {
+            btnPickRange.setOnClickListener(pickRangeListener);
+            if (periodTotals == null) {
+                return;
+            }
+            tvLast7Days.setText(periodTotals.last7DaysText);
+            tvLast30Days.setText(periodTotals.last30DaysText);
+            tvLast90Days.setText(periodTotals.last90DaysText);
+            tvRangeTotal.setVisibility(periodTotals.rangeText != null ? View.VISIBLE : View.GONE);
+            tvRangeTotal.setText(periodTotals.rangeText);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.fintrack;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// The last dashboard and the top of the feed, saved as a small binary file after every
+// refresh. A cold start draws it in the first frame, before Room is even opened, and the live
+// reads replace it moments later. Its size is fixed by ROWS, not by the number of expenses.
+public final class DashboardSnapshotStore {
+    private static final String TAG = "DashboardSnapshot";
+    private static final String FILE_NAME = "dashboard.snapshot";
+    private static final int MAGIC = 0x46544453;
+    // Bump when the layout changes; older files are then ignored rather than misread
+    private static final int VERSION = 1;
+    // Rows saved from the top of the feed, about a screenful
+    public static final int ROWS = 20;
+
+    public static class Snapshot {
+        public final DashboardAdapter.DashboardModel dashboard;
+        public final List<ExpenseAdapter.ExpenseRow> rows;
+
+        Snapshot(DashboardAdapter.DashboardModel dashboard, List<ExpenseAdapter.ExpenseRow> rows) {
+            this.dashboard = dashboard;
+            this.rows = rows;
+        }
+    }
+
+    private final File file;
+
+    public DashboardSnapshotStore(Context context) {
+        file = new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    // Runs on the write lane. Written to a temp file and renamed, so a crash mid-write leaves
+    // the previous snapshot intact.
+    public void save(String month, DashboardAdapter.DashboardModel dashboard, List<ExpenseAdapter.ExpenseRow> rows) {
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            DashboardSummary summary = dashboard.summary;
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, month);
+            out.writeLong(summary.totalAmount);
+            out.writeLong(summary.monthAmount);
+            writeString(out, summary.firstDate);
+            writeString(out, summary.lastDate);
+
+            out.writeInt(dashboard.categories.size());
+            for (CategoryAdapter.CategorySummary category : dashboard.categories) {
+                out.writeInt(category.categoryId);
+                writeString(out, category.category);
+                out.writeLong(category.amount);
+                out.writeInt(category.color);
+            }
+
+            int count = Math.min(rows.size(), ROWS);
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                ExpenseAdapter.ExpenseRow row = rows.get(i);
+                Expense expense = row.expense;
+                out.writeInt(expense.getId());
+                writeString(out, expense.getTitle());
+                out.writeLong(expense.getAmountMinor());
+                writeString(out, expense.getDate());
+                writeString(out, expense.getTime());
+                out.writeInt(expense.getCategoryId());
+                writeString(out, expense.getNotes());
+                writeString(out, expense.getPhotoPath());
+                writeString(out, row.categoryName);
+                out.writeInt(row.color);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to save dashboard snapshot", e);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+        }
+    }
+
+    // Reads on the calling thread, which is fine for a file of a few KB. Amounts are formatted
+    // with the current currency. Returns null when there is no usable snapshot.
+    public Snapshot load(String currentMonth, ExpenseFormatter formatter) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            String month = readString(in);
+            long totalAmount = in.readLong();
+            long monthAmount = in.readLong();
+            // Saved in an earlier month: nothing has been spent in this one as far as we know
+            if (!currentMonth.equals(month)) {
+                monthAmount = 0;
+            }
+            String firstDate = readString(in);
+            String lastDate = readString(in);
+
+            int categoryCount = in.readInt();
+            List<DashboardSummary.CategoryTotal> categoryTotals = new ArrayList<>(categoryCount);
+            List<CategoryAdapter.CategorySummary> categories = new ArrayList<>(categoryCount);
+            for (int i = 0; i < categoryCount; i++) {
+                DashboardSummary.CategoryTotal categoryTotal = new DashboardSummary.CategoryTotal();
+                categoryTotal.categoryId = in.readInt();
+                String name = readString(in);
+                categoryTotal.total = in.readLong();
+                int color = in.readInt();
+                double percentage = totalAmount > 0 ? (categoryTotal.total * 100.0) / totalAmount : 0;
+                categoryTotals.add(categoryTotal);
+                categories.add(new CategoryAdapter.CategorySummary(categoryTotal.categoryId, name,
+                        categoryTotal.total, percentage, formatter.formatAmount(categoryTotal.total),
+                        ExpenseFormatter.formatPercentage(percentage), color));
+            }
+            DashboardSummary summary = new DashboardSummary(totalAmount, monthAmount, firstDate, lastDate,
+                    categoryTotals);
+
+            int rowCount = in.readInt();
+            List<ExpenseAdapter.ExpenseRow> rows = new ArrayList<>(rowCount);
+            for (int i = 0; i < rowCount; i++) {
+                int id = in.readInt();
+                String title = readString(in);
+                long amountMinor = in.readLong();
+                String date = readString(in);
+                String time = readString(in);
+                int categoryId = in.readInt();
+                String notes = readString(in);
+                String photoPath = readString(in);
+                Expense expense = new Expense(title, amountMinor, date, time, categoryId, notes, photoPath);
+                expense.setId(id);
+                rows.add(new ExpenseAdapter.ExpenseRow(expense, formatter.formatAmount(amountMinor),
+                        readString(in), in.readInt()));
+            }
+            return new Snapshot(new DashboardAdapter.DashboardModel(summary, categories, formatter), rows);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Ignoring unreadable dashboard snapshot", e);
+            return null;
+        }
+    }
+
+    // Length-prefixed UTF-8, -1 for null; writeUTF would fail on notes over 64 KB
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.fintrack;
+
+import java.util.List;
+
+// Aggregated figures for the dashboard, computed in SQL by ExpenseDao.getDashboardSummary()
+public class DashboardSummary {
+    public static class CategoryTotal {
+        // Resolved to a name and colour through CategoryRegistry
+        public int categoryId;
+        // Minor units
+        public long total;
+    }
+
+    // Minor units, summed exactly as integers
+    public final long totalAmount;
+    public final long monthAmount;
+    public final String firstDate;
+    public final String lastDate;
+    public final List<CategoryTotal> categoryTotals;
+    // MAX(expense_changes.seq) read with the figures: writes logged at or below it are included.
+    // 0 for figures restored from disk.
+    public final long changeSeq;
+
+    public DashboardSummary(long totalAmount, long monthAmount, String firstDate, String lastDate,
+                            List<CategoryTotal> categoryTotals) {
+        this(totalAmount, monthAmount, firstDate, lastDate, categoryTotals, 0);
+    }
+
+    public DashboardSummary(long totalAmount, long monthAmount, String firstDate, String lastDate,
+                            List<CategoryTotal> categoryTotals, long changeSeq) {
+        this.totalAmount = totalAmount;
+        this.monthAmount = monthAmount;
+        this.firstDate = firstDate;
+        this.lastDate = lastDate;
+        this.categoryTotals = categoryTotals;
+        this.changeSeq = changeSeq;
+    }
+
+    // Average over the inclusive span between the first and last expense dates
+    public long getAveragePerDay() {
+        if (firstDate == null || lastDate == null) {
+            return 0;
+        }
+        long daysDiff = ExpenseDates.daysBetween(firstDate, lastDate);
+        return daysDiff > 0 ? Money.divide(totalAmount, daysDiff + 1) : 0;
+    }
+}
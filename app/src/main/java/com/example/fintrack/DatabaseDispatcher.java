@@ -0,0 +1,268 @@
+package com.example.fintrack;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// App-wide executor for database work: one ordered lane for writes, a small pool for
+// reads, lifecycle-bound cancellation, coalescing of duplicate reads and per-task timing.
+public final class DatabaseDispatcher {
+    private static final String TAG = "DatabaseDispatcher";
+    private static final int READ_THREADS = 2;
+    private static final long SLOW_TASK_MS = 200;
+
+    private static DatabaseDispatcher instance;
+
+    public interface Work<T> {
+        T run();
+    }
+
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    // Aggregated timings for every task submitted under the same name
+    public static class TaskStats {
+        public final String name;
+        public int count;
+        public long totalQueueWaitMs;
+        public long maxQueueWaitMs;
+        public long totalRunMs;
+        public long maxRunMs;
+
+        TaskStats(String name) {
+            this.name = name;
+        }
+
+        TaskStats copy() {
+            TaskStats copy = new TaskStats(name);
+            copy.count = count;
+            copy.totalQueueWaitMs = totalQueueWaitMs;
+            copy.maxQueueWaitMs = maxQueueWaitMs;
+            copy.totalRunMs = totalRunMs;
+            copy.maxRunMs = maxRunMs;
+            return copy;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return name + ": n=" + count
+                    + " wait(avg/max)=" + (count > 0 ? totalQueueWaitMs / count : 0) + "/" + maxQueueWaitMs + "ms"
+                    + " run(avg/max)=" + (count > 0 ? totalRunMs / count : 0) + "/" + maxRunMs + "ms";
+        }
+    }
+
+    public static final class Task<T> implements Runnable, LifecycleEventObserver {
+        private final DatabaseDispatcher dispatcher;
+        private final String name;
+        private final boolean write;
+        private final LifecycleOwner owner;
+        private final long enqueuedAt = SystemClock.elapsedRealtime();
+        private Work<T> work;
+        private Callback<T> callback;
+        private int sequence;
+        private volatile boolean started;
+        private volatile boolean cancelled;
+
+        Task(DatabaseDispatcher dispatcher, String name, boolean write, LifecycleOwner owner,
+             Work<T> work, Callback<T> callback) {
+            this.dispatcher = dispatcher;
+            this.name = name;
+            this.write = write;
+            this.owner = owner;
+            this.work = work;
+            this.callback = callback;
+        }
+
+        // Reads that haven't started are skipped; writes still run but skip their callback
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public void onStateChanged(@NonNull LifecycleOwner source, @NonNull Lifecycle.Event event) {
+            if (event == Lifecycle.Event.ON_DESTROY) {
+                cancel();
+                source.getLifecycle().removeObserver(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            Work<T> currentWork;
+            synchronized (dispatcher.lock) {
+                started = true;
+                currentWork = work;
+                if (!write) {
+                    dispatcher.pendingReads.remove(name, this);
+                }
+            }
+            long startedAt = SystemClock.elapsedRealtime();
+            if (cancelled && !write) {
+                dispatcher.finish(this, startedAt, startedAt, null);
+                return;
+            }
+
+            T result = null;
+            // Attributes the task's DAO calls in QueryMetrics, when it is recording
+            String previousCaller = QueryMetrics.setCaller(
+                    owner != null ? owner.getClass().getSimpleName() + "/" + name : name);
+            try {
+                result = currentWork.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Task " + name + " failed", e);
+                cancelled = true;
+            } finally {
+                QueryMetrics.setCaller(previousCaller);
+            }
+            dispatcher.finish(this, startedAt, SystemClock.elapsedRealtime(), result);
+        }
+    }
+
+    private final Object lock = new Object();
+    private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor(threadFactory("db-write"));
+    private final ExecutorService readExecutor = Executors.newFixedThreadPool(READ_THREADS, threadFactory("db-read"));
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Queued reads by name, so a duplicate request joins the one already waiting
+    private final Map<String, Task<?>> pendingReads = new HashMap<>();
+    // Latest sequence per read name; older results are dropped when a newer one was issued
+    private final Map<String, Integer> latestReadSequence = new HashMap<>();
+    private final Map<String, TaskStats> stats = new HashMap<>();
+
+    private DatabaseDispatcher() {
+    }
+
+    public static synchronized DatabaseDispatcher getInstance() {
+        if (instance == null) {
+            instance = new DatabaseDispatcher();
+        }
+        return instance;
+    }
+
+    // Runs on the read pool. A pending read with the same name is coalesced into this one,
+    // and only the newest read of a name delivers its result.
+    @SuppressWarnings("unchecked")
+    public <T> Task<T> read(String name, LifecycleOwner owner, Work<T> work, Callback<T> callback) {
+        synchronized (lock) {
+            int sequence = latestReadSequence.containsKey(name) ? latestReadSequence.get(name) + 1 : 1;
+            latestReadSequence.put(name, sequence);
+
+            Task<T> pending = (Task<T>) pendingReads.get(name);
+            if (pending != null && !pending.started && !pending.cancelled && pending.owner == owner) {
+                pending.work = work;
+                pending.callback = callback;
+                pending.sequence = sequence;
+                return pending;
+            }
+
+            Task<T> task = new Task<>(this, name, false, owner, work, callback);
+            task.sequence = sequence;
+            pendingReads.put(name, task);
+            observe(task);
+            readExecutor.execute(task);
+            return task;
+        }
+    }
+
+    // Runs on the single write lane, in submission order
+    public <T> Task<T> write(String name, LifecycleOwner owner, Work<T> work, Callback<T> callback) {
+        Task<T> task = new Task<>(this, name, true, owner, work, callback);
+        observe(task);
+        writeExecutor.execute(task);
+        return task;
+    }
+
+    public Task<Void> write(String name, Runnable work) {
+        return write(name, null, () -> {
+            work.run();
+            return null;
+        }, null);
+    }
+
+    public List<TaskStats> getStatsSnapshot() {
+        synchronized (lock) {
+            List<TaskStats> snapshot = new ArrayList<>(stats.size());
+            for (TaskStats taskStats : stats.values()) {
+                snapshot.add(taskStats.copy());
+            }
+            return snapshot;
+        }
+    }
+
+    private void observe(Task<?> task) {
+        if (task.owner == null) {
+            return;
+        }
+        // Lifecycle observers may only be registered from the main thread
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            task.owner.getLifecycle().addObserver(task);
+        } else {
+            mainHandler.post(() -> task.owner.getLifecycle().addObserver(task));
+        }
+    }
+
+    private <T> void finish(Task<T> task, long startedAt, long finishedAt, T result) {
+        long queueWaitMs = startedAt - task.enqueuedAt;
+        long runMs = finishedAt - startedAt;
+        boolean stale;
+        Callback<T> callback;
+        synchronized (lock) {
+            TaskStats taskStats = stats.get(task.name);
+            if (taskStats == null) {
+                taskStats = new TaskStats(task.name);
+                stats.put(task.name, taskStats);
+            }
+            taskStats.count++;
+            taskStats.totalQueueWaitMs += queueWaitMs;
+            taskStats.maxQueueWaitMs = Math.max(taskStats.maxQueueWaitMs, queueWaitMs);
+            taskStats.totalRunMs += runMs;
+            taskStats.maxRunMs = Math.max(taskStats.maxRunMs, runMs);
+
+            Integer latest = latestReadSequence.get(task.name);
+            stale = !task.write && latest != null && latest != task.sequence;
+            callback = task.callback;
+        }
+        if (queueWaitMs + runMs > SLOW_TASK_MS) {
+            Log.d(TAG, "Slow task " + task.name + ": waited " + queueWaitMs + "ms, ran " + runMs + "ms");
+        }
+
+        mainHandler.post(() -> {
+            if (task.owner != null) {
+                task.owner.getLifecycle().removeObserver(task);
+            }
+            if (callback != null && !task.cancelled && !stale) {
+                callback.onResult(result);
+            }
+        });
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        };
+    }
+}
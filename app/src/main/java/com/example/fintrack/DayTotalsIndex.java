@@ -0,0 +1,221 @@
+package com.example.fintrack;
+
+import java.util.Arrays;
+
+// Per-day spending totals held as Fenwick trees, one overall and one per category, over a
+// contiguous range of epoch days. A range total is two prefix sums and an edit is one point
+// update, both O(log days), so date-range pickers and rolling windows never touch SQLite.
+// ExpenseAnalytics builds it from a snapshot and moves a copy() of it by each refresh's
+// deltas; a published index is never written again, so readers need no locks. Not safe for
+// concurrent writers. Plain Java, no Android types.
+public final class DayTotalsIndex {
+    // Extra days allocated around the data, so new expenses rarely force a regrow
+    private static final int SLACK_DAYS = 366;
+    // Category trees are allocated lazily; this only sizes the array holding them
+    private static final int INITIAL_CATEGORY_SLOTS = 16;
+
+    // Epoch day stored at tree position 1
+    private int firstDay;
+    private int span;
+    // 1-based Fenwick trees of length span + 1
+    private long[] totals;
+    // By category id, null for categories with no spending yet
+    private long[][] categoryTotals;
+    // False for trees still shared with the index this was copied from; written trees are
+    // cloned first
+    private boolean ownsTotals;
+    private boolean[] ownsCategory;
+
+    private DayTotalsIndex(int firstDay, int span) {
+        this.firstDay = firstDay;
+        this.span = span;
+        totals = new long[span + 1];
+        categoryTotals = new long[INITIAL_CATEGORY_SLOTS][];
+        ownsTotals = true;
+        ownsCategory = new boolean[INITIAL_CATEGORY_SLOTS];
+    }
+
+    private DayTotalsIndex(DayTotalsIndex source) {
+        firstDay = source.firstDay;
+        span = source.span;
+        totals = source.totals;
+        categoryTotals = source.categoryTotals.clone();
+        ownsCategory = new boolean[categoryTotals.length];
+    }
+
+    // An index with the same totals that shares this one's trees until it writes to them, so
+    // moving it by a few changes clones the overall tree and only the categories touched.
+    // This index is left as it was.
+    public DayTotalsIndex copy() {
+        return new DayTotalsIndex(this);
+    }
+
+    // O(rows + days): per-day sums are collected first and turned into trees in place
+    public static DayTotalsIndex build(AnalyticsSnapshot snapshot) {
+        int minDay = Integer.MAX_VALUE;
+        int maxDay = Integer.MIN_VALUE;
+        int slots = snapshot.getSlotCount();
+        for (int i = 0; i < slots; i++) {
+            int day = snapshot.getEpochDayAt(i);
+            if (day != AnalyticsSnapshot.NO_DAY) {
+                minDay = Math.min(minDay, day);
+                maxDay = Math.max(maxDay, day);
+            }
+        }
+        if (minDay > maxDay) {
+            return new DayTotalsIndex(0, 0);
+        }
+
+        DayTotalsIndex index = new DayTotalsIndex(minDay - SLACK_DAYS, maxDay - minDay + 1 + 2 * SLACK_DAYS);
+        for (int i = 0; i < slots; i++) {
+            int day = snapshot.getEpochDayAt(i);
+            int categoryId = snapshot.getCategoryIdAt(i);
+            if (day != AnalyticsSnapshot.NO_DAY && categoryId != AnalyticsSnapshot.DELETED) {
+                int position = day - index.firstDay + 1;
+                index.totals[position] += snapshot.getAmountAt(i);
+                index.writableCategoryTree(categoryId)[position] += snapshot.getAmountAt(i);
+            }
+        }
+        toTree(index.totals);
+        for (long[] tree : index.categoryTotals) {
+            if (tree != null) {
+                toTree(tree);
+            }
+        }
+        return index;
+    }
+
+    // Adds amountMinor, which may be negative, to a day; rows without a day are ignored
+    public void add(int epochDay, int categoryId, long amountMinor) {
+        if (epochDay == AnalyticsSnapshot.NO_DAY || amountMinor == 0) {
+            return;
+        }
+        if (epochDay < firstDay || epochDay >= firstDay + span) {
+            grow(epochDay);
+        }
+        int position = epochDay - firstDay + 1;
+        if (!ownsTotals) {
+            totals = totals.clone();
+            ownsTotals = true;
+        }
+        update(totals, position, amountMinor);
+        if (categoryId >= 0) {
+            update(writableCategoryTree(categoryId), position, amountMinor);
+        }
+    }
+
+    // Sum over the half-open epoch-day range [fromDay, toDay), like AnalyticsSnapshot
+    public long getTotalBetween(int fromDay, int toDay) {
+        return rangeSum(totals, fromDay, toDay);
+    }
+
+    public long getCategoryTotalBetween(int categoryId, int fromDay, int toDay) {
+        long[] tree = categoryId >= 0 && categoryId < categoryTotals.length ? categoryTotals[categoryId] : null;
+        return tree != null ? rangeSum(tree, fromDay, toDay) : 0;
+    }
+
+    // The given number of days ending with, and including, today
+    public long getRollingTotal(int today, int days) {
+        return getTotalBetween(today - days + 1, today + 1);
+    }
+
+    private long rangeSum(long[] tree, int fromDay, int toDay) {
+        int from = Math.max(fromDay, firstDay) - firstDay;
+        int to = Math.min(toDay, firstDay + span) - firstDay;
+        if (to <= from) {
+            return 0;
+        }
+        return prefixSum(tree, to) - prefixSum(tree, from);
+    }
+
+    private long[] writableCategoryTree(int categoryId) {
+        if (categoryId >= categoryTotals.length) {
+            int length = Math.max(categoryId + 1, categoryTotals.length * 2);
+            categoryTotals = Arrays.copyOf(categoryTotals, length);
+            ownsCategory = Arrays.copyOf(ownsCategory, length);
+        }
+        long[] tree = categoryTotals[categoryId];
+        if (tree == null) {
+            tree = new long[span + 1];
+        } else if (!ownsCategory[categoryId]) {
+            tree = tree.clone();
+        }
+        categoryTotals[categoryId] = tree;
+        ownsCategory[categoryId] = true;
+        return tree;
+    }
+
+    // Re-bases every tree on a range covering the old one and the new day, with slack again.
+    // O(days), only when an expense lands outside everything seen so far.
+    private void grow(int epochDay) {
+        if (span == 0) {
+            // Nothing recorded yet, so there is nothing to carry over
+            firstDay = epochDay - SLACK_DAYS;
+            span = 2 * SLACK_DAYS + 1;
+            totals = new long[span + 1];
+            ownsTotals = true;
+            Arrays.fill(categoryTotals, null);
+            return;
+        }
+        int newFirst = Math.min(firstDay, epochDay - SLACK_DAYS);
+        int newSpan = Math.max(firstDay + span, epochDay + SLACK_DAYS + 1) - newFirst;
+        int offset = firstDay - newFirst;
+
+        // regrow() returns new arrays, so afterwards every tree is this index's own
+        totals = regrow(totals, offset, newSpan);
+        ownsTotals = true;
+        for (int i = 0; i < categoryTotals.length; i++) {
+            if (categoryTotals[i] != null) {
+                categoryTotals[i] = regrow(categoryTotals[i], offset, newSpan);
+                ownsCategory[i] = true;
+            }
+        }
+        firstDay = newFirst;
+        span = newSpan;
+    }
+
+    // Leaves tree itself untouched, since it may be shared
+    private static long[] regrow(long[] tree, int offset, int newSpan) {
+        long[] days = tree.clone();
+        fromTree(days);
+        long[] grown = new long[newSpan + 1];
+        System.arraycopy(days, 1, grown, 1 + offset, days.length - 1);
+        toTree(grown);
+        return grown;
+    }
+
+    private static void update(long[] tree, int position, long delta) {
+        for (int i = position; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    // Sum of positions 1..count
+    private static long prefixSum(long[] tree, int count) {
+        long sum = 0;
+        for (int i = count; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    // Per-day values to a Fenwick tree in place, in O(n)
+    private static void toTree(long[] values) {
+        for (int i = 1; i < values.length; i++) {
+            int parent = i + (i & -i);
+            if (parent < values.length) {
+                values[parent] += values[i];
+            }
+        }
+    }
+
+    // Inverse of toTree()
+    private static void fromTree(long[] tree) {
+        for (int i = tree.length - 1; i > 0; i--) {
+            int parent = i + (i & -i);
+            if (parent < tree.length) {
+                tree[parent] -= tree[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.example.fintrack;
+
+import android.content.Intent;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.MenuItem;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.Toolbar;
+
+import com.google.android.material.button.MaterialButton;
+import com.google.android.material.floatingactionbutton.ExtendedFloatingActionButton;
+import com.google.android.material.switchmaterial.SwitchMaterial;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+// Debug-build screen showing PerformanceMonitor, DatabaseDispatcher and QueryMetrics figures
+// plus memory and storage use, refreshed every second. The same text is what Export shares,
+// so a bug report carries exactly what was on screen. It can also check the trigger-maintained
+// rollup tables against the expenses table and rebuild them if they have drifted.
+public class DiagnosticsActivity extends AppCompatActivity {
+    private static final long REFRESH_INTERVAL_MS = 1000;
+    private static final int BAR_WIDTH = 30;
+    private static final int MAX_SLOW_CALLS_SHOWN = 10;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable refreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            render();
+            handler.postDelayed(this, REFRESH_INTERVAL_MS);
+        }
+    };
+
+    private PerformanceMonitor monitor;
+    private QueryMetrics queryMetrics;
+    private TextView reportView;
+    // Counted on the read pool when the screen resumes; the rest is read live
+    private StorageCounts counts;
+    // Drifted rollup buckets found by the last check, null until one has run
+    private Integer rollupMismatches;
+
+    private static class StorageCounts {
+        int expenses;
+        int categories;
+        long photoBytes;
+        long databaseBytes;
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_diagnostics);
+
+        Toolbar toolbar = findViewById(R.id.toolbar);
+        setSupportActionBar(toolbar);
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+            getSupportActionBar().setTitle("Diagnostics");
+        }
+
+        monitor = PerformanceMonitor.getInstance(this);
+        queryMetrics = QueryMetrics.getInstance(this);
+        reportView = findViewById(R.id.tv_report);
+
+        SwitchMaterial metricsSwitch = findViewById(R.id.switch_query_metrics);
+        metricsSwitch.setChecked(queryMetrics.isEnabled());
+        metricsSwitch.setOnCheckedChangeListener((button, checked) -> queryMetrics.setEnabled(checked));
+
+        SwitchMaterial logSwitch = findViewById(R.id.switch_query_log);
+        logSwitch.setChecked(queryMetrics.isLoggingToFile());
+        logSwitch.setOnCheckedChangeListener((button, checked) -> queryMetrics.setLogToFile(checked));
+
+        MaterialButton resetButton = findViewById(R.id.button_reset);
+        resetButton.setOnClickListener(v -> {
+            monitor.reset();
+            queryMetrics.reset();
+            render();
+        });
+
+        MaterialButton checkRollupsButton = findViewById(R.id.button_check_rollups);
+        checkRollupsButton.setOnClickListener(v -> checkRollups(false));
+
+        ExtendedFloatingActionButton exportButton = findViewById(R.id.button_export);
+        exportButton.setOnClickListener(v -> exportReport());
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        loadCounts();
+        handler.post(refreshRunnable);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        handler.removeCallbacks(refreshRunnable);
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+        if (item.getItemId() == android.R.id.home) {
+            finish();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    private void loadCounts() {
+        DatabaseDispatcher.getInstance().read("diagnostics.counts", this, () -> {
+            StorageCounts result = new StorageCounts();
+            result.expenses = ExpenseDatabase.getInstance(this).expenseDao().getExpenseCount();
+            result.categories = CategoryRegistry.getInstance(this).getAll().size();
+            result.photoBytes = PhotoStore.getInstance(this).getStorageBytes();
+            result.databaseBytes = getDatabasePath("expense_database").length();
+            return result;
+        }, result -> {
+            counts = result;
+            render();
+        });
+    }
+
+    // On the write lane, so no trigger runs between reading the rollups and the raw rows
+    private void checkRollups(boolean repair) {
+        ExpenseDatabase database = ExpenseDatabase.getInstance(this);
+        DatabaseDispatcher.getInstance().write(repair ? "diagnostics.repairRollups" : "diagnostics.checkRollups",
+                this, () -> database.verifyRollups(repair), mismatches -> {
+                    // After a repair the buckets it found are fixed
+                    rollupMismatches = repair ? 0 : mismatches;
+                    render();
+                    if (!repair && mismatches > 0) {
+                        new androidx.appcompat.app.AlertDialog.Builder(this)
+                                .setTitle("Rollups out of date")
+                                .setMessage(mismatches + " rollup buckets don't match the expenses table.")
+                                .setPositiveButton("Rebuild", (dialog, which) -> checkRollups(true))
+                                .setNegativeButton("Cancel", null)
+                                .show();
+                    }
+                });
+    }
+
+    private void render() {
+        reportView.setText(buildReport());
+    }
+
+    private void exportReport() {
+        Intent shareIntent = new Intent(Intent.ACTION_SEND);
+        shareIntent.setType("text/plain");
+        shareIntent.putExtra(Intent.EXTRA_TEXT, buildReport());
+        shareIntent.putExtra(Intent.EXTRA_SUBJECT, "FinTrack diagnostics report");
+        startActivity(Intent.createChooser(shareIntent, "Export report via"));
+    }
+
+    private String buildReport() {
+        StringBuilder report = new StringBuilder();
+        report.append("FinTrack diagnostics ")
+                .append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US).format(new Date()))
+                .append('\n')
+                .append("Device: ").append(Build.MANUFACTURER).append(' ').append(Build.MODEL)
+                .append(", Android ").append(Build.VERSION.RELEASE).append(" (API ").append(Build.VERSION.SDK_INT).append(")\n")
+                .append("App: ").append(versionName()).append('\n');
+
+        Runtime runtime = Runtime.getRuntime();
+        long heapUsed = runtime.totalMemory() - runtime.freeMemory();
+        report.append("\nMemory\n")
+                .append("  Java heap: ").append(megabytes(heapUsed)).append(" used of ")
+                .append(megabytes(runtime.maxMemory())).append(" max\n")
+                .append("  Native heap: ").append(megabytes(Debug.getNativeHeapAllocatedSize())).append('\n');
+
+        report.append("\nData\n");
+        if (counts == null) {
+            report.append("  counting...\n");
+        } else {
+            report.append("  Expenses: ").append(counts.expenses).append('\n')
+                    .append("  Categories: ").append(counts.categories).append('\n')
+                    .append("  Database file: ").append(megabytes(counts.databaseBytes)).append('\n')
+                    .append("  Photos: ").append(megabytes(counts.photoBytes)).append('\n');
+        }
+        report.append("  Rollups: ").append(rollupMismatches == null ? "not checked"
+                : rollupMismatches == 0 ? "match expenses" : rollupMismatches + " drifted buckets").append('\n');
+
+        report.append("\nUI");
+        if (!monitor.isEnabled()) {
+            report.append(" (not recorded in release builds)");
+        }
+        report.append('\n');
+        appendHistogram(report, "Feed load", monitor.feedLoad);
+        appendHistogram(report, "Dashboard load", monitor.dashboardLoad);
+        appendHistogram(report, "Row bind", monitor.bind);
+        appendHistogram(report, "Scroll frame interval", monitor.scrollFrames);
+        report.append("  Frames dropped while scrolling: ").append(monitor.getDroppedFrames()).append('\n');
+
+        report.append("\nDatabase tasks\n");
+        for (DatabaseDispatcher.TaskStats taskStats : DatabaseDispatcher.getInstance().getStatsSnapshot()) {
+            report.append("  ").append(taskStats).append('\n');
+        }
+
+        report.append("\nQueries");
+        if (!queryMetrics.isActive()) {
+            report.append(" (not recording)\n");
+        } else {
+            report.append('\n');
+            for (QueryMetrics.MethodStats methodStats : queryMetrics.getStatsSnapshot()) {
+                report.append("  ").append(methodStats).append('\n');
+            }
+            List<QueryMetrics.SlowCall> slowCalls = queryMetrics.getSlowCalls();
+            report.append("\nSlow queries (").append(slowCalls.size()).append(")\n");
+            for (int i = Math.max(0, slowCalls.size() - MAX_SLOW_CALLS_SHOWN); i < slowCalls.size(); i++) {
+                report.append(slowCalls.get(i)).append('\n');
+            }
+            if (queryMetrics.isLoggingToFile()) {
+                report.append("Log file: ").append(queryMetrics.getLogFile()).append('\n');
+            }
+        }
+        return report.toString();
+    }
+
+    // Summary line, then one bar per non-empty bucket scaled to the fullest
+    private static void appendHistogram(StringBuilder report, String label, LatencyHistogram histogram) {
+        report.append("  ").append(label).append(": ").append(histogram).append('\n');
+        long[] bucketCounts = histogram.getCounts();
+        long fullest = 0;
+        for (long count : bucketCounts) {
+            fullest = Math.max(fullest, count);
+        }
+        if (fullest == 0) {
+            return;
+        }
+        for (int i = 0; i < bucketCounts.length; i++) {
+            if (bucketCounts[i] == 0) {
+                continue;
+            }
+            long bound = LatencyHistogram.getBucketBoundNanos(i);
+            String boundText = bound == Long.MAX_VALUE ? "slower" : "<=" + LatencyHistogram.formatMillis(bound);
+            int width = (int) Math.max(1, bucketCounts[i] * BAR_WIDTH / fullest);
+            report.append(String.format(Locale.US, "    %10s ", boundText));
+            for (int j = 0; j < width; j++) {
+                report.append('#');
+            }
+            report.append(' ').append(bucketCounts[i]).append('\n');
+        }
+    }
+
+    private String versionName() {
+        try {
+            PackageInfo info = getPackageManager().getPackageInfo(getPackageName(), 0);
+            return info.versionName;
+        } catch (PackageManager.NameNotFoundException e) {
+            return "unknown";
+        }
+    }
+
+    private static String megabytes(long bytes) {
+        return String.format(Locale.US, "%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+}
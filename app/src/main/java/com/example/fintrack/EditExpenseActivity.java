@@ -3,7 +3,6 @@ package com.example.fintrack;
 import android.app.DatePickerDialog;
 import android.app.TimePickerDialog;
 import android.content.Intent;
-import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Bundle;
 import android.provider.MediaStore;
@@ -17,9 +16,6 @@ import android.widget.Toast;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Locale;
@@ -29,11 +25,15 @@ public class EditExpenseActivity extends AppCompatActivity {
     private Button dateButton, timeButton, photoButton, saveButton;
     private AutoCompleteTextView categorySpinner;
     private ImageView photoImageView;
+    private CategoryRegistry categoryRegistry;
 
     private String selectedDate = "";
     private String selectedTime = "";
     private String photoPath = "";
+    private Uri pendingPhotoUri;
     private int expenseId = -1;
+    // The row as loaded, so the store can take it back out of the dashboard totals
+    private Expense loadedExpense;
     private static final int PICK_IMAGE_REQUEST = 1;
 
     @Override
@@ -62,9 +62,8 @@ public class EditExpenseActivity extends AppCompatActivity {
         photoImageView = findViewById(R.id.image_view_photo);
 
         // Category spinner
-        String[] categories = {"Food & Dining", "Transportation", "Shopping", "Entertainment", "Healthcare", "Education", "Utilities", "Other"};
-        android.widget.ArrayAdapter<String> categoryAdapter = new android.widget.ArrayAdapter<>(this, android.R.layout.simple_dropdown_item_1line, categories);
-        categorySpinner.setAdapter(categoryAdapter);
+        categoryRegistry = CategoryRegistry.getInstance(this);
+        AddExpenseActivity.loadCategories(this, categorySpinner, categoryRegistry);
 
         // Get expense ID from intent
         expenseId = getIntent().getIntExtra("expense_id", -1);
@@ -137,71 +136,54 @@ public class EditExpenseActivity extends AppCompatActivity {
         if (requestCode == PICK_IMAGE_REQUEST && resultCode == RESULT_OK && data != null) {
             Uri imageUri = data.getData();
             if (imageUri != null) {
-                try {
-                    Bitmap bitmap = MediaStore.Images.Media.getBitmap(getContentResolver(), imageUri);
-                    photoImageView.setImageBitmap(bitmap);
-                    photoImageView.setVisibility(View.VISIBLE);
+                // Decoded off the main thread at the view's size
+                photoImageView.setVisibility(View.VISIBLE);
+                ReceiptImageLoader.load(photoImageView, imageUri);
 
-                    // Save image to internal storage
-                    photoPath = saveImageToInternalStorage(bitmap);
-                } catch (IOException e) {
-                    e.printStackTrace();
-                    Toast.makeText(this, "Error loading image", Toast.LENGTH_SHORT).show();
-                }
+                // Stored when the expense is saved, so abandoned picks leave no files behind
+                pendingPhotoUri = imageUri;
             }
         }
     }
 
-    private String saveImageToInternalStorage(Bitmap bitmap) {
-        String fileName = "expense_photo_" + System.currentTimeMillis() + ".jpg";
-        File file = new File(getFilesDir(), fileName);
-
-        try {
-            FileOutputStream fos = new FileOutputStream(file);
-            bitmap.compress(Bitmap.CompressFormat.JPEG, 90, fos);
-            fos.close();
-            return file.getAbsolutePath();
-        } catch (IOException e) {
-            e.printStackTrace();
-            return "";
-        }
-    }
-
     private void loadExpense() {
-        new Thread(() -> {
-            Expense expense = ExpenseDatabase.getInstance(this).expenseDao().getExpenseById(expenseId);
-            if (expense != null) {
-                runOnUiThread(() -> {
-                    titleEditText.setText(expense.getTitle());
-                    amountEditText.setText(String.valueOf(expense.getAmount()));
-                    notesEditText.setText(expense.getNotes());
-                    selectedDate = expense.getDate();
-                    selectedTime = expense.getTime();
-                    dateButton.setText("Date: " + selectedDate);
-                    timeButton.setText("Time: " + selectedTime);
-                    categorySpinner.setText(expense.getCategory(), false);
-                    photoPath = expense.getPhotoPath();
-                    if (photoPath != null && !photoPath.isEmpty()) {
-                        Bitmap bitmap = android.graphics.BitmapFactory.decodeFile(photoPath);
-                        if (bitmap != null) {
-                            photoImageView.setImageBitmap(bitmap);
-                            photoImageView.setVisibility(View.VISIBLE);
-                        }
-                    }
-                });
-            } else {
-                runOnUiThread(() -> {
+        final ExpenseDao expenseDao = ExpenseDatabase.getInstance(this).expenseDao();
+        DatabaseDispatcher.getInstance().read("editExpense.load", this,
+            () -> {
+                // Loaded here so the category name below is an in-memory lookup
+                categoryRegistry.load();
+                return expenseDao.getExpenseById(expenseId);
+            },
+            expense -> {
+                if (expense == null) {
                     Toast.makeText(this, "Expense not found", Toast.LENGTH_SHORT).show();
                     finish();
-                });
-            }
-        }).start();
+                    return;
+                }
+                loadedExpense = expense;
+                titleEditText.setText(expense.getTitle());
+                amountEditText.setText(Money.toPlainString(expense.getAmountMinor()));
+                notesEditText.setText(expense.getNotes());
+                selectedDate = expense.getDate();
+                selectedTime = expense.getTime();
+                dateButton.setText("Date: " + selectedDate);
+                timeButton.setText("Time: " + selectedTime);
+                categorySpinner.setText(categoryRegistry.get(expense.getCategoryId()).getName(), false);
+                photoPath = expense.getPhotoPath();
+                if (photoPath != null && !photoPath.isEmpty()) {
+                    photoImageView.setVisibility(View.VISIBLE);
+                    ReceiptImageLoader.load(photoImageView, photoPath);
+                }
+            });
     }
 
     private void updateExpense() {
+        if (loadedExpense == null) {
+            return;
+        }
         String title = titleEditText.getText().toString().trim();
         String amountStr = amountEditText.getText().toString().trim();
-        String category = categorySpinner.getText().toString();
+        String categoryName = categorySpinner.getText().toString();
         String notes = notesEditText.getText().toString().trim();
 
         if (title.isEmpty()) {
@@ -214,23 +196,39 @@ public class EditExpenseActivity extends AppCompatActivity {
             return;
         }
 
-        double amount;
+        long amountMinor;
         try {
-            amount = Double.parseDouble(amountStr);
+            amountMinor = Money.parse(amountStr);
         } catch (NumberFormatException e) {
             amountEditText.setError("Invalid amount");
             return;
         }
 
-        Expense updatedExpense = new Expense(title, amount, selectedDate, selectedTime, category, notes, photoPath);
+        Expense updatedExpense = new Expense(title, amountMinor, selectedDate, selectedTime, Category.OTHER_ID, notes, photoPath);
         updatedExpense.setId(expenseId);
 
-        new Thread(() -> {
-            ExpenseDatabase.getInstance(this).expenseDao().updateExpense(updatedExpense);
-            runOnUiThread(() -> {
-                Toast.makeText(this, "Expense updated successfully", Toast.LENGTH_SHORT).show();
-                finish();
-            });
-        }).start();
+        final PhotoStore photoStore = PhotoStore.getInstance(this);
+        final Uri photoUri = pendingPhotoUri;
+        if (photoUri == null) {
+            updateInStore(updatedExpense, categoryName, true);
+            return;
+        }
+        // Copied before finishing, like AddExpenseActivity does
+        saveButton.setEnabled(false);
+        DatabaseDispatcher.getInstance().write("storePhoto", this,
+                () -> AddExpenseActivity.storePhoto(photoStore, photoUri, updatedExpense),
+                photoSaved -> {
+                    updateInStore(updatedExpense, categoryName, photoSaved);
+                    // Queued behind the update; the replaced photo may no longer be referenced
+                    photoStore.requestSweep();
+                });
+    }
+
+    private void updateInStore(Expense updatedExpense, String categoryName, boolean photoSaved) {
+        ExpenseStore.getInstance(this).update(loadedExpense, updatedExpense, categoryName);
+        Toast.makeText(this,
+                photoSaved ? "Expense updated successfully" : "Expense updated, but the photo could not be stored",
+                Toast.LENGTH_SHORT).show();
+        finish();
     }
 }
\ No newline at end of file
@@ -1,29 +1,50 @@
 package com.example.fintrack;
 
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-@Entity(tableName = "expenses")
+import java.util.Objects;
+
+@Entity(tableName = "expenses",
+        foreignKeys = {
+                @ForeignKey(entity = Category.class, parentColumns = "id", childColumns = "categoryId",
+                        onDelete = ForeignKey.RESTRICT)
+        },
+        indices = {
+                @Index("timestamp"),
+                @Index({"categoryId", "timestamp"}),
+                @Index("amountMinor")
+        })
 public class Expense {
     @PrimaryKey(autoGenerate = true)
     private int id;
     
     private String title;
-    private double amount;
+    // Minor units at Money.STORAGE_SCALE, e.g. 1250 for 12.50
+    private long amountMinor;
     private String date;
     private String time;
-    private String category;
+    // categories.id; names and colours come from CategoryRegistry
+    private int categoryId;
     private String notes;
     private String photoPath;
 
-    public Expense(String title, double amount, String date, String time, String category, String notes, String photoPath) {
+    // Local epoch millis of date + time, kept in sync by the setters
+    @ColumnInfo(defaultValue = "0")
+    private long timestamp;
+
+    public Expense(String title, long amountMinor, String date, String time, int categoryId, String notes, String photoPath) {
         this.title = title;
-        this.amount = amount;
+        this.amountMinor = amountMinor;
         this.date = date;
         this.time = time;
-        this.category = category;
+        this.categoryId = categoryId;
         this.notes = notes;
         this.photoPath = photoPath;
+        this.timestamp = ExpenseDates.toTimestamp(date, time);
     }
 
     // Getters and Setters
@@ -43,12 +64,12 @@ public class Expense {
         this.title = title;
     }
 
-    public double getAmount() {
-        return amount;
+    public long getAmountMinor() {
+        return amountMinor;
     }
 
-    public void setAmount(double amount) {
-        this.amount = amount;
+    public void setAmountMinor(long amountMinor) {
+        this.amountMinor = amountMinor;
     }
 
     public String getDate() {
@@ -57,6 +78,7 @@ public class Expense {
 
     public void setDate(String date) {
         this.date = date;
+        this.timestamp = ExpenseDates.toTimestamp(date, time);
     }
 
     public String getTime() {
@@ -65,14 +87,15 @@ public class Expense {
 
     public void setTime(String time) {
         this.time = time;
+        this.timestamp = ExpenseDates.toTimestamp(date, time);
     }
 
-    public String getCategory() {
-        return category;
+    public int getCategoryId() {
+        return categoryId;
     }
 
-    public void setCategory(String category) {
-        this.category = category;
+    public void setCategoryId(int categoryId) {
+        this.categoryId = categoryId;
     }
 
     public String getNotes() {
@@ -90,4 +113,27 @@ public class Expense {
     public void setPhotoPath(String photoPath) {
         this.photoPath = photoPath;
     }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    // Hash of the user-visible fields, a cheap first check when diffing list rows
+    public int contentHash() {
+        return Objects.hash(title, amountMinor, date, time, categoryId, notes, photoPath);
+    }
+
+    public boolean hasSameContent(Expense other) {
+        return amountMinor == other.amountMinor
+                && categoryId == other.categoryId
+                && Objects.equals(title, other.title)
+                && Objects.equals(date, other.date)
+                && Objects.equals(time, other.time)
+                && Objects.equals(notes, other.notes)
+                && Objects.equals(photoPath, other.photoPath);
+    }
 } 
\ No newline at end of file
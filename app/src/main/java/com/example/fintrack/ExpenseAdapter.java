@@ -8,17 +8,76 @@ import android.widget.ImageButton;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.google.android.material.card.MaterialCardView;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+
+// Rows are diffed against the previous window on a background thread by ListAdapter,
+// so an insert, edit or delete only touches the row that changed. Rows arrive as render
+// models with the amount text and colour already resolved, so binding only sets views.
+// With a SelectionListener set, a long press starts multi-select; selection changes rebind
+// only the affected rows, with a payload that skips the full bind.
+public class ExpenseAdapter extends ListAdapter<ExpenseAdapter.ExpenseRow, ExpenseAdapter.ExpenseViewHolder> {
+    private static final DiffUtil.ItemCallback<ExpenseRow> DIFF_CALLBACK = new DiffUtil.ItemCallback<ExpenseRow>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull ExpenseRow oldItem, @NonNull ExpenseRow newItem) {
+            // An added row keeps its key when its temporary id is swapped for the stored one
+            return ExpenseStore.stableKey(oldItem.expense.getId()) == ExpenseStore.stableKey(newItem.expense.getId());
+        }
 
-public class ExpenseAdapter extends RecyclerView.Adapter<ExpenseAdapter.ExpenseViewHolder> {
-    private List<Expense> expenseList;
+        @Override
+        public boolean areContentsTheSame(@NonNull ExpenseRow oldItem, @NonNull ExpenseRow newItem) {
+            return oldItem.expense.contentHash() == newItem.expense.contentHash()
+                    && oldItem.expense.hasSameContent(newItem.expense)
+                    && oldItem.amountText.equals(newItem.amountText)
+                    && oldItem.categoryName.equals(newItem.categoryName)
+                    && oldItem.color == newItem.color;
+        }
+    };
+
+    // Built off the main thread by ExpenseFormatter
+    public static class ExpenseRow {
+        public final Expense expense;
+        public final String amountText;
+        public final String categoryName;
+        public final int color;
+
+        public ExpenseRow(Expense expense, String amountText, String categoryName, int color) {
+            this.expense = expense;
+            this.amountText = amountText;
+            this.categoryName = categoryName;
+            this.color = color;
+        }
+    }
+
+    public interface SelectionListener {
+        // Called after every toggle; 0 means selection mode has ended
+        void onSelectionChanged(int selectedCount);
+    }
+
+    private static final Object SELECTION_PAYLOAD = new Object();
+
+    private ExpensePager pager;
     private Context context;
+    private final PerformanceMonitor monitor;
+    // Ids rather than positions, so the selection survives pages loading and rows moving
+    private final Set<Integer> selectedIds = new LinkedHashSet<>();
+    private SelectionListener selectionListener;
 
-    public ExpenseAdapter(List<Expense> expenseList, Context context) {
-        this.expenseList = expenseList;
+    public ExpenseAdapter(ExpensePager pager, Context context) {
+        super(DIFF_CALLBACK);
+        this.pager = pager;
         this.context = context;
+        monitor = PerformanceMonitor.getInstance(context);
+        setHasStableIds(true);
     }
 
     @NonNull
@@ -28,21 +87,99 @@ public class ExpenseAdapter extends RecyclerView.Adapter<ExpenseAdapter.ExpenseV
         return new ExpenseViewHolder(view);
     }
 
+    public void setSelectionListener(SelectionListener selectionListener) {
+        this.selectionListener = selectionListener;
+    }
+
+    public boolean isSelecting() {
+        return !selectedIds.isEmpty();
+    }
+
+    public List<Integer> getSelectedIds() {
+        return new ArrayList<>(selectedIds);
+    }
+
+    // The selected rows still in the list, for applying a delete before it is written
+    public List<Expense> getSelectedExpenses() {
+        List<Expense> expenses = new ArrayList<>(selectedIds.size());
+        for (ExpenseRow row : getCurrentList()) {
+            if (selectedIds.contains(row.expense.getId())) {
+                expenses.add(row.expense);
+            }
+        }
+        return expenses;
+    }
+
+    public void clearSelection() {
+        if (selectedIds.isEmpty()) {
+            return;
+        }
+        selectedIds.clear();
+        notifyItemRangeChanged(0, getItemCount(), SELECTION_PAYLOAD);
+        if (selectionListener != null) {
+            selectionListener.onSelectionChanged(0);
+        }
+    }
+
+    private void toggleSelection(int position) {
+        int id = getItem(position).expense.getId();
+        if (!selectedIds.remove(id)) {
+            selectedIds.add(id);
+        }
+        notifyItemChanged(position, SELECTION_PAYLOAD);
+        selectionListener.onSelectionChanged(selectedIds.size());
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ExpenseViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (!payloads.isEmpty() && allSelectionPayloads(payloads)) {
+            holder.bindSelection(selectedIds.contains(getItem(position).expense.getId()));
+        } else {
+            onBindViewHolder(holder, position);
+        }
+    }
+
+    private static boolean allSelectionPayloads(List<Object> payloads) {
+        for (Object payload : payloads) {
+            if (payload != SELECTION_PAYLOAD) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public void onBindViewHolder(@NonNull ExpenseViewHolder holder, int position) {
-        Expense expense = expenseList.get(position);
-        holder.bind(expense);
+        long startedAt = monitor.start();
+        holder.bind(getItem(position));
+        monitor.recordSince(monitor.bind, startedAt);
+        // Search results are a fixed list, only the feed pages
+        if (pager != null) {
+            pager.onItemBound(position, getItemCount());
+        }
     }
 
     @Override
-    public int getItemCount() {
-        return expenseList.size();
+    public long getItemId(int position) {
+        return ExpenseStore.stableKey(getItem(position).expense.getId());
     }
 
-    class ExpenseViewHolder extends RecyclerView.ViewHolder {
+    // An add the store hasn't written yet has a temporary, negative id
+    private static boolean isPending(Expense expense) {
+        return expense.getId() <= 0;
+    }
+
+    // One click handler per holder, set once; clicks act on whichever row is bound
+    class ExpenseViewHolder extends RecyclerView.ViewHolder
+            implements View.OnClickListener, View.OnLongClickListener {
         private TextView tvTitle, tvAmount, tvDate, tvCategory, tvTime;
         private View categoryIndicator;
         private ImageButton btnShare, btnDelete, btnEdit;
+        private final MaterialCardView card;
+        private final int cardColor;
+        private final int selectedColor;
+        private final int selectedStrokeWidth;
+        private Expense expense;
 
         public ExpenseViewHolder(@NonNull View itemView) {
             super(itemView);
@@ -55,76 +192,71 @@ public class ExpenseAdapter extends RecyclerView.Adapter<ExpenseAdapter.ExpenseV
             btnShare = itemView.findViewById(R.id.btn_share);
             btnDelete = itemView.findViewById(R.id.btn_delete);
             btnEdit = itemView.findViewById(R.id.btn_edit);
+            card = (MaterialCardView) itemView;
+            cardColor = ContextCompat.getColor(context, R.color.card_background);
+            selectedColor = ContextCompat.getColor(context, R.color.primary_light);
+            selectedStrokeWidth = Math.round(2 * context.getResources().getDisplayMetrics().density);
+            card.setStrokeColor(ContextCompat.getColor(context, R.color.primary));
+
+            btnShare.setOnClickListener(this);
+            btnDelete.setOnClickListener(this);
+            btnEdit.setOnClickListener(this);
+            itemView.setOnClickListener(this);
+            itemView.setOnLongClickListener(this);
         }
 
-        public void bind(final Expense expense) {
+        public void bind(ExpenseRow row) {
+            expense = row.expense;
             tvTitle.setText(expense.getTitle());
-            tvAmount.setText(String.format("%s%.2f", getCurrencySymbol(), expense.getAmount()));
+            tvAmount.setText(row.amountText);
             tvDate.setText(expense.getDate());
-            tvCategory.setText(expense.getCategory());
+            tvCategory.setText(row.categoryName);
             tvTime.setText(expense.getTime());
+            categoryIndicator.setBackgroundColor(row.color);
+            bindSelection(selectedIds.contains(expense.getId()));
+        }
 
-            // Set category color indicator
-            int color = getCategoryColor(expense.getCategory());
-            categoryIndicator.setBackgroundColor(color);
-
-            // Share button
-            btnShare.setOnClickListener(new View.OnClickListener() {
-                @Override
-                public void onClick(View v) {
-                    if (context instanceof MainActivity) {
-                        ((MainActivity) context).shareExpense(expense);
-                    }
-                }
-            });
-
-            // Delete button
-            btnDelete.setOnClickListener(new View.OnClickListener() {
-                @Override
-                public void onClick(View v) {
-                    if (context instanceof MainActivity) {
-                        ((MainActivity) context).deleteExpense(expense);
-                    }
-                }
-            });
-
-            // Edit button
-            btnEdit.setOnClickListener(new View.OnClickListener() {
-                @Override
-                public void onClick(View v) {
-                    android.content.Intent intent = new android.content.Intent(context, EditExpenseActivity.class);
-                    intent.putExtra("expense_id", expense.getId());
-                    context.startActivity(intent);
-                }
-            });
+        void bindSelection(boolean selected) {
+            card.setCardBackgroundColor(selected ? selectedColor : cardColor);
+            card.setStrokeWidth(selected ? selectedStrokeWidth : 0);
         }
 
-        private int getCategoryColor(String category) {
-            switch (category) {
-                case "Food & Dining":
-                    return context.getColor(R.color.category_food);
-                case "Transportation":
-                    return context.getColor(R.color.category_transport);
-                case "Shopping":
-                    return context.getColor(R.color.category_shopping);
-                case "Entertainment":
-                    return context.getColor(R.color.category_entertainment);
-                case "Healthcare":
-                    return context.getColor(R.color.category_healthcare);
-                case "Education":
-                    return context.getColor(R.color.category_education);
-                case "Utilities":
-                    return context.getColor(R.color.category_utilities);
-                default:
-                    return context.getColor(R.color.category_other);
+        @Override
+        public boolean onLongClick(View v) {
+            int position = getBindingAdapterPosition();
+            if (selectionListener == null || position == RecyclerView.NO_POSITION
+                    || isPending(getItem(position).expense)) {
+                return false;
             }
+            toggleSelection(position);
+            return true;
         }
 
-        private String getCurrencySymbol() {
-            // Get currency from SharedPreferences
-            android.content.SharedPreferences prefs = context.getSharedPreferences("FinTrackSettings", android.content.Context.MODE_PRIVATE);
-            String currency = prefs.getString("currency", "RM");
-            return SettingsActivity.getCurrencySymbol(currency);
+        @Override
+        public void onClick(View v) {
+            if (expense == null || isPending(expense)) {
+                return;
+            }
+            int position = getBindingAdapterPosition();
+            if (isSelecting() && position != RecyclerView.NO_POSITION) {
+                // While selecting, a tap anywhere on the row toggles it
+                toggleSelection(position);
+                return;
+            }
+            int id = v.getId();
+            if (id == R.id.btn_share) {
+                if (context instanceof MainActivity) {
+                    ((MainActivity) context).shareExpense(expense);
+                }
+            } else if (id == R.id.btn_delete) {
+                if (context instanceof MainActivity) {
+                    ((MainActivity) context).deleteExpense(expense);
+                }
+            } else if (id == R.id.btn_edit) {
+                android.content.Intent intent = new android.content.Intent(context, EditExpenseActivity.class);
+                intent.putExtra("expense_id", expense.getId());
+                context.startActivity(intent);
+            }
         }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,189 @@
+package com.example.fintrack;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.util.List;
+
+// Keeps an AnalyticsSnapshot of the expenses table. The first refresh() loads every row;
+// later ones read only the ids that triggers have logged in expense_changes since, so a
+// single edit costs one row read. A DayTotalsIndex is kept alongside and moved by the same
+// changes. Each refresh works on private copies and publishes them with their seq as one
+// State, so a reader never sees an index half way through a refresh or paired with another
+// seq. refresh() does IO and belongs on the dispatcher's read pool.
+public final class ExpenseAnalytics {
+    // Rows per IN (...) query, well under SQLite's 999 variable limit
+    private static final int CHANGE_CHUNK_SIZE = 500;
+
+    private static ExpenseAnalytics instance;
+
+    @Entity(tableName = "expense_changes")
+    public static class ChangeLogEntry {
+        @PrimaryKey(autoGenerate = true)
+        public long seq;
+        public int expenseId;
+    }
+
+    // One refresh's result; nothing in it is written after it is published
+    public static final class State {
+        public final AnalyticsSnapshot snapshot;
+        public final DayTotalsIndex dayTotals;
+        // Last change-log entry folded into both
+        public final long appliedSeq;
+
+        State(AnalyticsSnapshot snapshot, DayTotalsIndex dayTotals, long appliedSeq) {
+            this.snapshot = snapshot;
+            this.dayTotals = dayTotals;
+            this.appliedSeq = appliedSeq;
+        }
+    }
+
+    private final ExpenseDao expenseDao;
+    private volatile State state;
+
+    private ExpenseAnalytics(Context context) {
+        expenseDao = ExpenseDatabase.getInstance(context).expenseDao();
+    }
+
+    public static synchronized ExpenseAnalytics getInstance(Context context) {
+        if (instance == null) {
+            instance = new ExpenseAnalytics(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    // The last refresh's snapshot, index and seq, or null before the first refresh. Read it
+    // once and use its fields together.
+    public State getState() {
+        return state;
+    }
+
+    // The last refreshed snapshot, or null before the first refresh
+    public AnalyticsSnapshot getSnapshot() {
+        State current = state;
+        return current != null ? current.snapshot : null;
+    }
+
+    // The expense_changes seq the last refresh included
+    public long getAppliedSeq() {
+        State current = state;
+        return current != null ? current.appliedSeq : 0;
+    }
+
+    // Brings the snapshot up to date and returns it. The log position is read before the rows,
+    // so a write racing the refresh is logged after it and re-applied next time; applying a
+    // change reads the row's current state, so doing it twice is harmless. That keeps a long
+    // load out of a transaction that would block the write lane.
+    public synchronized AnalyticsSnapshot refresh() {
+        State current = state;
+        long seq = expenseDao.getLastChangeSeq();
+        AnalyticsSnapshot refreshed;
+        DayTotalsIndex dayTotals;
+        if (current == null) {
+            refreshed = load();
+            dayTotals = DayTotalsIndex.build(refreshed);
+        } else if (seq == current.appliedSeq) {
+            return current.snapshot;
+        } else if (expenseDao.getChangeCount(current.appliedSeq, seq) > current.snapshot.getRowCount() / 2) {
+            // Past half the table a full scan is cheaper than id lookups
+            refreshed = load();
+            dayTotals = DayTotalsIndex.build(refreshed);
+        } else {
+            // The published index stays as it is; only the trees these changes touch are cloned
+            dayTotals = current.dayTotals.copy();
+            refreshed = applyChanges(current.snapshot,
+                    expenseDao.getChangedIds(current.appliedSeq, seq), dayTotals);
+        }
+        state = new State(refreshed, dayTotals, seq);
+
+        // The log is only read here, so everything folded in can go. The newest entry stays:
+        // MAX(seq) is the version ExpenseStore compares loaded figures against.
+        DatabaseDispatcher.getInstance().write("analyticsPrune", () -> expenseDao.deleteChangesBefore(seq));
+        return refreshed;
+    }
+
+    private AnalyticsSnapshot load() {
+        AnalyticsSnapshot.Builder builder = new AnalyticsSnapshot.Builder(expenseDao.getExpenseCount());
+        Cursor cursor = expenseDao.queryAnalyticsColumns();
+        try {
+            while (cursor.moveToNext()) {
+                builder.put(cursor.getInt(0), epochDay(cursor), cursor.getLong(1), cursor.getInt(2));
+            }
+        } finally {
+            cursor.close();
+        }
+        return builder.build();
+    }
+
+    // Changed ids arrive in ascending order; ids no longer in the table were deleted. The
+    // index moves each row from its value in current to its new one, so a change applied a
+    // second time moves nothing.
+    private AnalyticsSnapshot applyChanges(AnalyticsSnapshot current, List<Integer> changedIds,
+                                           DayTotalsIndex index) {
+        AnalyticsSnapshot.Builder builder = current.toBuilder();
+        for (int start = 0; start < changedIds.size(); start += CHANGE_CHUNK_SIZE) {
+            List<Integer> chunk = changedIds.subList(start, Math.min(changedIds.size(), start + CHANGE_CHUNK_SIZE));
+            Cursor cursor = expenseDao.queryAnalyticsColumnsFor(chunk);
+            try {
+                int next = 0;
+                while (cursor.moveToNext()) {
+                    int id = cursor.getInt(0);
+                    while (chunk.get(next) < id) {
+                        remove(builder, current, index, chunk.get(next++));
+                    }
+                    next++;
+                    int epochDay = epochDay(cursor);
+                    long amountMinor = cursor.getLong(1);
+                    int categoryId = cursor.getInt(2);
+                    subtractPrevious(current, index, id);
+                    index.add(epochDay, categoryId, amountMinor);
+                    builder.put(id, epochDay, amountMinor, categoryId);
+                }
+                while (next < chunk.size()) {
+                    remove(builder, current, index, chunk.get(next++));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return builder.build();
+    }
+
+    private static void remove(AnalyticsSnapshot.Builder builder, AnalyticsSnapshot current,
+                               DayTotalsIndex index, int id) {
+        subtractPrevious(current, index, id);
+        builder.remove(id);
+    }
+
+    private static void subtractPrevious(AnalyticsSnapshot current, DayTotalsIndex index, int id) {
+        int slot = current.indexOf(id);
+        if (slot >= 0 && current.getCategoryIdAt(slot) != AnalyticsSnapshot.DELETED) {
+            index.add(current.getEpochDayAt(slot), current.getCategoryIdAt(slot), -current.getAmountAt(slot));
+        }
+    }
+
+    private static int epochDay(Cursor cursor) {
+        return cursor.isNull(3) ? AnalyticsSnapshot.NO_DAY : cursor.getInt(3);
+    }
+
+    // Same schema Room generates for ChangeLogEntry
+    static void createTable(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS `expense_changes` (`seq` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                + "`expenseId` INTEGER NOT NULL)");
+    }
+
+    // Only the columns the snapshot holds are watched
+    static void createTriggers(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `changes_expenses_insert` AFTER INSERT ON `expenses` BEGIN "
+                + "INSERT INTO expense_changes (expenseId) VALUES (NEW.id); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `changes_expenses_delete` AFTER DELETE ON `expenses` BEGIN "
+                + "INSERT INTO expense_changes (expenseId) VALUES (OLD.id); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `changes_expenses_update` "
+                + "AFTER UPDATE OF `amountMinor`, `date`, `categoryId` ON `expenses` BEGIN "
+                + "INSERT INTO expense_changes (expenseId) VALUES (NEW.id); END");
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.fintrack;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Changes to a multi-selection of expenses. Each call is one transaction, so Room invalidates
+// once and the feed, dashboard and analytics refresh once per batch however many rows it
+// touches. Deletes are soft: rows move to deleted_expenses with their ids and can be put back
+// until they are purged PURGE_AFTER_MS later. Moving rather than flagging them means every
+// existing query, trigger and rollup already leaves them out. All methods except
+// requestPurge() do IO and belong on the dispatcher's write lane.
+public final class ExpenseBatchEditor {
+    // How long the undo action is offered
+    public static final int UNDO_WINDOW_MS = 8000;
+    // Well past the undo window, so an undo tapped at the last moment still finds its rows
+    private static final long PURGE_AFTER_MS = 60 * 1000L;
+    // Ids per IN (...) statement, well under SQLite's 999 variable limit
+    private static final int CHUNK_SIZE = 500;
+
+    private static ExpenseBatchEditor instance;
+
+    // An expenses row waiting out the undo window
+    @Entity(tableName = "deleted_expenses", indices = {@Index("batchId")})
+    public static class DeletedExpense {
+        // The id it had, and gets back, in expenses
+        @PrimaryKey
+        public int id;
+        public String title;
+        public long amountMinor;
+        public String date;
+        public String time;
+        public int categoryId;
+        public String notes;
+        public String photoPath;
+        public long timestamp;
+        // Deletion time in millis, unique per delete() call, so it also names the batch
+        public long batchId;
+    }
+
+    private final ExpenseDatabase database;
+    private final PhotoStore photoStore;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable purgeRunnable = this::requestPurge;
+    private final AtomicBoolean purgePending = new AtomicBoolean(false);
+    private long lastBatchId;
+
+    private ExpenseBatchEditor(Context context) {
+        database = ExpenseDatabase.getInstance(context);
+        photoStore = PhotoStore.getInstance(context);
+    }
+
+    public static synchronized ExpenseBatchEditor getInstance(Context context) {
+        if (instance == null) {
+            instance = new ExpenseBatchEditor(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    // Moves the expenses to the trash and returns the batch id for restore()
+    public long delete(List<Integer> ids) {
+        long batchId = nextBatchId();
+        ExpenseDao expenseDao = database.expenseDao();
+        database.runInTransaction(() -> {
+            for (List<Integer> chunk : chunks(ids)) {
+                expenseDao.copyToTrash(chunk, batchId);
+                expenseDao.deleteExpensesByIds(chunk);
+            }
+        });
+        // Restarted by every delete, so a run of deletes is purged once
+        mainHandler.removeCallbacks(purgeRunnable);
+        mainHandler.postDelayed(purgeRunnable, PURGE_AFTER_MS);
+        return batchId;
+    }
+
+    // Puts a deleted batch back under its old ids and returns how many rows came back,
+    // 0 once it has been purged
+    public int restore(long batchId) {
+        ExpenseDao expenseDao = database.expenseDao();
+        return database.runInTransaction(() -> {
+            expenseDao.restoreTrashBatch(batchId);
+            return expenseDao.deleteTrashBatch(batchId);
+        });
+    }
+
+    public void setCategory(List<Integer> ids, int categoryId) {
+        ExpenseDao expenseDao = database.expenseDao();
+        database.runInTransaction(() -> {
+            for (List<Integer> chunk : chunks(ids)) {
+                expenseDao.setCategory(chunk, categoryId);
+            }
+        });
+    }
+
+    // Moves each expense the given number of days, negative for earlier, keeping its time.
+    // Dates are shifted in Java so timestamps are recomputed in local time across DST.
+    public void shiftDates(List<Integer> ids, int days) {
+        ExpenseDao expenseDao = database.expenseDao();
+        database.runInTransaction(() -> {
+            for (List<Integer> chunk : chunks(ids)) {
+                List<Expense> expenses = expenseDao.getExpensesByIds(chunk);
+                for (Expense expense : expenses) {
+                    long epochDay = ExpenseDates.toEpochDay(expense.getDate());
+                    if (epochDay != Long.MIN_VALUE) {
+                        expense.setDate(ExpenseDates.formatEpochDay(epochDay + days));
+                    }
+                }
+                expenseDao.updateExpenses(expenses);
+            }
+        });
+    }
+
+    // Queues a purge on the write lane unless one is already waiting; also run at startup for
+    // batches a previous process didn't get to
+    public void requestPurge() {
+        if (purgePending.compareAndSet(false, true)) {
+            DatabaseDispatcher.getInstance().write("purgeTrash", () -> {
+                purgePending.set(false);
+                purge(System.currentTimeMillis());
+            });
+        }
+    }
+
+    // Drops batches deleted more than PURGE_AFTER_MS before now and returns the row count.
+    // Their receipts stay referenced until this point, then the photo sweep may take them.
+    int purge(long now) {
+        ExpenseDao expenseDao = database.expenseDao();
+        long before = now - PURGE_AFTER_MS;
+        boolean hadPhotos = expenseDao.countTrashedPhotosBefore(before) > 0;
+        int purged = expenseDao.purgeTrashBefore(before);
+        if (hadPhotos) {
+            photoStore.requestSweep();
+        }
+        return purged;
+    }
+
+    private synchronized long nextBatchId() {
+        lastBatchId = Math.max(System.currentTimeMillis(), lastBatchId + 1);
+        return lastBatchId;
+    }
+
+    private static List<List<Integer>> chunks(List<Integer> ids) {
+        List<List<Integer>> chunks = new ArrayList<>();
+        for (int start = 0; start < ids.size(); start += CHUNK_SIZE) {
+            chunks.add(ids.subList(start, Math.min(start + CHUNK_SIZE, ids.size())));
+        }
+        return chunks;
+    }
+
+    // Same schema Room generates for DeletedExpense
+    static void createTable(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS `deleted_expenses` (`id` INTEGER NOT NULL, `title` TEXT, "
+                + "`amountMinor` INTEGER NOT NULL, `date` TEXT, `time` TEXT, `categoryId` INTEGER NOT NULL, "
+                + "`notes` TEXT, `photoPath` TEXT, `timestamp` INTEGER NOT NULL, `batchId` INTEGER NOT NULL, "
+                + "PRIMARY KEY(`id`))");
+        db.execSQL("CREATE INDEX IF NOT EXISTS `index_deleted_expenses_batchId` ON `deleted_expenses` (`batchId`)");
+    }
+}
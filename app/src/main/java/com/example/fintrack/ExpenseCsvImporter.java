@@ -0,0 +1,386 @@
+package com.example.fintrack;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.OpenableColumns;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Imports expenses from a CSV document (bank exports and similar). The file is parsed one
+// record at a time and inserted in chunks of CHUNK_SIZE rows, each chunk in one transaction.
+public class ExpenseCsvImporter {
+    public static final int CHUNK_SIZE = 1000;
+    private static final int MAX_REPORTED_ERRORS = 20;
+    private static final String DEFAULT_TIME = "00:00";
+
+    public interface ProgressListener {
+        // Called on the importing thread after every committed chunk
+        void onProgress(int imported, int skipped, long bytesRead, long totalBytes);
+    }
+
+    public static class Result {
+        public int imported;
+        public int skipped;
+        public boolean cancelled;
+        public final List<String> errors = new ArrayList<>();
+
+        void addError(String error) {
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(error);
+            }
+        }
+    }
+
+    private final ExpenseDao expenseDao;
+    private final CategoryRegistry categoryRegistry;
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+
+    public ExpenseCsvImporter(ExpenseDao expenseDao, CategoryRegistry categoryRegistry) {
+        this.expenseDao = expenseDao;
+        this.categoryRegistry = categoryRegistry;
+    }
+
+    // Safe to call from any thread; rows committed before the cancel are kept
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    public Result importFrom(ContentResolver resolver, Uri uri, ProgressListener listener) throws IOException {
+        long totalBytes = querySize(resolver, uri);
+        InputStream input = resolver.openInputStream(uri);
+        if (input == null) {
+            throw new IOException("Unable to open " + uri);
+        }
+        CountingInputStream counting = new CountingInputStream(new BufferedInputStream(input));
+        try {
+            return importFrom(new CsvReader(new InputStreamReader(counting, StandardCharsets.UTF_8)),
+                    counting, totalBytes, listener);
+        } finally {
+            counting.close();
+        }
+    }
+
+    private Result importFrom(CsvReader csv, CountingInputStream counting, long totalBytes,
+                              ProgressListener listener) throws IOException {
+        Result result = new Result();
+        List<String> header = csv.readRecord();
+        ColumnMapping mapping = header == null ? null : ColumnMapping.fromHeader(header);
+        if (mapping == null) {
+            result.addError("Missing a header with title, amount and date columns");
+            return result;
+        }
+
+        List<Expense> chunk = new ArrayList<>(CHUNK_SIZE);
+        List<String> record;
+        while ((record = csv.readRecord()) != null) {
+            if (cancelled.get()) {
+                result.cancelled = true;
+                break;
+            }
+            if (record.size() == 1 && record.get(0).trim().isEmpty()) {
+                continue;
+            }
+
+            Expense expense = mapping.toExpense(record, csv.getLineNumber(), categoryRegistry, result);
+            if (expense == null) {
+                result.skipped++;
+                continue;
+            }
+            chunk.add(expense);
+            if (chunk.size() == CHUNK_SIZE) {
+                commit(chunk, result, counting, totalBytes, listener);
+            }
+        }
+        if (!chunk.isEmpty() && !result.cancelled) {
+            commit(chunk, result, counting, totalBytes, listener);
+        }
+        return result;
+    }
+
+    private void commit(List<Expense> chunk, Result result, CountingInputStream counting, long totalBytes,
+                        ProgressListener listener) {
+        // A single multi-row @Insert runs in one transaction
+        expenseDao.insertExpenses(chunk);
+        result.imported += chunk.size();
+        chunk.clear();
+        if (listener != null) {
+            listener.onProgress(result.imported, result.skipped, counting.count, totalBytes);
+        }
+    }
+
+    private static long querySize(ContentResolver resolver, Uri uri) {
+        Cursor cursor = resolver.query(uri, new String[]{OpenableColumns.SIZE}, null, null, null);
+        if (cursor == null) {
+            return -1;
+        }
+        try {
+            return cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // Maps header names (and common bank-export aliases) to column positions. One mapping
+    // lives for one file, so it also carries the decimal separator that file's amounts use.
+    static class ColumnMapping {
+        // parseAmount() result for text that isn't an amount; every other long is a valid one
+        static final long INVALID_AMOUNT = Long.MIN_VALUE;
+
+        int title = -1;
+        int amount = -1;
+        int date = -1;
+        int time = -1;
+        int category = -1;
+        int notes = -1;
+        // '.' or ',' once an amount has shown which one is the decimal separator, else 0
+        char decimalSeparator;
+
+        static ColumnMapping fromHeader(List<String> header) {
+            ColumnMapping mapping = new ColumnMapping();
+            for (int i = 0; i < header.size(); i++) {
+                String name = header.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT);
+                switch (name) {
+                    case "title":
+                    case "description":
+                    case "payee":
+                    case "merchant":
+                    case "name":
+                        if (mapping.title < 0) {
+                            mapping.title = i;
+                        }
+                        break;
+                    case "amount":
+                    case "value":
+                    case "debit":
+                        if (mapping.amount < 0) {
+                            mapping.amount = i;
+                        }
+                        break;
+                    case "date":
+                    case "transaction date":
+                    case "posted date":
+                        if (mapping.date < 0) {
+                            mapping.date = i;
+                        }
+                        break;
+                    case "time":
+                        mapping.time = i;
+                        break;
+                    case "category":
+                        mapping.category = i;
+                        break;
+                    case "notes":
+                    case "note":
+                    case "memo":
+                    case "reference":
+                        if (mapping.notes < 0) {
+                            mapping.notes = i;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (mapping.title < 0 || mapping.amount < 0 || mapping.date < 0) {
+                return null;
+            }
+            return mapping;
+        }
+
+        Expense toExpense(List<String> record, long line, CategoryRegistry categoryRegistry, Result result) {
+            String titleText = column(record, title);
+            if (titleText.isEmpty()) {
+                result.addError("Line " + line + ": missing title");
+                return null;
+            }
+            long value = parseAmount(column(record, amount));
+            if (value == INVALID_AMOUNT) {
+                result.addError("Line " + line + ": invalid or ambiguous amount \"" + column(record, amount) + "\"");
+                return null;
+            }
+            String rawDate = column(record, date);
+            String parsedDate = parseDate(rawDate);
+            if (parsedDate == null) {
+                result.addError("Line " + line + ": invalid date \"" + rawDate + "\"");
+                return null;
+            }
+
+            // "yyyy-MM-dd HH:mm" in the date column also supplies the time
+            String parsedTime = parseTime(column(record, time));
+            if (parsedTime == null && rawDate.length() >= 16) {
+                parsedTime = parseTime(rawDate.substring(11));
+            }
+
+            // Unknown names become custom categories, blank ones go to Other
+            Category categoryEntry = categoryRegistry.getOrCreate(column(record, category));
+            return new Expense(titleText, value, parsedDate,
+                    parsedTime != null ? parsedTime : DEFAULT_TIME,
+                    categoryEntry.getId(),
+                    column(record, notes), "");
+        }
+
+        private static String column(List<String> record, int index) {
+            return index >= 0 && index < record.size() ? record.get(index).trim() : "";
+        }
+
+        // Accepts symbols and thousands separators. The sign is kept, as the app stores
+        // refunds and other credits as negative amounts: "-12.50", "-$12.50", "12.50-" and
+        // "(12.50)" are all -1250. Both "1,234.56" and "1.234,56" are read; the first amount
+        // that shows which separator is the decimal one fixes it for the rest of the file.
+        // Returns INVALID_AMOUNT when there is no number, when the separators could be read
+        // either way (a lone "1,234" before the file's style is known), when they contradict
+        // the file's style, when there are more decimals than are stored, or when the sign is
+        // doubled or sits inside the number.
+        long parseAmount(String raw) {
+            StringBuilder number = new StringBuilder(raw.length());
+            int points = 0;
+            int commas = 0;
+            int lastSeparator = -1;
+            int minuses = 0;
+            int minusAt = -1;
+            for (int i = 0; i < raw.length(); i++) {
+                char c = raw.charAt(i);
+                if (c >= '0' && c <= '9') {
+                    number.append(c);
+                } else if (c == '-') {
+                    minuses++;
+                    minusAt = number.length();
+                } else if (c == '.' || c == ',') {
+                    if (c == '.') {
+                        points++;
+                    } else {
+                        commas++;
+                    }
+                    lastSeparator = number.length();
+                    number.append(c);
+                }
+            }
+            if (number.length() == points + commas) {
+                return INVALID_AMOUNT;
+            }
+            String trimmed = raw.trim();
+            boolean parenthesised = trimmed.startsWith("(") && trimmed.endsWith(")");
+            if (minuses + (parenthesised ? 1 : 0) > 1 || (minuses == 1 && minusAt != 0 && minusAt != number.length())) {
+                return INVALID_AMOUNT;
+            }
+            boolean negative = minuses == 1 || parenthesised;
+
+            // 0 when the amount has no decimal part
+            char decimal = 0;
+            char grouping = 0;
+            if (points > 0 && commas > 0) {
+                decimal = number.charAt(lastSeparator);
+                grouping = decimal == '.' ? ',' : '.';
+                if ((decimal == '.' ? points : commas) != 1) {
+                    return INVALID_AMOUNT;
+                }
+            } else if (points + commas > 1) {
+                grouping = points > 0 ? '.' : ',';
+            } else if (points + commas == 1) {
+                char separator = number.charAt(lastSeparator);
+                if (number.length() - lastSeparator - 1 == 3) {
+                    // "1,234" is a thousand or one and a bit; only the file's style can tell
+                    if (decimalSeparator == 0 || decimalSeparator == separator) {
+                        return INVALID_AMOUNT;
+                    }
+                    grouping = separator;
+                } else {
+                    decimal = separator;
+                }
+            }
+
+            char fileDecimal = decimal != 0 ? decimal : grouping == '.' ? ',' : grouping == ',' ? '.' : 0;
+            if (fileDecimal != 0 && decimalSeparator != 0 && fileDecimal != decimalSeparator) {
+                return INVALID_AMOUNT;
+            }
+
+            int decimalAt = decimal != 0 ? number.indexOf(String.valueOf(decimal)) : number.length();
+            String whole = number.substring(0, decimalAt);
+            String fraction = decimal != 0 ? number.substring(decimalAt + 1) : "";
+            if (fraction.length() > Money.STORAGE_DECIMALS) {
+                return INVALID_AMOUNT;
+            }
+            if (grouping != 0) {
+                // Groups of three after a leading group of one to three digits
+                String[] groups = whole.split(grouping == '.' ? "\\." : ",", -1);
+                if (groups[0].isEmpty() || groups[0].length() > 3) {
+                    return INVALID_AMOUNT;
+                }
+                for (int i = 1; i < groups.length; i++) {
+                    if (groups[i].length() != 3) {
+                        return INVALID_AMOUNT;
+                    }
+                }
+                whole = whole.replace(String.valueOf(grouping), "");
+            }
+            try {
+                long value = Money.parse((whole.isEmpty() ? "0" : whole) + "." + (fraction.isEmpty() ? "0" : fraction));
+                if (fileDecimal != 0) {
+                    decimalSeparator = fileDecimal;
+                }
+                return negative ? -value : value;
+            } catch (NumberFormatException e) {
+                return INVALID_AMOUNT;
+            }
+        }
+
+        // "yyyy-MM-dd" or "yyyy/MM/dd", normalised to "yyyy-MM-dd". Days past the end of the
+        // month, such as "2024-02-31", are rejected rather than rolled into the next month.
+        static String parseDate(String raw) {
+            if (raw.length() < 10) {
+                return null;
+            }
+            String date = raw.substring(0, 10).replace('/', '-');
+            long epochDay = ExpenseDates.toEpochDay(date);
+            return epochDay != Long.MIN_VALUE && ExpenseDates.formatEpochDay(epochDay).equals(date) ? date : null;
+        }
+
+        static String parseTime(String raw) {
+            if (raw.length() < 5 || raw.charAt(2) != ':') {
+                return null;
+            }
+            for (int i : new int[]{0, 1, 3, 4}) {
+                if (!Character.isDigit(raw.charAt(i))) {
+                    return null;
+                }
+            }
+            return raw.substring(0, 5);
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
@@ -1,34 +1,192 @@
 package com.example.fintrack;
 
+import android.database.Cursor;
+
 import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.Query;
+import androidx.room.Transaction;
 import androidx.room.Update;
 
+import java.util.Collections;
 import java.util.List;
 
 @Dao
 public interface ExpenseDao {
+    // Returns the new row's id
+    @Insert
+    long insertExpense(Expense expense);
+
+    // Batch insert, all rows in one transaction
     @Insert
-    void insertExpense(Expense expense);
+    void insertExpenses(List<Expense> expenses);
 
     @Update
     void updateExpense(Expense expense);
 
+    @Update
+    void updateExpenses(List<Expense> expenses);
+
     @Delete
     void deleteExpense(Expense expense);
 
+    // Bulk statements for ExpenseBatchEditor, which keeps id lists short enough for SQLite
+    @Query("SELECT * FROM expenses WHERE id IN (:ids)")
+    List<Expense> getExpensesByIds(List<Integer> ids);
+
+    @Query("UPDATE expenses SET categoryId = :categoryId WHERE id IN (:ids)")
+    void setCategory(List<Integer> ids, int categoryId);
+
+    @Query("DELETE FROM expenses WHERE id IN (:ids)")
+    void deleteExpensesByIds(List<Integer> ids);
+
+    @Query("INSERT INTO deleted_expenses (id, title, amountMinor, date, time, categoryId, notes, photoPath, " +
+            "timestamp, batchId) SELECT id, title, amountMinor, date, time, categoryId, notes, photoPath, " +
+            "timestamp, :batchId FROM expenses WHERE id IN (:ids)")
+    void copyToTrash(List<Integer> ids, long batchId);
+
+    // Ids are AUTOINCREMENT and never reused, so the old ones are still free
+    @Query("INSERT INTO expenses (id, title, amountMinor, date, time, categoryId, notes, photoPath, timestamp) " +
+            "SELECT id, title, amountMinor, date, time, categoryId, notes, photoPath, timestamp " +
+            "FROM deleted_expenses WHERE batchId = :batchId")
+    void restoreTrashBatch(long batchId);
+
+    @Query("DELETE FROM deleted_expenses WHERE batchId = :batchId")
+    int deleteTrashBatch(long batchId);
+
+    @Query("SELECT COUNT(*) FROM deleted_expenses WHERE batchId < :before " +
+            "AND photoPath IS NOT NULL AND photoPath != ''")
+    int countTrashedPhotosBefore(long before);
+
+    @Query("DELETE FROM deleted_expenses WHERE batchId < :before")
+    int purgeTrashBefore(long before);
+
     @Query("SELECT * FROM expenses ORDER BY id DESC")
     List<Expense> getAllExpenses();
 
+    @Query("SELECT COUNT(*) FROM expenses")
+    int getExpenseCount();
+
+    // Keyset pages ordered newest first on (timestamp, id), served by index_expenses_timestamp
+    @Query("SELECT * FROM expenses ORDER BY timestamp DESC, id DESC LIMIT :limit")
+    List<Expense> getFirstPage(int limit);
+
+    @Query("SELECT * FROM expenses WHERE timestamp < :timestamp OR (timestamp = :timestamp AND id < :id) " +
+            "ORDER BY timestamp DESC, id DESC LIMIT :limit")
+    List<Expense> getPageBefore(long timestamp, int id, int limit);
+
+    @Query("SELECT * FROM expenses WHERE timestamp < :timestamp OR (timestamp = :timestamp AND id <= :id) " +
+            "ORDER BY timestamp DESC, id DESC LIMIT :limit")
+    List<Expense> getPageFrom(long timestamp, int id, int limit);
+
+    // Returned oldest first, the pager reverses it before prepending
+    @Query("SELECT * FROM expenses WHERE timestamp > :timestamp OR (timestamp = :timestamp AND id > :id) " +
+            "ORDER BY timestamp ASC, id ASC LIMIT :limit")
+    List<Expense> getPageAfter(long timestamp, int id, int limit);
+
+    // Forward-only cursors for export, oldest first, so rows are streamed instead of listed
+    @Query("SELECT * FROM expenses WHERE timestamp >= :fromTimestamp AND timestamp < :toTimestamp " +
+            "ORDER BY timestamp ASC, id ASC")
+    Cursor queryForExport(long fromTimestamp, long toTimestamp);
+
+    @Query("SELECT * FROM expenses WHERE categoryId = :categoryId AND timestamp >= :fromTimestamp " +
+            "AND timestamp < :toTimestamp ORDER BY timestamp ASC, id ASC")
+    Cursor queryForExportByCategory(int categoryId, long fromTimestamp, long toTimestamp);
+
+    // Full-text search through expenses_fts. Rows whose title matches rank above notes-only
+    // matches, newest first within each group.
+    @Query("SELECT expenses.* FROM expenses JOIN expenses_fts ON expenses.id = expenses_fts.rowid " +
+            "WHERE expenses_fts MATCH :match " +
+            "ORDER BY expenses.id IN (SELECT rowid FROM expenses_fts WHERE expenses_fts MATCH :titleMatch) DESC, " +
+            "expenses.timestamp DESC, expenses.id DESC LIMIT :limit")
+    List<Expense> searchExpensesMatching(String match, String titleMatch, int limit);
+
+    // Prefix search over free text, e.g. "hotel mar" finds "Hotel Marriott"
+    default List<Expense> searchExpenses(String text, int limit) {
+        String match = ExpenseFts.matchQuery(text, null);
+        if (match == null) {
+            return Collections.emptyList();
+        }
+        return searchExpensesMatching(match, ExpenseFts.matchQuery(text, "title"), limit);
+    }
+
     @Query("SELECT * FROM expenses WHERE id = :id")
     Expense getExpenseById(int id);
 
-    @Query("SELECT * FROM expenses WHERE category = :category")
-    List<Expense> getExpensesByCategory(String category);
+    @Query("SELECT * FROM expenses WHERE categoryId = :categoryId ORDER BY timestamp DESC, id DESC")
+    List<Expense> getExpensesByCategory(int categoryId);
+
+    // Includes deleted expenses that can still be restored
+    @Query("SELECT photoPath FROM expenses WHERE photoPath IS NOT NULL AND photoPath != '' " +
+            "UNION SELECT photoPath FROM deleted_expenses WHERE photoPath IS NOT NULL AND photoPath != ''")
+    List<String> getPhotoPaths();
+
+    // Integer SUM is exact in SQLite, amounts are minor units
+    @Query("SELECT IFNULL(SUM(amountMinor), 0) FROM expenses")
+    long getTotalExpenses();
+
+    @Query("SELECT IFNULL(SUM(amountMinor), 0) FROM expenses WHERE timestamp >= :fromTimestamp AND timestamp < :toTimestamp")
+    long getTotalBetween(long fromTimestamp, long toTimestamp);
+
+    @Query("SELECT date FROM expenses ORDER BY timestamp ASC LIMIT 1")
+    String getFirstExpenseDate();
+
+    @Query("SELECT date FROM expenses ORDER BY timestamp DESC LIMIT 1")
+    String getLastExpenseDate();
+
+    // Columns for ExpenseAnalytics in id order. SQLite computes the epoch day, so no date
+    // strings are built; it is NULL for dates that don't parse.
+    @Query("SELECT id, amountMinor, categoryId, CAST(julianday(date) - 2440587.5 AS INTEGER) AS epochDay " +
+            "FROM expenses ORDER BY id")
+    Cursor queryAnalyticsColumns();
+
+    @Query("SELECT id, amountMinor, categoryId, CAST(julianday(date) - 2440587.5 AS INTEGER) AS epochDay " +
+            "FROM expenses WHERE id IN (:ids) ORDER BY id")
+    Cursor queryAnalyticsColumnsFor(List<Integer> ids);
+
+    // expense_changes is written by the triggers in ExpenseAnalytics
+    @Query("SELECT IFNULL(MAX(seq), 0) FROM expense_changes")
+    long getLastChangeSeq();
+
+    @Query("SELECT COUNT(*) FROM expense_changes WHERE seq > :afterSeq AND seq <= :throughSeq")
+    int getChangeCount(long afterSeq, long throughSeq);
+
+    @Query("SELECT DISTINCT expenseId FROM expense_changes WHERE seq > :afterSeq AND seq <= :throughSeq " +
+            "ORDER BY expenseId")
+    List<Integer> getChangedIds(long afterSeq, long throughSeq);
+
+    // Keeps the entry at throughSeq, so MAX(seq) never goes backwards
+    @Query("DELETE FROM expense_changes WHERE seq < :throughSeq")
+    void deleteChangesBefore(long throughSeq);
+
+    // For writes the triggers don't log, such as a title-only edit, so the version still moves
+    @Query("INSERT INTO expense_changes (expenseId) VALUES (:expenseId)")
+    void logChange(int expenseId);
+
+    // Dashboard totals come from the trigger-maintained rollup tables in ExpenseRollups
+    @Query("SELECT IFNULL(SUM(total), 0) FROM category_rollups")
+    long getRollupTotal();
+
+    @Query("SELECT total FROM month_rollups WHERE month = :month")
+    long getMonthTotal(String month);
+
+    @Query("SELECT categoryId, total FROM category_rollups ORDER BY total DESC")
+    List<DashboardSummary.CategoryTotal> getCategoryTotals();
+
+    @Query("SELECT categoryId, total FROM category_month_rollups WHERE month = :month ORDER BY total DESC")
+    List<DashboardSummary.CategoryTotal> getCategoryTotalsForMonth(String month);
 
-    @Query("SELECT SUM(amount) FROM expenses")
-    double getTotalExpenses();
-} 
\ No newline at end of file
+    // All dashboard aggregates read from one consistent snapshot
+    @Transaction
+    default DashboardSummary getDashboardSummary(String month) {
+        return new DashboardSummary(
+                getRollupTotal(),
+                getMonthTotal(month),
+                getFirstExpenseDate(),
+                getLastExpenseDate(),
+                getCategoryTotals(),
+                getLastChangeSeq());
+    }
+}
\ No newline at end of file
@@ -1,24 +1,340 @@
 package com.example.fintrack;
 
 import android.content.Context;
+import android.database.Cursor;
 
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
 
-@Database(entities = {Expense.class}, version = 1, exportSchema = false)
+import java.util.Calendar;
+
+@Database(entities = {
+        Expense.class,
+        Category.class,
+        ExpenseRollups.CategoryRollup.class,
+        ExpenseRollups.MonthRollup.class,
+        ExpenseRollups.CategoryMonthRollup.class,
+        ExpenseFts.class,
+        ExpenseAnalytics.ChangeLogEntry.class,
+        Budget.class,
+        Budget.Alert.class,
+        RecurringExpense.class,
+        ExpenseBatchEditor.DeletedExpense.class
+}, version = 11)
 public abstract class ExpenseDatabase extends RoomDatabase {
     private static ExpenseDatabase instance;
-    public abstract ExpenseDao expenseDao();
+    // Implemented by Room; callers go through expenseDao() and categoryDao()
+    public abstract ExpenseDao roomExpenseDao();
+    public abstract CategoryDao roomCategoryDao();
+    public abstract BudgetDao roomBudgetDao();
+    public abstract RecurringExpenseDao roomRecurringExpenseDao();
+
+    // The generated DAOs, or QueryMetrics wrappers around them when metrics are enabled
+    private ExpenseDao expenseDao;
+    private CategoryDao categoryDao;
+    private BudgetDao budgetDao;
+    private RecurringExpenseDao recurringExpenseDao;
+
+    // Rows read per backfill step, keeps memory flat on large tables
+    private static final int BACKFILL_CHUNK_SIZE = 500;
+
+    // v2: epoch timestamp column derived from date/time, plus range and category indexes
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `expenses` ADD COLUMN `timestamp` INTEGER NOT NULL DEFAULT 0");
+            backfillTimestamps(db);
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_expenses_timestamp` ON `expenses` (`timestamp`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_expenses_category_timestamp` ON `expenses` (`category`, `timestamp`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_expenses_amount` ON `expenses` (`amount`)");
+        }
+    };
+
+    // v3: rollup tables. Their triggers and totals are written by MIGRATION_5_6, which every
+    // upgrade from here runs through, once amounts and categories have their final types.
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            ExpenseRollups.createTables(db);
+        }
+    };
+
+    // v4: full-text index over title and notes, populated from the existing rows
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            ExpenseFts.createTable(db);
+            ExpenseFts.rebuild(db);
+        }
+    };
+
+    // v5: REAL amount replaced by INTEGER amountMinor. SQLite can't change a column's type in
+    // place, so expenses is rebuilt with Room's v5 schema. The rollups are recreated by
+    // MIGRATION_5_6, keyed by category id.
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            ExpenseRollups.dropTriggers(db);
+            ExpenseRollups.dropTables(db);
+
+            db.execSQL("CREATE TABLE IF NOT EXISTS `expenses_new` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`title` TEXT, `amountMinor` INTEGER NOT NULL, `date` TEXT, `time` TEXT, `category` TEXT, "
+                    + "`notes` TEXT, `photoPath` TEXT, `timestamp` INTEGER NOT NULL DEFAULT 0)");
+            db.execSQL("INSERT INTO `expenses_new` (`id`, `title`, `amountMinor`, `date`, `time`, `category`, "
+                    + "`notes`, `photoPath`, `timestamp`) "
+                    + "SELECT `id`, `title`, CAST(ROUND(IFNULL(`amount`, 0) * " + Money.STORAGE_SCALE + ") AS INTEGER), "
+                    + "`date`, `time`, `category`, `notes`, `photoPath`, `timestamp` FROM `expenses`");
+            // Dropping the old table also drops its indexes and the FTS sync triggers
+            db.execSQL("DROP TABLE `expenses`");
+            db.execSQL("ALTER TABLE `expenses_new` RENAME TO `expenses`");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_expenses_timestamp` ON `expenses` (`timestamp`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_expenses_category_timestamp` ON `expenses` (`category`, `timestamp`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_expenses_amountMinor` ON `expenses` (`amountMinor`)");
+
+            // Ids are preserved, so the FTS index stays valid and only needs its triggers back
+            ExpenseFts.createTable(db);
+        }
+    };
+
+    // v6: category names move to the categories table and expenses reference them by id.
+    // Names in use that aren't one of the defaults become custom categories; blank ones go
+    // to Other. The foreign key needs another rebuild of expenses.
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            ExpenseRollups.dropTriggers(db);
+            ExpenseRollups.dropTables(db);
+
+            Category.createTable(db);
+            Category.insertDefaults(db);
+            insertCustomCategories(db);
+
+            db.execSQL("CREATE TABLE IF NOT EXISTS `expenses_new` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`title` TEXT, `amountMinor` INTEGER NOT NULL, `date` TEXT, `time` TEXT, "
+                    + "`categoryId` INTEGER NOT NULL, `notes` TEXT, `photoPath` TEXT, "
+                    + "`timestamp` INTEGER NOT NULL DEFAULT 0, FOREIGN KEY(`categoryId`) REFERENCES "
+                    + "`categories`(`id`) ON UPDATE NO ACTION ON DELETE RESTRICT )");
+            db.execSQL("INSERT INTO `expenses_new` (`id`, `title`, `amountMinor`, `date`, `time`, `categoryId`, "
+                    + "`notes`, `photoPath`, `timestamp`) "
+                    + "SELECT e.`id`, e.`title`, e.`amountMinor`, e.`date`, e.`time`, "
+                    + "IFNULL((SELECT c.`id` FROM `categories` c WHERE c.`name` = TRIM(e.`category`)), "
+                    + Category.OTHER_ID + "), e.`notes`, e.`photoPath`, e.`timestamp` FROM `expenses` e");
+            db.execSQL("DROP TABLE `expenses`");
+            db.execSQL("ALTER TABLE `expenses_new` RENAME TO `expenses`");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_expenses_timestamp` ON `expenses` (`timestamp`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_expenses_categoryId_timestamp` ON `expenses` (`categoryId`, `timestamp`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_expenses_amountMinor` ON `expenses` (`amountMinor`)");
+
+            ExpenseFts.createTable(db);
+
+            ExpenseRollups.createTables(db);
+            ExpenseRollups.createTriggers(db);
+            ExpenseRollups.rebuild(db);
+        }
+    };
+
+    // v7: change log feeding ExpenseAnalytics' incremental refresh
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            ExpenseAnalytics.createTable(db);
+            ExpenseAnalytics.createTriggers(db);
+        }
+    };
+
+    // v8: monthly per-category budgets
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `budgets` (`categoryId` INTEGER NOT NULL, "
+                    + "`amountMinor` INTEGER NOT NULL, `alertedMonth` TEXT, `alertedPercent` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`categoryId`), FOREIGN KEY(`categoryId`) REFERENCES `categories`(`id`) "
+                    + "ON UPDATE NO ACTION ON DELETE CASCADE )");
+        }
+    };
+
+    // v9: recurring expense templates
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            RecurringExpense.createTable(db);
+        }
+    };
+
+    // v10: trash holding soft-deleted expenses until the undo window has passed
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            ExpenseBatchEditor.createTable(db);
+        }
+    };
+
+    // v11: budget alert state moves to budget_alerts. BudgetMonitor records alerts after
+    // expense writes, and in budgets each one invalidated the dashboard's observer.
+    static final Migration MIGRATION_10_11 = new Migration(10, 11) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            Budget.createAlertsTable(db);
+            db.execSQL("INSERT INTO `budget_alerts` (`categoryId`, `month`, `percent`) "
+                    + "SELECT `categoryId`, `alertedMonth`, `alertedPercent` FROM `budgets` "
+                    + "WHERE `alertedMonth` IS NOT NULL");
+
+            db.execSQL("CREATE TABLE IF NOT EXISTS `budgets_new` (`categoryId` INTEGER NOT NULL, "
+                    + "`amountMinor` INTEGER NOT NULL, PRIMARY KEY(`categoryId`), FOREIGN KEY(`categoryId`) "
+                    + "REFERENCES `categories`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            db.execSQL("INSERT INTO `budgets_new` (`categoryId`, `amountMinor`) "
+                    + "SELECT `categoryId`, `amountMinor` FROM `budgets`");
+            db.execSQL("DROP TABLE `budgets`");
+            db.execSQL("ALTER TABLE `budgets_new` RENAME TO `budgets`");
+        }
+    };
+
+    // Room creates the tables on a fresh install, the triggers are ours to add
+    private static final RoomDatabase.Callback CREATE_CALLBACK = new RoomDatabase.Callback() {
+        @Override
+        public void onCreate(@NonNull SupportSQLiteDatabase db) {
+            Category.insertDefaults(db);
+            ExpenseRollups.createTriggers(db);
+            ExpenseAnalytics.createTriggers(db);
+        }
+
+        // A new process starts with no analytics snapshot, so older log entries are never read
+        @Override
+        public void onOpen(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("DELETE FROM expense_changes");
+        }
+    };
 
     public static synchronized ExpenseDatabase getInstance(Context context) {
         if (instance == null) {
-            instance = Room.databaseBuilder(
-                    context.getApplicationContext(),
-                    ExpenseDatabase.class,
-                    "expense_database"
-            ).build();
+            instance = create(context, "expense_database", QueryMetrics.getInstance(context).isEnabled());
         }
         return instance;
     }
-} 
\ No newline at end of file
+
+    // A separately named database with the same schema and callbacks, for benchmarks. With
+    // instrumented set, DAO calls are recorded by QueryMetrics.
+    static ExpenseDatabase create(Context context, String name, boolean instrumented) {
+        QueryMetrics metrics = QueryMetrics.getInstance(context);
+        RoomDatabase.Builder<ExpenseDatabase> builder = Room.databaseBuilder(
+                context.getApplicationContext(),
+                ExpenseDatabase.class,
+                name
+        )
+                .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7,
+                        MIGRATION_7_8, MIGRATION_8_9, MIGRATION_9_10, MIGRATION_10_11)
+                .addCallback(CREATE_CALLBACK);
+        if (instrumented) {
+            // Runs inline on the querying thread, so the statement is tied to the DAO call issuing it
+            builder.setQueryCallback(metrics::onQuery, Runnable::run);
+        }
+        ExpenseDatabase database = builder.build();
+        database.expenseDao = instrumented
+                ? metrics.instrument(ExpenseDao.class, database.roomExpenseDao(), database)
+                : database.roomExpenseDao();
+        database.categoryDao = instrumented
+                ? metrics.instrument(CategoryDao.class, database.roomCategoryDao(), database)
+                : database.roomCategoryDao();
+        database.budgetDao = instrumented
+                ? metrics.instrument(BudgetDao.class, database.roomBudgetDao(), database)
+                : database.roomBudgetDao();
+        database.recurringExpenseDao = instrumented
+                ? metrics.instrument(RecurringExpenseDao.class, database.roomRecurringExpenseDao(), database)
+                : database.roomRecurringExpenseDao();
+        return database;
+    }
+
+    public ExpenseDao expenseDao() {
+        return expenseDao;
+    }
+
+    public CategoryDao categoryDao() {
+        return categoryDao;
+    }
+
+    public BudgetDao budgetDao() {
+        return budgetDao;
+    }
+
+    public RecurringExpenseDao recurringExpenseDao() {
+        return recurringExpenseDao;
+    }
+
+    // Compares the rollup tables against the raw expenses table and returns the number of
+    // drifted buckets; with repair set they are rebuilt in the same transaction.
+    public int verifyRollups(boolean repair) {
+        return runInTransaction(() -> {
+            SupportSQLiteDatabase db = getOpenHelper().getWritableDatabase();
+            int mismatches = ExpenseRollups.countMismatches(db);
+            if (mismatches > 0 && repair) {
+                ExpenseRollups.rebuild(db);
+            }
+            return mismatches;
+        });
+    }
+
+    // Distinct category names that aren't seeded, in first-use order
+    private static void insertCustomCategories(SupportSQLiteDatabase db) {
+        SupportSQLiteStatement insert = db.compileStatement(
+                "INSERT INTO `categories` (`name`, `color`, `sortOrder`) VALUES (?, ?, ?)");
+        Cursor cursor = db.query("SELECT TRIM(`category`) AS name FROM `expenses` "
+                + "WHERE TRIM(IFNULL(`category`, '')) != '' "
+                + "AND TRIM(`category`) NOT IN (SELECT `name` FROM `categories`) "
+                + "GROUP BY name ORDER BY MIN(`id`)");
+        try {
+            int sortOrder = Category.OTHER_ID;
+            while (cursor.moveToNext()) {
+                String name = cursor.getString(0);
+                insert.bindString(1, name);
+                insert.bindLong(2, Category.customColor(name));
+                insert.bindLong(3, sortOrder++);
+                insert.executeInsert();
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // Walks the table in id order, BACKFILL_CHUNK_SIZE rows at a time
+    private static void backfillTimestamps(SupportSQLiteDatabase db) {
+        SupportSQLiteStatement update = db.compileStatement(
+                "UPDATE `expenses` SET `timestamp` = ? WHERE `id` = ?");
+        Calendar calendar = Calendar.getInstance();
+        int[] ids = new int[BACKFILL_CHUNK_SIZE];
+        long[] timestamps = new long[BACKFILL_CHUNK_SIZE];
+        int lastId = -1;
+
+        while (true) {
+            int count = 0;
+            Cursor cursor = db.query(
+                    "SELECT `id`, `date`, `time` FROM `expenses` WHERE `id` > ? ORDER BY `id` LIMIT " + BACKFILL_CHUNK_SIZE,
+                    new Object[]{lastId});
+            try {
+                while (cursor.moveToNext()) {
+                    ids[count] = cursor.getInt(0);
+                    timestamps[count] = ExpenseDates.toTimestamp(cursor.getString(1), cursor.getString(2), calendar);
+                    count++;
+                }
+            } finally {
+                cursor.close();
+            }
+
+            // Update after the cursor is closed so we never write under an open read
+            for (int i = 0; i < count; i++) {
+                update.bindLong(1, timestamps[i]);
+                update.bindLong(2, ids[i]);
+                update.executeUpdateDelete();
+            }
+
+            if (count < BACKFILL_CHUNK_SIZE) {
+                break;
+            }
+            lastId = ids[count - 1];
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.fintrack;
+
+import java.util.Calendar;
+import java.util.Locale;
+
+// Helpers for the "yyyy-MM-dd" date strings stored on Expense, without SimpleDateFormat
+public final class ExpenseDates {
+    private ExpenseDates() {
+    }
+
+    // Days since 1970-01-01 for a "yyyy-MM-dd" string, or Long.MIN_VALUE if it can't be parsed
+    public static long toEpochDay(String date) {
+        if (date == null || date.length() < 10 || date.charAt(4) != '-' || date.charAt(7) != '-') {
+            return Long.MIN_VALUE;
+        }
+        int year = parseDigits(date, 0, 4);
+        int month = parseDigits(date, 5, 7);
+        int day = parseDigits(date, 8, 10);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31) {
+            return Long.MIN_VALUE;
+        }
+        return epochDay(year, month, day);
+    }
+
+    public static long daysBetween(String fromDate, String toDate) {
+        long from = toEpochDay(fromDate);
+        long to = toEpochDay(toDate);
+        if (from == Long.MIN_VALUE || to == Long.MIN_VALUE) {
+            return 0;
+        }
+        return to - from;
+    }
+
+    // Local epoch millis for a "yyyy-MM-dd" date and "HH:mm" time, or 0 if the date can't be parsed
+    public static long toTimestamp(String date, String time) {
+        return toTimestamp(date, time, Calendar.getInstance());
+    }
+
+    // Variant that reuses the caller's Calendar, for tight loops such as migrations
+    public static long toTimestamp(String date, String time, Calendar calendar) {
+        if (toEpochDay(date) == Long.MIN_VALUE) {
+            return 0;
+        }
+        int hour = 0;
+        int minute = 0;
+        if (time != null && time.length() >= 5 && time.charAt(2) == ':') {
+            hour = Math.max(parseDigits(time, 0, 2), 0);
+            minute = Math.max(parseDigits(time, 3, 5), 0);
+        }
+        calendar.clear();
+        calendar.set(parseDigits(date, 0, 4), parseDigits(date, 5, 7) - 1, parseDigits(date, 8, 10),
+                hour, minute, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    // "yyyy-MM" key of the calendar month, matching substr(date, 1, 7) in SQL
+    public static String monthKey(Calendar calendar) {
+        return String.format(Locale.US, "%04d-%02d",
+                calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1);
+    }
+
+    // Local midnight at the start of the calendar month containing the given time
+    public static long monthStartMillis(Calendar now) {
+        Calendar calendar = (Calendar) now.clone();
+        calendar.set(Calendar.DAY_OF_MONTH, 1);
+        setMidnight(calendar);
+        return calendar.getTimeInMillis();
+    }
+
+    // Local midnight at the start of the following calendar month
+    public static long nextMonthStartMillis(Calendar now) {
+        Calendar calendar = (Calendar) now.clone();
+        calendar.set(Calendar.DAY_OF_MONTH, 1);
+        calendar.add(Calendar.MONTH, 1);
+        setMidnight(calendar);
+        return calendar.getTimeInMillis();
+    }
+
+    // Local midnight the given number of days before today, for "last N days" ranges
+    public static long daysAgoMillis(Calendar now, int days) {
+        Calendar calendar = (Calendar) now.clone();
+        calendar.add(Calendar.DAY_OF_MONTH, -days);
+        setMidnight(calendar);
+        return calendar.getTimeInMillis();
+    }
+
+    // Local midnight of the given day; month is 1-based and day may overflow into the next month
+    public static long dayStartMillis(int year, int month, int day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month - 1, day);
+        return calendar.getTimeInMillis();
+    }
+
+    public static String format(int year, int month, int day) {
+        return String.format(Locale.US, "%04d-%02d-%02d", year, month, day);
+    }
+
+    // Days since 1970-01-01 of the calendar's local date, on the same scale as toEpochDay()
+    public static int toEpochDay(Calendar calendar) {
+        return (int) epochDay(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1,
+                calendar.get(Calendar.DAY_OF_MONTH));
+    }
+
+    // "yyyy-MM-dd" for an epoch day; the inverse of toEpochDay(String)
+    public static String formatEpochDay(long epochDay) {
+        long z = epochDay + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthIndex = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+        int month = (int) (monthIndex < 10 ? monthIndex + 3 : monthIndex - 9);
+        int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+        return format(year, month, day);
+    }
+
+    // The same day of the month the given number of months later, clamped to the length of
+    // the target month, e.g. Jan 31 plus one month is Feb 28 (or 29)
+    public static long plusMonths(long epochDay, int months) {
+        String date = formatEpochDay(epochDay);
+        int day = parseDigits(date, 8, 10);
+        int monthIndex = parseDigits(date, 0, 4) * 12 + parseDigits(date, 5, 7) - 1 + months;
+        int year = Math.floorDiv(monthIndex, 12);
+        int month = Math.floorMod(monthIndex, 12) + 1;
+        long monthStart = epochDay(year, month, 1);
+        long monthLength = (month == 12 ? epochDay(year + 1, 1, 1) : epochDay(year, month + 1, 1)) - monthStart;
+        return monthStart + Math.min(day, monthLength) - 1;
+    }
+
+    // Days-from-civil conversion for the proleptic Gregorian calendar
+    static long epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return (long) era * 146097 + dayOfEra - 719468;
+    }
+
+    private static void setMidnight(Calendar calendar) {
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+    }
+
+    private static int parseDigits(String s, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
@@ -0,0 +1,323 @@
+package com.example.fintrack;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.SystemClock;
+
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+// Writes expenses to a document as CSV or JSON. Rows are read from a forward-only cursor and
+// written straight to a buffered stream, so memory use does not depend on the number of rows.
+public class ExpenseExporter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int PROGRESS_INTERVAL = 5000;
+
+    public enum Format {
+        CSV("text/csv", ".csv"),
+        JSON("application/json", ".json");
+
+        public final String mimeType;
+        public final String extension;
+
+        Format(String mimeType, String extension) {
+            this.mimeType = mimeType;
+            this.extension = extension;
+        }
+    }
+
+    // Category ids start at 1
+    public static final int ALL_CATEGORIES = 0;
+
+    // Export settings; the range is half-open [fromTimestamp, toTimestamp)
+    public static class Options {
+        public Format format = Format.CSV;
+        public boolean gzip = false;
+        public int categoryId = ALL_CATEGORIES;
+        public long fromTimestamp = Long.MIN_VALUE;
+        public long toTimestamp = Long.MAX_VALUE;
+
+        public String getMimeType() {
+            return gzip ? "application/gzip" : format.mimeType;
+        }
+
+        public String getFileName() {
+            return "fintrack-expenses" + format.extension + (gzip ? ".gz" : "");
+        }
+    }
+
+    public interface ProgressListener {
+        // Called on the exporting thread every PROGRESS_INTERVAL rows
+        void onProgress(int rows, long bytesWritten);
+    }
+
+    public static class Result {
+        public int rows;
+        public long bytesWritten;
+        public long elapsedMs;
+        public boolean cancelled;
+
+        public long getRowsPerSecond() {
+            return elapsedMs > 0 ? rows * 1000L / elapsedMs : rows;
+        }
+
+        public long getBytesPerSecond() {
+            return elapsedMs > 0 ? bytesWritten * 1000L / elapsedMs : bytesWritten;
+        }
+    }
+
+    private final ExpenseDao expenseDao;
+    private final CategoryRegistry categoryRegistry;
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+
+    public ExpenseExporter(ExpenseDao expenseDao, CategoryRegistry categoryRegistry) {
+        this.expenseDao = expenseDao;
+        this.categoryRegistry = categoryRegistry;
+    }
+
+    // Safe to call from any thread; the document is left with the rows written so far
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    public Result exportTo(ContentResolver resolver, Uri uri, Options options, ProgressListener listener)
+            throws IOException {
+        // "wt" truncates when the user picks an existing document
+        OutputStream output = resolver.openOutputStream(uri, "wt");
+        if (output == null) {
+            throw new IOException("Unable to open " + uri);
+        }
+        CountingOutputStream counting = new CountingOutputStream(output);
+        OutputStream stream = options.gzip ? new GZIPOutputStream(counting, BUFFER_SIZE) : counting;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_SIZE);
+        try {
+            return exportTo(writer, counting, options, listener);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private Result exportTo(Writer writer, CountingOutputStream counting, Options options,
+                            ProgressListener listener) throws IOException {
+        Result result = new Result();
+        long startedAt = SystemClock.elapsedRealtime();
+
+        // Filters are pushed into the query so the category/timestamp indexes do the work
+        Cursor cursor = options.categoryId != ALL_CATEGORIES
+                ? expenseDao.queryForExportByCategory(options.categoryId, options.fromTimestamp, options.toTimestamp)
+                : expenseDao.queryForExport(options.fromTimestamp, options.toTimestamp);
+        try {
+            RowWriter rowWriter = options.format == Format.JSON
+                    ? new JsonRowWriter(writer, cursor, categoryRegistry)
+                    : new CsvRowWriter(writer, cursor, categoryRegistry);
+            rowWriter.begin();
+            while (cursor.moveToNext()) {
+                if (cancelled.get()) {
+                    result.cancelled = true;
+                    break;
+                }
+                rowWriter.write(result.rows == 0);
+                result.rows++;
+                if (listener != null && result.rows % PROGRESS_INTERVAL == 0) {
+                    listener.onProgress(result.rows, counting.count);
+                }
+            }
+            rowWriter.end();
+        } finally {
+            cursor.close();
+        }
+
+        // Flush through the gzip trailer so the byte count is final
+        writer.close();
+        result.bytesWritten = counting.count;
+        result.elapsedMs = SystemClock.elapsedRealtime() - startedAt;
+        return result;
+    }
+
+    // Column indexes are resolved once, values are read per row straight from the cursor and
+    // category ids are named from the registry rather than joined in SQL
+    private abstract static class RowWriter {
+        final Writer writer;
+        final Cursor cursor;
+        final CategoryRegistry categoryRegistry;
+        final int title;
+        final int amount;
+        final int date;
+        final int time;
+        final int category;
+        final int notes;
+
+        RowWriter(Writer writer, Cursor cursor, CategoryRegistry categoryRegistry) {
+            this.writer = writer;
+            this.cursor = cursor;
+            this.categoryRegistry = categoryRegistry;
+            title = cursor.getColumnIndexOrThrow("title");
+            amount = cursor.getColumnIndexOrThrow("amountMinor");
+            date = cursor.getColumnIndexOrThrow("date");
+            time = cursor.getColumnIndexOrThrow("time");
+            category = cursor.getColumnIndexOrThrow("categoryId");
+            notes = cursor.getColumnIndexOrThrow("notes");
+        }
+
+        abstract void begin() throws IOException;
+
+        abstract void write(boolean first) throws IOException;
+
+        abstract void end() throws IOException;
+
+        String text(int column) {
+            String value = cursor.getString(column);
+            return value != null ? value : "";
+        }
+
+        String categoryName() {
+            return categoryRegistry.get(cursor.getInt(category)).getName();
+        }
+    }
+
+    // Same header names ExpenseCsvImporter recognises, so exports can be imported again
+    private static class CsvRowWriter extends RowWriter {
+        CsvRowWriter(Writer writer, Cursor cursor, CategoryRegistry categoryRegistry) {
+            super(writer, cursor, categoryRegistry);
+        }
+
+        @Override
+        void begin() throws IOException {
+            writer.write("title,amount,date,time,category,notes\r\n");
+        }
+
+        @Override
+        void write(boolean first) throws IOException {
+            field(text(title));
+            writer.write(',');
+            writer.write(Money.toPlainString(cursor.getLong(amount)));
+            writer.write(',');
+            field(text(date));
+            writer.write(',');
+            field(text(time));
+            writer.write(',');
+            field(categoryName());
+            writer.write(',');
+            field(text(notes));
+            writer.write("\r\n");
+        }
+
+        @Override
+        void end() {
+        }
+
+        private void field(String value) throws IOException {
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    writer.write('"');
+                }
+                writer.write(c);
+            }
+            writer.write('"');
+        }
+    }
+
+    private static class JsonRowWriter extends RowWriter {
+        JsonRowWriter(Writer writer, Cursor cursor, CategoryRegistry categoryRegistry) {
+            super(writer, cursor, categoryRegistry);
+        }
+
+        @Override
+        void begin() throws IOException {
+            writer.write('[');
+        }
+
+        @Override
+        void write(boolean first) throws IOException {
+            writer.write(first ? "\n{\"title\":" : ",\n{\"title\":");
+            string(text(title));
+            writer.write(",\"amount\":");
+            writer.write(Money.toPlainString(cursor.getLong(amount)));
+            writer.write(",\"date\":");
+            string(text(date));
+            writer.write(",\"time\":");
+            string(text(time));
+            writer.write(",\"category\":");
+            string(categoryName());
+            writer.write(",\"notes\":");
+            string(text(notes));
+            writer.write('}');
+        }
+
+        @Override
+        void end() throws IOException {
+            writer.write("\n]\n");
+        }
+
+        private void string(String value) throws IOException {
+            writer.write('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"':
+                        writer.write("\\\"");
+                        break;
+                    case '\\':
+                        writer.write("\\\\");
+                        break;
+                    case '\n':
+                        writer.write("\\n");
+                        break;
+                    case '\r':
+                        writer.write("\\r");
+                        break;
+                    case '\t':
+                        writer.write("\\t");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            writer.write(String.format("\\u%04x", (int) c));
+                        } else {
+                            writer.write(c);
+                        }
+                        break;
+                }
+            }
+            writer.write('"');
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
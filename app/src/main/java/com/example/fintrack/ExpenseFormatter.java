@@ -0,0 +1,136 @@
+package com.example.fintrack;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Builds the render models shown by ExpenseAdapter and CategoryAdapter. The currency symbol
+// is resolved once and cached, and refreshed only when the currency preference changes;
+// category names and colours are array lookups in CategoryRegistry. Safe to use from
+// background threads.
+public final class ExpenseFormatter {
+    private static ExpenseFormatter instance;
+
+    private final SharedPreferences sharedPreferences;
+    private final CategoryRegistry categoryRegistry;
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+    private volatile String currencySymbol;
+    private volatile int displayDecimals;
+
+    // Held as a field because SharedPreferences only keeps weak references to listeners
+    private final SharedPreferences.OnSharedPreferenceChangeListener preferenceListener =
+            (prefs, key) -> {
+                if ("currency".equals(key)) {
+                    loadCurrency(prefs);
+                    for (Runnable listener : changeListeners) {
+                        listener.run();
+                    }
+                }
+            };
+
+    private ExpenseFormatter(Context context) {
+        sharedPreferences = context.getSharedPreferences("FinTrackSettings", Context.MODE_PRIVATE);
+        loadCurrency(sharedPreferences);
+        sharedPreferences.registerOnSharedPreferenceChangeListener(preferenceListener);
+        categoryRegistry = CategoryRegistry.getInstance(context);
+    }
+
+    private void loadCurrency(SharedPreferences prefs) {
+        String currency = SettingsActivity.getCurrentCurrency(prefs);
+        displayDecimals = Money.displayDecimals(currency);
+        currencySymbol = SettingsActivity.getCurrencySymbol(currency);
+    }
+
+    public static synchronized ExpenseFormatter getInstance(Context context) {
+        if (instance == null) {
+            instance = new ExpenseFormatter(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    // Runs on the main thread after the currency changes, so screens can rebuild their rows
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    public void removeChangeListener(Runnable listener) {
+        changeListeners.remove(listener);
+    }
+
+    public String getCurrencySymbol() {
+        return currencySymbol;
+    }
+
+    // Symbol plus the currency's decimals, e.g. "$12.50" or "¥13", from minor units
+    public String formatAmount(long amountMinor) {
+        StringBuilder text = new StringBuilder(16).append(currencySymbol);
+        Money.append(text, amountMinor, displayDecimals);
+        return text.toString();
+    }
+
+    // One decimal and a percent sign, like String.format("%.1f%%", ...)
+    public static String formatPercentage(double percentage) {
+        StringBuilder text = new StringBuilder(8);
+        appendFixed(text, percentage, 10);
+        return text.append('%').toString();
+    }
+
+    public List<ExpenseAdapter.ExpenseRow> toRows(List<Expense> expenses) {
+        List<ExpenseAdapter.ExpenseRow> rows = new ArrayList<>(expenses.size());
+        for (Expense expense : expenses) {
+            rows.add(toRow(expense));
+        }
+        return rows;
+    }
+
+    public ExpenseAdapter.ExpenseRow toRow(Expense expense) {
+        Category category = categoryRegistry.get(expense.getCategoryId());
+        return new ExpenseAdapter.ExpenseRow(expense, formatAmount(expense.getAmountMinor()),
+                category.getName(), category.getColor());
+    }
+
+    public List<CategoryAdapter.CategorySummary> toCategorySummaries(DashboardSummary summary) {
+        return toCategorySummaries(summary, Collections.emptyList());
+    }
+
+    // Categories with a budget get this month's spending against it as budgetText
+    public List<CategoryAdapter.CategorySummary> toCategorySummaries(DashboardSummary summary,
+                                                                     List<Budget.Status> budgets) {
+        List<CategoryAdapter.CategorySummary> categories = new ArrayList<>(summary.categoryTotals.size());
+        for (DashboardSummary.CategoryTotal categoryTotal : summary.categoryTotals) {
+            Category category = categoryRegistry.get(categoryTotal.categoryId);
+            double percentage = summary.totalAmount > 0 ? (categoryTotal.total * 100.0) / summary.totalAmount : 0;
+            categories.add(new CategoryAdapter.CategorySummary(category.getId(), category.getName(),
+                    categoryTotal.total, percentage, formatAmount(categoryTotal.total),
+                    formatPercentage(percentage), category.getColor()));
+        }
+        for (Budget.Status budget : budgets) {
+            for (CategoryAdapter.CategorySummary category : categories) {
+                if (category.categoryId == budget.categoryId) {
+                    category.budgetText = "This month: " + formatAmount(budget.spentMinor) + " of "
+                            + formatAmount(budget.amountMinor) + " (" + budget.getPercentSpent() + "%)";
+                    break;
+                }
+            }
+        }
+        return categories;
+    }
+
+    // Appends value rounded half-up to log10(scale) decimals
+    private static void appendFixed(StringBuilder text, double value, int scale) {
+        long scaled = Math.round(Math.abs(value) * scale);
+        if (value < 0 && scaled != 0) {
+            text.append('-');
+        }
+        text.append(scaled / scale).append('.');
+        long fraction = scaled % scale;
+        for (int digit = scale / 10; digit > 1 && fraction < digit; digit /= 10) {
+            text.append('0');
+        }
+        text.append(fraction);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.fintrack;
+
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.util.Locale;
+
+// External-content FTS4 index over expenses.title and expenses.notes. Room keeps it in sync
+// with triggers on the expenses table; the docid of each row is the expense id.
+@Fts4(contentEntity = Expense.class)
+@Entity(tableName = "expenses_fts")
+public class ExpenseFts {
+    private String title;
+    private String notes;
+
+    public ExpenseFts(String title, String notes) {
+        this.title = title;
+        this.notes = notes;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getNotes() {
+        return notes;
+    }
+
+    // Turns free text into a MATCH expression where every word must appear as a prefix,
+    // e.g. "hotel mar" -> "hotel* mar*". With a column, matching is limited to that column.
+    // Returns null when the text has no searchable words.
+    public static String matchQuery(String text, String column) {
+        StringBuilder query = new StringBuilder();
+        StringBuilder word = new StringBuilder();
+        String lower = text.toLowerCase(Locale.ROOT);
+        for (int i = 0; i <= lower.length(); i++) {
+            char c = i < lower.length() ? lower.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else if (word.length() > 0) {
+                if (query.length() > 0) {
+                    query.append(' ');
+                }
+                if (column != null) {
+                    query.append(column).append(':');
+                }
+                query.append(word).append('*');
+                word.setLength(0);
+            }
+        }
+        return query.length() > 0 ? query.toString() : null;
+    }
+
+    // SQL for a fresh FTS table and Room's content sync triggers, matching what Room generates
+    static void createTable(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `expenses_fts` USING FTS4(`title` TEXT, `notes` TEXT, content=`expenses`)");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_expenses_fts_BEFORE_UPDATE BEFORE UPDATE ON `expenses` "
+                + "BEGIN DELETE FROM `expenses_fts` WHERE `docid`=OLD.`rowid`; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_expenses_fts_BEFORE_DELETE BEFORE DELETE ON `expenses` "
+                + "BEGIN DELETE FROM `expenses_fts` WHERE `docid`=OLD.`rowid`; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_expenses_fts_AFTER_UPDATE AFTER UPDATE ON `expenses` "
+                + "BEGIN INSERT INTO `expenses_fts`(`docid`, `title`, `notes`) VALUES (NEW.`rowid`, NEW.`title`, NEW.`notes`); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_expenses_fts_AFTER_INSERT AFTER INSERT ON `expenses` "
+                + "BEGIN INSERT INTO `expenses_fts`(`docid`, `title`, `notes`) VALUES (NEW.`rowid`, NEW.`title`, NEW.`notes`); END");
+    }
+
+    // Re-indexes every row from the content table
+    static void rebuild(SupportSQLiteDatabase db) {
+        db.execSQL("INSERT INTO `expenses_fts`(`expenses_fts`) VALUES('rebuild')");
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.fintrack;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Keeps a sliding window of expense rows in memory and loads neighbouring pages
+// with keyset queries on (timestamp, id) as the list is scrolled. Pages are turned
+// into render models on the read thread that loaded them.
+public class ExpensePager {
+    public static final int PAGE_SIZE = 50;
+    public static final int PREFETCH_DISTANCE = 20;
+    public static final int MAX_WINDOW_SIZE = PAGE_SIZE * 4;
+
+    public interface Listener {
+        // Receives a fresh copy of the window after every change
+        void onWindowChanged(List<ExpenseAdapter.ExpenseRow> window);
+    }
+
+    private final ExpenseDao expenseDao;
+    private final ExpenseFormatter formatter;
+    private final DatabaseDispatcher dispatcher = DatabaseDispatcher.getInstance();
+    private final List<ExpenseAdapter.ExpenseRow> window = new ArrayList<>();
+    private Listener listener;
+
+    // Window state, only touched on the main thread
+    private boolean reachedStart = true;
+    private boolean reachedEnd = false;
+    private boolean appending = false;
+    private boolean prepending = false;
+    private int generation = 0;
+    // MAX(expense_changes.seq) read before the last refresh's query: every write logged at or
+    // below it is reflected in the window
+    private long changeSeq;
+
+    // A refreshed window with the change-log position it was read at
+    private static class Refresh {
+        final long changeSeq;
+        final List<ExpenseAdapter.ExpenseRow> rows;
+
+        Refresh(long changeSeq, List<ExpenseAdapter.ExpenseRow> rows) {
+            this.changeSeq = changeSeq;
+            this.rows = rows;
+        }
+    }
+
+    public ExpensePager(ExpenseDao expenseDao, ExpenseFormatter formatter) {
+        this.expenseDao = expenseDao;
+        this.formatter = formatter;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public long getChangeSeq() {
+        return changeSeq;
+    }
+
+    // Whether the window holds the newest rows, and the oldest ones
+    public boolean isAtStart() {
+        return reachedStart;
+    }
+
+    public boolean isAtEnd() {
+        return reachedEnd;
+    }
+
+    // Reloads the current window in place, or the first page when nothing is loaded yet
+    public void refresh() {
+        final int requestGeneration = ++generation;
+        appending = false;
+        prepending = false;
+
+        final Expense anchor = reachedStart || window.isEmpty() ? null : window.get(0).expense;
+        final int limit = Math.min(Math.max(window.size(), PAGE_SIZE), MAX_WINDOW_SIZE);
+
+        // Repeated refreshes coalesce into the one still waiting in the queue
+        dispatcher.read("feed.refresh", null,
+                () -> {
+                    long seq = expenseDao.getLastChangeSeq();
+                    return new Refresh(seq, formatter.toRows(anchor == null
+                            ? expenseDao.getFirstPage(limit)
+                            : expenseDao.getPageFrom(anchor.getTimestamp(), anchor.getId(), limit)));
+                },
+                refresh -> {
+                    if (requestGeneration != generation) {
+                        return;
+                    }
+                    window.clear();
+                    window.addAll(refresh.rows);
+                    changeSeq = refresh.changeSeq;
+                    reachedStart = anchor == null;
+                    reachedEnd = refresh.rows.size() < limit;
+                    publish();
+                });
+    }
+
+    // Called from onBindViewHolder so pages are fetched before the user reaches an edge.
+    // Positions are relative to the list the adapter is currently showing.
+    public void onItemBound(int position, int itemCount) {
+        if (!reachedEnd && !appending && position >= itemCount - PREFETCH_DISTANCE) {
+            appendPage();
+        }
+        if (!reachedStart && !prepending && position < PREFETCH_DISTANCE) {
+            prependPage();
+        }
+    }
+
+    private void appendPage() {
+        if (window.isEmpty()) {
+            return;
+        }
+        appending = true;
+        final int requestGeneration = generation;
+        final Expense last = window.get(window.size() - 1).expense;
+
+        dispatcher.read("feed.append", null,
+                () -> formatter.toRows(expenseDao.getPageBefore(last.getTimestamp(), last.getId(), PAGE_SIZE)),
+                page -> {
+                    if (requestGeneration != generation) {
+                        return;
+                    }
+                    appending = false;
+                    reachedEnd = page.size() < PAGE_SIZE;
+
+                    window.addAll(page);
+
+                    // Drop rows that scrolled far above the viewport
+                    int overflow = window.size() - MAX_WINDOW_SIZE;
+                    if (overflow > 0) {
+                        window.subList(0, overflow).clear();
+                        reachedStart = false;
+                    }
+                    publish();
+                });
+    }
+
+    private void prependPage() {
+        if (window.isEmpty()) {
+            return;
+        }
+        prepending = true;
+        final int requestGeneration = generation;
+        final Expense first = window.get(0).expense;
+
+        dispatcher.read("feed.prepend", null,
+                () -> {
+                    List<Expense> page = expenseDao.getPageAfter(first.getTimestamp(), first.getId(), PAGE_SIZE);
+                    Collections.reverse(page);
+                    return formatter.toRows(page);
+                },
+                page -> {
+                    if (requestGeneration != generation) {
+                        return;
+                    }
+                    prepending = false;
+                    reachedStart = page.size() < PAGE_SIZE;
+
+                    window.addAll(0, page);
+
+                    // Drop rows that scrolled far below the viewport
+                    int overflow = window.size() - MAX_WINDOW_SIZE;
+                    if (overflow > 0) {
+                        window.subList(window.size() - overflow, window.size()).clear();
+                        reachedEnd = false;
+                    }
+                    publish();
+                });
+    }
+
+    private void publish() {
+        if (listener != null) {
+            listener.onWindowChanged(new ArrayList<>(window));
+        }
+    }
+
+    // Results still in flight are ignored once the owning screen is gone
+    public void close() {
+        generation++;
+    }
+}
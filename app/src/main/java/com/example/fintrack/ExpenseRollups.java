@@ -0,0 +1,178 @@
+package com.example.fintrack;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+// Materialized per-category, per-month and per-category-month totals of the expenses table.
+// SQLite triggers keep them current inside the same transaction as every insert, update
+// and delete, so the dashboard reads O(buckets) rows instead of scanning expenses.
+public final class ExpenseRollups {
+    private ExpenseRollups() {
+    }
+
+    @Entity(tableName = "category_rollups", primaryKeys = {"categoryId"})
+    public static class CategoryRollup {
+        public int categoryId;
+        // Minor units
+        public long total;
+        public int count;
+    }
+
+    @Entity(tableName = "month_rollups", primaryKeys = {"month"})
+    public static class MonthRollup {
+        // "yyyy-MM"
+        @NonNull
+        public String month = "";
+        // Minor units
+        public long total;
+        public int count;
+    }
+
+    @Entity(tableName = "category_month_rollups", primaryKeys = {"categoryId", "month"})
+    public static class CategoryMonthRollup {
+        public int categoryId;
+        @NonNull
+        public String month = "";
+        // Minor units
+        public long total;
+        public int count;
+    }
+
+    // Bucket keys derived from an expenses row alias (NEW, OLD or a table name)
+    private static String categoryKey(String row) {
+        return row + ".categoryId";
+    }
+
+    private static String monthKey(String row) {
+        return "substr(" + row + ".date, 1, 7)";
+    }
+
+    static void createTables(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS `category_rollups` (`categoryId` INTEGER NOT NULL, "
+                + "`total` INTEGER NOT NULL, `count` INTEGER NOT NULL, PRIMARY KEY(`categoryId`))");
+        db.execSQL("CREATE TABLE IF NOT EXISTS `month_rollups` (`month` TEXT NOT NULL, "
+                + "`total` INTEGER NOT NULL, `count` INTEGER NOT NULL, PRIMARY KEY(`month`))");
+        db.execSQL("CREATE TABLE IF NOT EXISTS `category_month_rollups` (`categoryId` INTEGER NOT NULL, "
+                + "`month` TEXT NOT NULL, `total` INTEGER NOT NULL, `count` INTEGER NOT NULL, "
+                + "PRIMARY KEY(`categoryId`, `month`))");
+    }
+
+    static void createTriggers(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `rollup_expenses_insert` AFTER INSERT ON `expenses` BEGIN "
+                + addRow("NEW")
+                + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `rollup_expenses_delete` AFTER DELETE ON `expenses` BEGIN "
+                + removeRow("OLD")
+                + "END");
+        // Moving a row between categories or months takes it out of the old buckets first
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `rollup_expenses_update` "
+                + "AFTER UPDATE OF `amountMinor`, `date`, `categoryId` ON `expenses` BEGIN "
+                + removeRow("OLD")
+                + addRow("NEW")
+                + "END");
+    }
+
+    static void dropTables(SupportSQLiteDatabase db) {
+        db.execSQL("DROP TABLE IF EXISTS `category_rollups`");
+        db.execSQL("DROP TABLE IF EXISTS `month_rollups`");
+        db.execSQL("DROP TABLE IF EXISTS `category_month_rollups`");
+    }
+
+    static void dropTriggers(SupportSQLiteDatabase db) {
+        db.execSQL("DROP TRIGGER IF EXISTS `rollup_expenses_insert`");
+        db.execSQL("DROP TRIGGER IF EXISTS `rollup_expenses_delete`");
+        db.execSQL("DROP TRIGGER IF EXISTS `rollup_expenses_update`");
+    }
+
+    private static String addRow(String row) {
+        String category = categoryKey(row);
+        String month = monthKey(row);
+        String amount = row + ".amountMinor";
+        return "INSERT OR IGNORE INTO category_rollups (categoryId, total, count) VALUES (" + category + ", 0, 0); "
+                + "UPDATE category_rollups SET total = total + " + amount + ", count = count + 1 "
+                + "WHERE categoryId = " + category + "; "
+                + "INSERT OR IGNORE INTO month_rollups (month, total, count) VALUES (" + month + ", 0, 0); "
+                + "UPDATE month_rollups SET total = total + " + amount + ", count = count + 1 "
+                + "WHERE month = " + month + "; "
+                + "INSERT OR IGNORE INTO category_month_rollups (categoryId, month, total, count) "
+                + "VALUES (" + category + ", " + month + ", 0, 0); "
+                + "UPDATE category_month_rollups SET total = total + " + amount + ", count = count + 1 "
+                + "WHERE categoryId = " + category + " AND month = " + month + "; ";
+    }
+
+    private static String removeRow(String row) {
+        String category = categoryKey(row);
+        String month = monthKey(row);
+        String amount = row + ".amountMinor";
+        return "UPDATE category_rollups SET total = total - " + amount + ", count = count - 1 "
+                + "WHERE categoryId = " + category + "; "
+                + "DELETE FROM category_rollups WHERE categoryId = " + category + " AND count <= 0; "
+                + "UPDATE month_rollups SET total = total - " + amount + ", count = count - 1 "
+                + "WHERE month = " + month + "; "
+                + "DELETE FROM month_rollups WHERE month = " + month + " AND count <= 0; "
+                + "UPDATE category_month_rollups SET total = total - " + amount + ", count = count - 1 "
+                + "WHERE categoryId = " + category + " AND month = " + month + "; "
+                + "DELETE FROM category_month_rollups WHERE categoryId = " + category
+                + " AND month = " + month + " AND count <= 0; ";
+    }
+
+    // Recomputes every bucket from the raw expenses table
+    static void rebuild(SupportSQLiteDatabase db) {
+        db.execSQL("DELETE FROM category_rollups");
+        db.execSQL("DELETE FROM month_rollups");
+        db.execSQL("DELETE FROM category_month_rollups");
+        db.execSQL("INSERT INTO category_rollups (categoryId, total, count) "
+                + "SELECT " + categoryKey("expenses") + ", SUM(amountMinor), COUNT(*) FROM expenses "
+                + "GROUP BY " + categoryKey("expenses"));
+        db.execSQL("INSERT INTO month_rollups (month, total, count) "
+                + "SELECT " + monthKey("expenses") + ", SUM(amountMinor), COUNT(*) FROM expenses "
+                + "GROUP BY " + monthKey("expenses"));
+        db.execSQL("INSERT INTO category_month_rollups (categoryId, month, total, count) "
+                + "SELECT " + categoryKey("expenses") + ", " + monthKey("expenses") + ", SUM(amountMinor), COUNT(*) "
+                + "FROM expenses GROUP BY " + categoryKey("expenses") + ", " + monthKey("expenses"));
+    }
+
+    // Number of buckets whose stored total or count disagrees with the raw table
+    static int countMismatches(SupportSQLiteDatabase db) {
+        return countMismatches(db, "category_rollups", new String[]{"categoryId"},
+                "SELECT " + categoryKey("expenses") + " AS categoryId, SUM(amountMinor) AS total, COUNT(*) AS count "
+                        + "FROM expenses GROUP BY " + categoryKey("expenses"))
+                + countMismatches(db, "month_rollups", new String[]{"month"},
+                "SELECT " + monthKey("expenses") + " AS month, SUM(amountMinor) AS total, COUNT(*) AS count "
+                        + "FROM expenses GROUP BY " + monthKey("expenses"))
+                + countMismatches(db, "category_month_rollups", new String[]{"categoryId", "month"},
+                "SELECT " + categoryKey("expenses") + " AS categoryId, " + monthKey("expenses") + " AS month, "
+                        + "SUM(amountMinor) AS total, COUNT(*) AS count FROM expenses GROUP BY "
+                        + categoryKey("expenses") + ", " + monthKey("expenses"));
+    }
+
+    private static int countMismatches(SupportSQLiteDatabase db, String table, String[] keys, String rawQuery) {
+        StringBuilder match = new StringBuilder();
+        for (String key : keys) {
+            if (match.length() > 0) {
+                match.append(" AND ");
+            }
+            match.append("r.").append(key).append(" = raw.").append(key);
+        }
+        // Raw buckets that are missing or wrong in the rollup
+        int wrong = queryCount(db, "SELECT COUNT(*) FROM (" + rawQuery + ") raw LEFT JOIN " + table
+                + " r ON " + match + " WHERE r.count IS NULL OR r.count != raw.count "
+                + "OR r.total != raw.total");
+        // Rollup buckets left behind with no raw rows
+        int stale = queryCount(db, "SELECT COUNT(*) FROM " + table + " r LEFT JOIN (" + rawQuery
+                + ") raw ON " + match + " WHERE raw.count IS NULL");
+        return wrong + stale;
+    }
+
+    private static int queryCount(SupportSQLiteDatabase db, String sql) {
+        Cursor cursor = db.query(sql);
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.fintrack;
+
+import android.content.Context;
+import android.util.Log;
+import android.widget.Toast;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Write-through front for adding, editing and deleting expenses from the UI. A change is
+// handed to the listeners on the main thread at once, so the feed and dashboard can show it
+// in the same frame the editor closes, then written on the dispatcher's write lane. Once the
+// write is done the listeners hear it settled: with the change-log position it was written
+// at, which tells them when reloaded figures include it, or as failed, to undo it.
+public final class ExpenseStore {
+    private static final String TAG = "ExpenseStore";
+    // Category id of a change whose category is created by the write
+    public static final int NEW_CATEGORY = -1;
+
+    // Ids given to rows added here, by the id the database gave them. Lets a row keep one
+    // identity in the list from the moment it is shown, see stableKey(). Entries are dropped
+    // by forgetTemporaryId() once the list has been reloaded with the row.
+    private static final Map<Integer, Integer> temporaryIds = new ConcurrentHashMap<>();
+
+    private static ExpenseStore instance;
+
+    public interface Listener {
+        // Main thread, before the write starts
+        void onChangesPending(List<Change> changes);
+
+        // Main thread. When written, each change's seq is set and an added row has its real id.
+        void onChangesSettled(List<Change> changes, boolean written);
+    }
+
+    public static final class Change {
+        // Null for an add
+        public final Expense before;
+        // Null for a delete. An added row has a negative temporary id until written.
+        public Expense after;
+        // Name of after's category while its id is NEW_CATEGORY
+        public final String newCategoryName;
+        // MAX(expense_changes.seq) right after the write, 0 until then
+        public long seq;
+
+        Change(Expense before, Expense after, String newCategoryName) {
+            this.before = before;
+            this.after = after;
+            this.newCategoryName = newCategoryName;
+        }
+    }
+
+    // What a write produced, delivered to the main thread
+    private static class Written {
+        final int id;
+        final int categoryId;
+        final long seq;
+
+        Written(int id, int categoryId, long seq) {
+            this.id = id;
+            this.categoryId = categoryId;
+            this.seq = seq;
+        }
+    }
+
+    private final Context context;
+    private final ExpenseDatabase database;
+    private final CategoryRegistry categoryRegistry;
+    private final DatabaseDispatcher dispatcher = DatabaseDispatcher.getInstance();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    // Main thread only
+    private int nextTemporaryId = -1;
+
+    private ExpenseStore(Context context) {
+        this.context = context;
+        database = ExpenseDatabase.getInstance(context);
+        categoryRegistry = CategoryRegistry.getInstance(context);
+    }
+
+    public static synchronized ExpenseStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new ExpenseStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    // The id a row was first shown under, so swapping a temporary id for the stored one, and
+    // later reloads, are the same item to DiffUtil and RecyclerView's stable ids
+    public static int stableKey(int expenseId) {
+        Integer temporaryId = temporaryIds.get(expenseId);
+        return temporaryId != null ? temporaryId : expenseId;
+    }
+
+    // Main thread, once a reload at or past the add's seq has been shown. The row then has its
+    // stored id in the list, and is keyed by it from the next diff on.
+    public static void forgetTemporaryId(int expenseId) {
+        temporaryIds.remove(expenseId);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // Main thread. The expense is written with the named category, created if it is new. Any
+    // photo must already be in PhotoStore, since the caller's Uri grant may end before the write.
+    public void add(Expense expense, String categoryName) {
+        Change change = new Change(null, shownCopy(expense, nextTemporaryId--, categoryName),
+                newCategoryName(categoryName));
+        write("storeAdd", change, expense, categoryName, () -> {
+            int id = (int) database.expenseDao().insertExpense(expense);
+            expense.setId(id);
+            return id;
+        });
+    }
+
+    // Main thread. before is the row as loaded, expense the edited version with the same id.
+    public void update(Expense before, Expense expense, String categoryName) {
+        Change change = new Change(before, shownCopy(expense, expense.getId(), categoryName),
+                newCategoryName(categoryName));
+        write("storeUpdate", change, expense, categoryName, () -> {
+            database.expenseDao().updateExpense(expense);
+            // The triggers only log amount, date and category edits
+            database.expenseDao().logChange(expense.getId());
+            return expense.getId();
+        });
+    }
+
+    // Main thread. Soft-deletes through ExpenseBatchEditor; onDeleted gets the batch id for an
+    // undo. ids may include rows not in expenses, which are deleted without being shown first.
+    public void delete(List<Expense> expenses, List<Integer> ids, DatabaseDispatcher.Callback<Long> onDeleted) {
+        List<Change> changes = new ArrayList<>(expenses.size());
+        for (Expense expense : expenses) {
+            changes.add(new Change(expense, null, null));
+        }
+        notifyPending(changes);
+        ExpenseBatchEditor editor = ExpenseBatchEditor.getInstance(context);
+        long[] batchId = new long[1];
+        dispatcher.write("storeDelete", null, () -> {
+            try {
+                batchId[0] = editor.delete(ids);
+                return new Written(0, 0, database.expenseDao().getLastChangeSeq());
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Delete failed", e);
+                return null;
+            }
+        }, written -> {
+            settle(changes, written);
+            if (written != null && onDeleted != null) {
+                onDeleted.onResult(batchId[0]);
+            }
+        });
+    }
+
+    private interface RowWrite {
+        int run();
+    }
+
+    private void write(String name, Change change, Expense expense, String categoryName, RowWrite rowWrite) {
+        List<Change> changes = Collections.singletonList(change);
+        notifyPending(changes);
+        dispatcher.write(name, null, () -> {
+            try {
+                expense.setCategoryId(categoryRegistry.getOrCreate(categoryName).getId());
+                return database.runInTransaction(() -> {
+                    int id = rowWrite.run();
+                    // Read in the same transaction, so it is exactly the position of this write
+                    return new Written(id, expense.getCategoryId(), database.expenseDao().getLastChangeSeq());
+                });
+            } catch (RuntimeException e) {
+                Log.e(TAG, name + " failed", e);
+                return null;
+            }
+        }, written -> {
+            if (written != null) {
+                // Only a listener showing the row ever forgets it again
+                if (change.after.getId() < 0 && !listeners.isEmpty()) {
+                    temporaryIds.put(written.id, change.after.getId());
+                }
+                // As written; the lane is done with it by now
+                change.after = copyOf(expense, written.id, written.categoryId);
+            }
+            settle(changes, written);
+        });
+    }
+
+    private void notifyPending(List<Change> changes) {
+        for (Listener listener : listeners) {
+            listener.onChangesPending(changes);
+        }
+    }
+
+    private void settle(List<Change> changes, Written written) {
+        if (written != null) {
+            for (Change change : changes) {
+                change.seq = written.seq;
+            }
+        } else {
+            Toast.makeText(context, "Couldn't save the change, it was undone", Toast.LENGTH_LONG).show();
+        }
+        for (Listener listener : listeners) {
+            listener.onChangesSettled(changes, written != null);
+        }
+    }
+
+    // A copy for the UI, so the write can fill in ids and paths without racing the main thread
+    private Expense shownCopy(Expense expense, int id, String categoryName) {
+        Category category = categoryRegistry.find(categoryName);
+        return copyOf(expense, id, category != null ? category.getId() : NEW_CATEGORY);
+    }
+
+    private String newCategoryName(String categoryName) {
+        return categoryRegistry.find(categoryName) == null ? categoryName.trim() : null;
+    }
+
+    private static Expense copyOf(Expense expense, int id, int categoryId) {
+        Expense copy = new Expense(expense.getTitle(), expense.getAmountMinor(), expense.getDate(), expense.getTime(),
+                categoryId, expense.getNotes(), expense.getPhotoPath());
+        copy.setId(id);
+        return copy;
+    }
+}
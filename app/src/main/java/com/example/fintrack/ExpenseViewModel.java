@@ -0,0 +1,583 @@
+package com.example.fintrack;
+
+import android.app.Application;
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.room.InvalidationTracker;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Holds the feed window and dashboard across configuration changes. Both are reloaded
+// only when Room's invalidation tracker reports a change to the expenses or budgets table. On a cold
+// start they are first filled from the saved DashboardSnapshotStore, then replaced by the
+// live reads. Adds, edits and deletes made through ExpenseStore are applied on top of the
+// loaded figures as soon as they are made, and dropped again once a reload includes them.
+public class ExpenseViewModel extends AndroidViewModel
+        implements ExpensePager.Listener, ExpenseStore.Listener {
+    private static final long SEARCH_DEBOUNCE_MS = 150;
+    private static final int SEARCH_LIMIT = 200;
+    private static final int NO_RANGE = Integer.MIN_VALUE;
+
+    // A CSV import and how far it has got. The import runs here rather than in MainActivity,
+    // so a rotation neither loses its progress nor drops its result.
+    public static final class ImportState {
+        public final int imported;
+        public final int skipped;
+        public final long bytesRead;
+        // -1 when the document provider doesn't report a size
+        public final long totalBytes;
+        public final boolean finished;
+        // Set once finished; null if the file couldn't be read
+        public final ExpenseCsvImporter.Result result;
+
+        ImportState(int imported, int skipped, long bytesRead, long totalBytes, boolean finished,
+                    ExpenseCsvImporter.Result result) {
+            this.imported = imported;
+            this.skipped = skipped;
+            this.bytesRead = bytesRead;
+            this.totalBytes = totalBytes;
+            this.finished = finished;
+            this.result = result;
+        }
+    }
+
+    private final ExpenseDatabase database;
+    private final DatabaseDispatcher dispatcher = DatabaseDispatcher.getInstance();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExpenseFormatter formatter;
+    private final CategoryRegistry categoryRegistry;
+    private final ExpensePager pager;
+    private final DashboardSnapshotStore snapshotStore;
+    private final PerformanceMonitor monitor;
+    // When the reload the pager is answering was requested, for PerformanceMonitor.feedLoad
+    private long feedLoadStartedAt;
+    private final MutableLiveData<List<ExpenseAdapter.ExpenseRow>> feed = new MutableLiveData<>();
+    private final MutableLiveData<DashboardAdapter.DashboardModel> dashboard = new MutableLiveData<>();
+    private final MutableLiveData<DashboardAdapter.PeriodTotals> periodTotals = new MutableLiveData<>();
+    private final MutableLiveData<List<ExpenseAdapter.ExpenseRow>> searchResults = new MutableLiveData<>();
+    // Null when no import is running or waiting to be reported
+    private final MutableLiveData<ImportState> importState = new MutableLiveData<>();
+    // The running import, for cancelImport(). Main thread only.
+    private ExpenseCsvImporter importer;
+    private final Runnable searchRunnable = this::runSearch;
+    // Rows carry formatted amounts, so a currency change rebuilds them
+    private final Runnable formatterListener = this::reload;
+    private final ExpenseAnalytics analytics;
+    private final ExpenseStore store;
+    // Store changes not yet in every loaded figure, oldest first. Main thread only.
+    private final List<ExpenseStore.Change> pending = new ArrayList<>();
+    // The last window and dashboard as read, before pending changes are applied
+    private List<ExpenseAdapter.ExpenseRow> loadedWindow;
+    private DashboardAdapter.DashboardModel loadedDashboard;
+    // Picked "spent between" range as inclusive epoch days
+    private int rangeFromDay = NO_RANGE;
+    private int rangeToDay = NO_RANGE;
+    private String searchQuery = "";
+    private boolean cleared = false;
+
+    private final InvalidationTracker.Observer expensesObserver =
+            new InvalidationTracker.Observer("expenses", "budgets") {
+        @Override
+        public void onInvalidated(@NonNull Set<String> tables) {
+            // Called on Room's background thread
+            mainHandler.post(ExpenseViewModel.this::reload);
+        }
+    };
+
+    public ExpenseViewModel(@NonNull Application application) {
+        super(application);
+        database = ExpenseDatabase.getInstance(application);
+        formatter = ExpenseFormatter.getInstance(application);
+        categoryRegistry = CategoryRegistry.getInstance(application);
+        pager = new ExpensePager(database.expenseDao(), formatter);
+        pager.setListener(this);
+        snapshotStore = new DashboardSnapshotStore(application);
+        monitor = PerformanceMonitor.getInstance(application);
+        analytics = ExpenseAnalytics.getInstance(application);
+        store = ExpenseStore.getInstance(application);
+        store.addListener(this);
+        restoreSnapshot();
+        database.getInvalidationTracker().addObserver(expensesObserver);
+        formatter.addChangeListener(formatterListener);
+        reload();
+    }
+
+    public LiveData<List<ExpenseAdapter.ExpenseRow>> getFeed() {
+        return feed;
+    }
+
+    public LiveData<DashboardAdapter.DashboardModel> getDashboard() {
+        return dashboard;
+    }
+
+    public LiveData<DashboardAdapter.PeriodTotals> getPeriodTotals() {
+        return periodTotals;
+    }
+
+    // Inclusive epoch days. Once the index is built this is answered on the spot, so a
+    // picker can call it on every change.
+    public void setRange(int fromDay, int toDay) {
+        rangeFromDay = Math.min(fromDay, toDay);
+        rangeToDay = Math.max(fromDay, toDay);
+        if (analytics.getState() != null) {
+            publishPeriodTotals();
+        } else {
+            loadPeriodTotals();
+        }
+    }
+
+    public LiveData<List<ExpenseAdapter.ExpenseRow>> getSearchResults() {
+        return searchResults;
+    }
+
+    // Called on every keystroke; the query runs once typing pauses for SEARCH_DEBOUNCE_MS
+    public void setSearchQuery(String query) {
+        String trimmed = query == null ? "" : query.trim();
+        if (trimmed.equals(searchQuery)) {
+            return;
+        }
+        searchQuery = trimmed;
+        mainHandler.removeCallbacks(searchRunnable);
+        if (trimmed.isEmpty()) {
+            // Still bumps the read sequence so a search in flight can't deliver afterwards
+            dispatcher.read("search", null, Collections::<ExpenseAdapter.ExpenseRow>emptyList, searchResults::setValue);
+        } else {
+            mainHandler.postDelayed(searchRunnable, SEARCH_DEBOUNCE_MS);
+        }
+    }
+
+    public LiveData<ImportState> getImportState() {
+        return importState;
+    }
+
+    // Ignored while an import is already running. The whole import runs on the write lane,
+    // and the feed refreshes once per committed chunk.
+    public void importCsv(Uri uri) {
+        if (importer != null) {
+            return;
+        }
+        ExpenseCsvImporter running = new ExpenseCsvImporter(database.expenseDao(), categoryRegistry);
+        importer = running;
+        importState.setValue(new ImportState(0, 0, 0, -1, false, null));
+        ContentResolver resolver = getApplication().getContentResolver();
+        dispatcher.write("importCsv", null,
+                () -> {
+                    try {
+                        return running.importFrom(resolver, uri, (imported, skipped, bytesRead, totalBytes) ->
+                                mainHandler.post(() -> {
+                                    if (importer == running) {
+                                        importState.setValue(new ImportState(imported, skipped, bytesRead,
+                                                totalBytes, false, null));
+                                    }
+                                }));
+                    } catch (IOException e) {
+                        Log.e("ExpenseViewModel", "CSV import failed", e);
+                        return null;
+                    }
+                },
+                result -> {
+                    importer = null;
+                    if (!cleared) {
+                        importState.setValue(result != null
+                                ? new ImportState(result.imported, result.skipped, 0, -1, true, result)
+                                : new ImportState(0, 0, 0, -1, true, null));
+                    }
+                });
+    }
+
+    // Rows committed before the cancel are kept
+    public void cancelImport() {
+        if (importer != null) {
+            importer.cancel();
+        }
+    }
+
+    // Called once the finished import has been reported, so it isn't shown again
+    public void onImportReported() {
+        importState.setValue(null);
+    }
+
+    public String getSearchQuery() {
+        return searchQuery;
+    }
+
+    public boolean isSearching() {
+        return !searchQuery.isEmpty();
+    }
+
+    public ExpensePager getPager() {
+        return pager;
+    }
+
+    @Override
+    public void onWindowChanged(List<ExpenseAdapter.ExpenseRow> window) {
+        monitor.recordSince(monitor.feedLoad, feedLoadStartedAt);
+        feedLoadStartedAt = 0;
+        loadedWindow = window;
+        prunePending();
+        publishFeed();
+    }
+
+    @Override
+    public void onChangesPending(List<ExpenseStore.Change> changes) {
+        pending.addAll(changes);
+        publishAll();
+    }
+
+    // Written changes stay applied until the reloads that Room's invalidation triggers include
+    // them; failed ones are taken back out
+    @Override
+    public void onChangesSettled(List<ExpenseStore.Change> changes, boolean written) {
+        if (!written) {
+            pending.removeAll(changes);
+        } else {
+            prunePending();
+        }
+        publishAll();
+    }
+
+    // A few KB read on the main thread, so the first frame has content however large the table is
+    private void restoreSnapshot() {
+        DashboardSnapshotStore.Snapshot snapshot =
+                snapshotStore.load(ExpenseDates.monthKey(Calendar.getInstance()), formatter);
+        if (snapshot != null) {
+            loadedDashboard = snapshot.dashboard;
+            loadedWindow = snapshot.rows;
+            dashboard.setValue(snapshot.dashboard);
+            feed.setValue(snapshot.rows);
+        }
+    }
+
+    private void reload() {
+        if (cleared) {
+            return;
+        }
+        long startedAt = monitor.start();
+        feedLoadStartedAt = startedAt;
+        pager.refresh();
+        if (isSearching()) {
+            runSearch();
+        }
+
+        // Aggregates are read from the rollup tables on a background thread, in one transaction
+        // so the budgets match the summary's change-log position
+        final String month = ExpenseDates.monthKey(Calendar.getInstance());
+        dispatcher.read("dashboard", null,
+                () -> database.runInTransaction(() -> new DashboardAdapter.DashboardModel(
+                        database.expenseDao().getDashboardSummary(month), formatter,
+                        database.budgetDao().getStatuses(month))),
+                model -> {
+                    if (!cleared) {
+                        monitor.recordSince(monitor.dashboardLoad, startedAt);
+                        loadedDashboard = model;
+                        prunePending();
+                        publishDashboard();
+                        saveSnapshot(month, model);
+                    }
+                });
+        loadPeriodTotals();
+    }
+
+    // The refresh reads only the rows changed since the last one. The totals are read on the
+    // main thread afterwards, where the pending changes are.
+    private void loadPeriodTotals() {
+        dispatcher.read("periodTotals", null, analytics::refresh, refreshed -> {
+            if (!cleared) {
+                prunePending();
+                publishPeriodTotals();
+            }
+        });
+    }
+
+    private void publishPeriodTotals() {
+        ExpenseAnalytics.State totals = analytics.getState();
+        if (totals == null) {
+            return;
+        }
+        int today = ExpenseDates.toEpochDay(Calendar.getInstance());
+        String rangeText = null;
+        if (rangeFromDay != NO_RANGE) {
+            rangeText = "Spent " + ExpenseDates.formatEpochDay(rangeFromDay) + " to "
+                    + ExpenseDates.formatEpochDay(rangeToDay) + ": "
+                    + formatter.formatAmount(totalBetween(totals, rangeFromDay, rangeToDay + 1));
+        }
+        periodTotals.setValue(new DashboardAdapter.PeriodTotals(
+                formatter.formatAmount(totalBetween(totals, today - 6, today + 1)),
+                formatter.formatAmount(totalBetween(totals, today - 29, today + 1)),
+                formatter.formatAmount(totalBetween(totals, today - 89, today + 1)),
+                rangeText));
+    }
+
+    // The index's sum over [fromDay, toDay) plus the changes it doesn't include yet, judged
+    // by the seq published with that index
+    private long totalBetween(ExpenseAnalytics.State totals, int fromDay, int toDay) {
+        long total = totals.dayTotals.getTotalBetween(fromDay, toDay);
+        for (ExpenseStore.Change change : pending) {
+            if (change.seq != 0 && change.seq <= totals.appliedSeq) {
+                continue;
+            }
+            if (change.before != null && isBetween(change.before, fromDay, toDay)) {
+                total -= change.before.getAmountMinor();
+            }
+            if (change.after != null && isBetween(change.after, fromDay, toDay)) {
+                total += change.after.getAmountMinor();
+            }
+        }
+        return total;
+    }
+
+    private static boolean isBetween(Expense expense, int fromDay, int toDay) {
+        long day = ExpenseDates.toEpochDay(expense.getDate());
+        return day != Long.MIN_VALUE && day >= fromDay && day < toDay;
+    }
+
+    // A written change is dropped once the feed, dashboard and analytics were all read at or
+    // after its change-log position
+    private void prunePending() {
+        long loadedSeq = Math.min(pager.getChangeSeq(), Math.min(analytics.getAppliedSeq(),
+                loadedDashboard != null ? loadedDashboard.summary.changeSeq : 0));
+        Iterator<ExpenseStore.Change> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            ExpenseStore.Change change = iterator.next();
+            if (change.seq != 0 && change.seq <= loadedSeq) {
+                iterator.remove();
+                if (change.before == null) {
+                    // The window now has the row under its stored id
+                    ExpenseStore.forgetTemporaryId(change.after.getId());
+                }
+            }
+        }
+    }
+
+    private void publishAll() {
+        publishFeed();
+        publishDashboard();
+        publishPeriodTotals();
+    }
+
+    private void publishFeed() {
+        if (loadedWindow == null) {
+            return;
+        }
+        if (pending.isEmpty()) {
+            feed.setValue(loadedWindow);
+            return;
+        }
+        // Reapplying a change the window already has only replaces the row with itself
+        List<ExpenseAdapter.ExpenseRow> rows = new ArrayList<>(loadedWindow);
+        for (ExpenseStore.Change change : pending) {
+            if (change.before != null) {
+                removeRow(rows, change.before.getId());
+            }
+            if (change.after != null) {
+                removeRow(rows, change.after.getId());
+                insertRow(rows, change);
+            }
+        }
+        feed.setValue(rows);
+    }
+
+    private static void removeRow(List<ExpenseAdapter.ExpenseRow> rows, int id) {
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).expense.getId() == id) {
+                rows.remove(i);
+                return;
+            }
+        }
+    }
+
+    // In the feed's (timestamp, id) descending order. A row that sorts past either end of a
+    // window that doesn't reach that end is left for the pager to load in its turn.
+    private void insertRow(List<ExpenseAdapter.ExpenseRow> rows, ExpenseStore.Change change) {
+        Expense expense = change.after;
+        int position = 0;
+        while (position < rows.size() && isNewer(rows.get(position).expense, expense)) {
+            position++;
+        }
+        if ((position == 0 && !rows.isEmpty() && !pager.isAtStart())
+                || (position == rows.size() && !pager.isAtEnd())) {
+            return;
+        }
+        ExpenseAdapter.ExpenseRow row;
+        if (expense.getCategoryId() == ExpenseStore.NEW_CATEGORY) {
+            row = new ExpenseAdapter.ExpenseRow(expense, formatter.formatAmount(expense.getAmountMinor()),
+                    change.newCategoryName, Category.customColor(change.newCategoryName));
+        } else {
+            row = formatter.toRow(expense);
+        }
+        rows.add(position, row);
+    }
+
+    // An unwritten add has the newest id there will be
+    private static boolean isNewer(Expense a, Expense b) {
+        if (a.getTimestamp() != b.getTimestamp()) {
+            return a.getTimestamp() > b.getTimestamp();
+        }
+        return sortId(a) > sortId(b);
+    }
+
+    private static long sortId(Expense expense) {
+        return expense.getId() < 0 ? Integer.MAX_VALUE - (long) expense.getId() : expense.getId();
+    }
+
+    private void publishDashboard() {
+        DashboardAdapter.DashboardModel model = loadedDashboard;
+        if (model == null) {
+            return;
+        }
+        DashboardSummary summary = model.summary;
+        List<ExpenseStore.Change> changes = new ArrayList<>();
+        for (ExpenseStore.Change change : pending) {
+            // Figures read at or after a write already count it
+            if (change.seq == 0 || change.seq > summary.changeSeq) {
+                changes.add(change);
+            }
+        }
+        // Category names and colours come from the registry, which would query the table on
+        // this thread if it weren't loaded yet; until it is, the reload shows the changes
+        if (changes.isEmpty() || !categoryRegistry.isLoaded()) {
+            dashboard.setValue(model);
+            return;
+        }
+        new DashboardOverlay(model).apply(changes);
+    }
+
+    // Adds pending changes to a loaded dashboard the way the rollup triggers will
+    private class DashboardOverlay {
+        private final String month = ExpenseDates.monthKey(Calendar.getInstance());
+        private long total;
+        private long monthTotal;
+        private String firstDate;
+        private String lastDate;
+        private final Map<Integer, Long> categoryTotals = new LinkedHashMap<>();
+        private final Set<Integer> touched = new HashSet<>();
+        private final Map<Integer, Budget.Status> budgets = new HashMap<>();
+        private final List<Budget.Status> budgetList;
+        private final long changeSeq;
+
+        DashboardOverlay(DashboardAdapter.DashboardModel model) {
+            DashboardSummary summary = model.summary;
+            total = summary.totalAmount;
+            monthTotal = summary.monthAmount;
+            firstDate = summary.firstDate;
+            lastDate = summary.lastDate;
+            changeSeq = summary.changeSeq;
+            for (DashboardSummary.CategoryTotal categoryTotal : summary.categoryTotals) {
+                categoryTotals.put(categoryTotal.categoryId, categoryTotal.total);
+            }
+            budgetList = new ArrayList<>(model.budgets.size());
+            for (Budget.Status status : model.budgets) {
+                Budget.Status copy = status.copy();
+                budgetList.add(copy);
+                budgets.put(copy.categoryId, copy);
+            }
+        }
+
+        void apply(List<ExpenseStore.Change> changes) {
+            for (ExpenseStore.Change change : changes) {
+                if (change.before != null) {
+                    add(change.before, -change.before.getAmountMinor());
+                }
+                if (change.after != null) {
+                    add(change.after, change.after.getAmountMinor());
+                    // Only widened here; a delete at either end is picked up by the reload
+                    String date = change.after.getDate();
+                    if (date != null) {
+                        firstDate = firstDate == null || date.compareTo(firstDate) < 0 ? date : firstDate;
+                        lastDate = lastDate == null || date.compareTo(lastDate) > 0 ? date : lastDate;
+                    }
+                }
+            }
+
+            List<DashboardSummary.CategoryTotal> totals = new ArrayList<>(categoryTotals.size());
+            for (Map.Entry<Integer, Long> entry : categoryTotals.entrySet()) {
+                if (entry.getValue() == 0 && touched.contains(entry.getKey())) {
+                    continue;
+                }
+                DashboardSummary.CategoryTotal categoryTotal = new DashboardSummary.CategoryTotal();
+                categoryTotal.categoryId = entry.getKey();
+                categoryTotal.total = entry.getValue();
+                totals.add(categoryTotal);
+            }
+            Collections.sort(totals, (a, b) -> Long.compare(b.total, a.total));
+            DashboardSummary summary = new DashboardSummary(total, monthTotal, firstDate, lastDate, totals, changeSeq);
+            dashboard.setValue(new DashboardAdapter.DashboardModel(summary, formatter, budgetList));
+        }
+
+        private void add(Expense expense, long amount) {
+            total += amount;
+            boolean inMonth = expense.getDate() != null && expense.getDate().startsWith(month);
+            if (inMonth) {
+                monthTotal += amount;
+            }
+            int categoryId = expense.getCategoryId();
+            if (categoryId == ExpenseStore.NEW_CATEGORY) {
+                return;
+            }
+            Long categoryTotal = categoryTotals.get(categoryId);
+            categoryTotals.put(categoryId, (categoryTotal != null ? categoryTotal : 0) + amount);
+            touched.add(categoryId);
+            Budget.Status budget = budgets.get(categoryId);
+            if (inMonth && budget != null) {
+                budget.spentMinor += amount;
+            }
+        }
+    }
+
+    // Queued behind any pending writes, so the saved rows include them
+    private void saveSnapshot(String month, DashboardAdapter.DashboardModel model) {
+        dispatcher.write("dashboardSnapshot", () -> snapshotStore.save(month, model,
+                formatter.toRows(database.expenseDao().getFirstPage(DashboardSnapshotStore.ROWS))));
+    }
+
+    // Stale searches are dropped by the dispatcher: a queued one is replaced by the newer
+    // query and only the latest issued search delivers its result
+    private void runSearch() {
+        if (cleared || !isSearching()) {
+            return;
+        }
+        final String query = searchQuery;
+        dispatcher.read("search", null,
+                () -> formatter.toRows(database.expenseDao().searchExpenses(query, SEARCH_LIMIT)),
+                results -> {
+                    if (!cleared) {
+                        searchResults.setValue(results);
+                    }
+                });
+    }
+
+    @Override
+    protected void onCleared() {
+        cleared = true;
+        // Nobody is left to report to
+        cancelImport();
+        store.removeListener(this);
+        for (ExpenseStore.Change change : pending) {
+            if (change.before == null) {
+                ExpenseStore.forgetTemporaryId(change.after.getId());
+            }
+        }
+        mainHandler.removeCallbacks(searchRunnable);
+        database.getInvalidationTracker().removeObserver(expensesObserver);
+        formatter.removeChangeListener(formatterListener);
+        pager.close();
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.fintrack;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.load.engine.cache.InternalCacheDiskCacheFactory;
+import com.bumptech.glide.load.engine.cache.LruResourceCache;
+import com.bumptech.glide.load.engine.cache.MemorySizeCalculator;
+import com.bumptech.glide.module.AppGlideModule;
+import com.bumptech.glide.request.RequestOptions;
+
+// Bounds Glide's caches for receipt photos. Memory is sized from the device's memory class,
+// so low-RAM devices get a smaller LRU; downsampled results are kept on disk in the cache dir.
+@GlideModule
+public final class FinTrackGlideModule extends AppGlideModule {
+    private static final String DISK_CACHE_NAME = "receipt_images";
+    private static final long DISK_CACHE_SIZE = 50L * 1024 * 1024;
+    private static final float MEMORY_CACHE_SCREENS = 2;
+
+    @Override
+    public void applyOptions(@NonNull Context context, @NonNull GlideBuilder builder) {
+        MemorySizeCalculator calculator = new MemorySizeCalculator.Builder(context)
+                .setMemoryCacheScreens(MEMORY_CACHE_SCREENS)
+                .build();
+        builder.setMemoryCache(new LruResourceCache(calculator.getMemoryCacheSize()));
+        builder.setDiskCache(new InternalCacheDiskCacheFactory(context, DISK_CACHE_NAME, DISK_CACHE_SIZE));
+        // Receipts don't need alpha, RGB_565 halves the bitmap size
+        builder.setDefaultRequestOptions(new RequestOptions().format(DecodeFormat.PREFER_RGB_565));
+    }
+
+    @Override
+    public boolean isManifestParsingEnabled() {
+        return false;
+    }
+}
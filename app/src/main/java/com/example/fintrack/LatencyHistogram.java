@@ -0,0 +1,101 @@
+package com.example.fintrack;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+// Fixed-size latency histogram with power-of-two microsecond buckets, 1us up to about 1s plus
+// an overflow bucket. Recording is a few arithmetic operations and never allocates, so it can
+// sit on hot paths; percentiles are reported as the upper bound of their bucket.
+public final class LatencyHistogram {
+    // Bucket i holds samples up to 2^i us; the last one holds everything slower
+    private static final int BUCKETS = 22;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long totalNanos;
+    private long maxNanos;
+
+    public synchronized void record(long nanos) {
+        long micros = Math.max(0, nanos) / 1000;
+        int bucket = micros <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(micros - 1);
+        counts[Math.min(bucket, BUCKETS - 1)]++;
+        count++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+    }
+
+    public synchronized void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getMeanNanos() {
+        return count > 0 ? totalNanos / count : 0;
+    }
+
+    public synchronized long getMaxNanos() {
+        return maxNanos;
+    }
+
+    // Upper bound of the bucket holding the given percentile (0-100); the overflow bucket
+    // reports the largest sample seen
+    public synchronized long getPercentileNanos(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS - 1; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min((1L << i) * 1000, maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    // Per-bucket counts, for drawing; bucket i covers samples up to getBucketBoundNanos(i)
+    public synchronized long[] getCounts() {
+        return counts.clone();
+    }
+
+    public static int getBucketCount() {
+        return BUCKETS;
+    }
+
+    public static long getBucketBoundNanos(int bucket) {
+        return bucket < BUCKETS - 1 ? (1L << bucket) * 1000 : Long.MAX_VALUE;
+    }
+
+    public synchronized LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram();
+        System.arraycopy(counts, 0, copy.counts, 0, BUCKETS);
+        copy.count = count;
+        copy.totalNanos = totalNanos;
+        copy.maxNanos = maxNanos;
+        return copy;
+    }
+
+    static String formatMillis(long nanos) {
+        return String.format(Locale.US, "%.2fms", nanos / 1_000_000.0);
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return "n=" + count
+                + " mean=" + formatMillis(getMeanNanos())
+                + " p50<=" + formatMillis(getPercentileNanos(50))
+                + " p95<=" + formatMillis(getPercentileNanos(95))
+                + " p99<=" + formatMillis(getPercentileNanos(99))
+                + " max=" + formatMillis(maxNanos);
+    }
+}
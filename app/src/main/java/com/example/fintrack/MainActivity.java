@@ -1,46 +1,118 @@
 package com.example.fintrack;
 
+import android.Manifest;
+import android.app.DatePickerDialog;
 import android.content.Intent;
 import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.widget.ArrayAdapter;
+import android.widget.Button;
+import android.widget.CheckBox;
+import android.widget.ProgressBar;
+import android.widget.RadioGroup;
+import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.view.ActionMode;
+import androidx.appcompat.widget.SearchView;
 import androidx.appcompat.widget.Toolbar;
+import androidx.core.app.ActivityCompat;
+import androidx.core.content.ContextCompat;
+import androidx.core.util.Pair;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.ConcatAdapter;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.appbar.MaterialToolbar;
+import com.google.android.material.datepicker.MaterialDatePicker;
 
 import com.google.android.material.floatingactionbutton.ExtendedFloatingActionButton;
+import com.google.android.material.snackbar.Snackbar;
 
-import java.text.SimpleDateFormat;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
 public class MainActivity extends AppCompatActivity {
+    private static final int IMPORT_CSV_REQUEST = 2;
+    private static final int EXPORT_REQUEST = 3;
+    private static final int NOTIFICATION_PERMISSION_REQUEST = 4;
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
     private RecyclerView recyclerView;
-    private RecyclerView categoryRecyclerView;
     private ExpenseAdapter adapter;
+    private ExpenseAdapter searchAdapter;
+    private ConcatAdapter concatAdapter;
+    private boolean showingSearch = false;
+    private ExpenseViewModel viewModel;
+    private DashboardAdapter dashboardAdapter;
     private CategoryAdapter categoryAdapter;
-    private List<Expense> expenseList;
-    private List<CategoryAdapter.CategorySummary> categoryList;
     private ExpenseDatabase database;
+    private DatabaseDispatcher dispatcher;
     private SharedPreferences sharedPreferences;
-    
-    // Dashboard views
-    private TextView tvTotalExpenses;
-    private TextView tvMonthAmount;
-    private TextView tvAvgPerDay;
+    private ExpenseExporter.Options pendingExport;
+    // Shown while expenses are multi-selected
+    private ActionMode selectionMode;
+    // Rebuilt from the ViewModel's import state after a rotation
+    private AlertDialog importDialog;
+    private ProgressBar importProgressBar;
+    private TextView importProgressText;
+
+    private final ActionMode.Callback selectionCallback = new ActionMode.Callback() {
+        @Override
+        public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+            mode.getMenuInflater().inflate(R.menu.selection_menu, menu);
+            return true;
+        }
+
+        @Override
+        public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+            return false;
+        }
+
+        @Override
+        public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+            List<Integer> ids = adapter.getSelectedIds();
+            int id = item.getItemId();
+            if (id == R.id.action_delete_selected) {
+                deleteExpenses(adapter.getSelectedExpenses(), ids);
+                mode.finish();
+                return true;
+            }
+            if (id == R.id.action_recategorize_selected) {
+                showRecategorizeDialog(ids);
+                return true;
+            }
+            if (id == R.id.action_shift_date_selected) {
+                showShiftDateDialog(ids);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void onDestroyActionMode(ActionMode mode) {
+            selectionMode = null;
+            adapter.clearSelection();
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -49,6 +121,7 @@ public class MainActivity extends AppCompatActivity {
 
         // Initialize database and preferences
         database = ExpenseDatabase.getInstance(this);
+        dispatcher = DatabaseDispatcher.getInstance();
         sharedPreferences = getSharedPreferences("FinTrackSettings", MODE_PRIVATE);
 
         // Set up toolbar
@@ -58,26 +131,25 @@ public class MainActivity extends AppCompatActivity {
             getSupportActionBar().setTitle("FinTrack");
         }
 
-        // Initialize dashboard views
-        tvTotalExpenses = findViewById(R.id.tv_total_expenses);
-        tvMonthAmount = findViewById(R.id.tv_month_amount);
-        tvAvgPerDay = findViewById(R.id.tv_avg_per_day);
+        // Dashboard header with the category breakdown
+        categoryAdapter = new CategoryAdapter();
+        dashboardAdapter = new DashboardAdapter(categoryAdapter);
+
+        // Expense list is paged so only a window of rows is kept in memory.
+        // The ViewModel keeps the window across rotation, so recreating costs no queries.
+        viewModel = new ViewModelProvider(this).get(ExpenseViewModel.class);
+        adapter = new ExpenseAdapter(viewModel.getPager(), this);
+        adapter.setSelectionListener(this::onSelectionChanged);
+        searchAdapter = new ExpenseAdapter(null, this);
 
-        // Initialize expense RecyclerView
         recyclerView = findViewById(R.id.recyclerView);
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
-        
-        expenseList = new ArrayList<>();
-        adapter = new ExpenseAdapter(expenseList, this);
-        recyclerView.setAdapter(adapter);
-
-        // Initialize category RecyclerView
-        categoryRecyclerView = findViewById(R.id.rv_categories);
-        categoryRecyclerView.setLayoutManager(new LinearLayoutManager(this));
-        
-        categoryList = new ArrayList<>();
-        categoryAdapter = new CategoryAdapter(categoryList);
-        categoryRecyclerView.setAdapter(categoryAdapter);
+        ConcatAdapter.Config config = new ConcatAdapter.Config.Builder()
+                .setStableIdMode(ConcatAdapter.Config.StableIdMode.ISOLATED_STABLE_IDS)
+                .build();
+        concatAdapter = new ConcatAdapter(config, dashboardAdapter, adapter);
+        recyclerView.setAdapter(concatAdapter);
+        PerformanceMonitor.getInstance(this).trackScrolling(recyclerView);
 
         // Set up FloatingActionButton
         ExtendedFloatingActionButton fab = findViewById(R.id.fab_add_expense);
@@ -89,15 +161,42 @@ public class MainActivity extends AppCompatActivity {
             }
         });
 
-        // Load expenses from database
-        loadExpenses();
+        // Reclaim receipt files orphaned by earlier deletes and edits
+        if (savedInstanceState == null) {
+            PhotoStore.getInstance(this).requestSweep();
+            // Deletes whose undo window ran out while the app wasn't running
+            ExpenseBatchEditor.getInstance(this).requestPurge();
+        }
+        BudgetMonitor.getInstance(this).start();
+
+        // Re-rendered only when the expenses table or the currency changes
+        viewModel.getFeed().observe(this, rows -> adapter.submitList(rows));
+        viewModel.getSearchResults().observe(this, rows -> searchAdapter.submitList(rows));
+        viewModel.getPeriodTotals().observe(this, totals -> dashboardAdapter.updatePeriodTotals(totals));
+        dashboardAdapter.setOnPickRangeListener(v -> showRangePicker());
+        viewModel.getDashboard().observe(this, model -> {
+            dashboardAdapter.updateStatistics(model.totalText, model.monthText, model.avgPerDayText);
+            categoryAdapter.submitList(model.categories);
+        });
+        viewModel.getImportState().observe(this, this::showImportState);
+    }
+
+    @Override
+    protected void onDestroy() {
+        // The import carries on in the ViewModel; the next Activity shows a new dialog for it
+        if (importDialog != null) {
+            importDialog.dismiss();
+            importDialog = null;
+        }
+        super.onDestroy();
     }
 
     @Override
     protected void onResume() {
         super.onResume();
         Log.d("MainActivity", "onResume called");
-        loadExpenses();
+        // Also covers the day rolling over while the app sits in the background
+        RecurringScheduler.getInstance(this).requestCatchUp();
     }
 
     @Override
@@ -111,10 +210,61 @@ public class MainActivity extends AppCompatActivity {
             MenuItem item = menu.getItem(i);
             Log.d("MainActivity", "Menu item: " + item.getTitle() + " with ID: " + item.getItemId());
         }
+
+        setUpSearch(menu.findItem(R.id.action_search));
+        menu.findItem(R.id.action_diagnostics).setVisible(PerformanceMonitor.isDebuggable(this));
         
         return true;
     }
 
+    private void setUpSearch(MenuItem searchItem) {
+        SearchView searchView = (SearchView) searchItem.getActionView();
+        searchView.setQueryHint("Search title or notes");
+
+        // Restore a search that survived a configuration change
+        String query = viewModel.getSearchQuery();
+        if (!query.isEmpty()) {
+            searchItem.expandActionView();
+            searchView.setQuery(query, false);
+            showSearchResults(true);
+        }
+
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                viewModel.setSearchQuery(newText);
+                showSearchResults(viewModel.isSearching());
+                return true;
+            }
+        });
+    }
+
+    // While searching, the dashboard and paged feed are swapped out for the result list
+    private void showSearchResults(boolean searching) {
+        if (searching == showingSearch) {
+            return;
+        }
+        showingSearch = searching;
+        if (searching) {
+            // The selected rows are no longer on screen
+            finishSelection();
+            concatAdapter.removeAdapter(dashboardAdapter);
+            concatAdapter.removeAdapter(adapter);
+            concatAdapter.addAdapter(searchAdapter);
+        } else {
+            concatAdapter.removeAdapter(searchAdapter);
+            concatAdapter.addAdapter(dashboardAdapter);
+            concatAdapter.addAdapter(adapter);
+        }
+        recyclerView.scrollToPosition(0);
+    }
+
     @Override
     public boolean onOptionsItemSelected(@NonNull MenuItem item) {
         int id = item.getItemId();
@@ -125,117 +275,238 @@ public class MainActivity extends AppCompatActivity {
             startActivity(intent);
             return true;
         }
+
+        if (id == R.id.action_import_csv) {
+            openCsvPicker();
+            return true;
+        }
+
+        if (id == R.id.action_export) {
+            showExportDialog();
+            return true;
+        }
+
+        if (id == R.id.action_budgets) {
+            showBudgetCategoryPicker();
+            return true;
+        }
+
+        if (id == R.id.action_recurring) {
+            showRecurringExpenses();
+            return true;
+        }
+
+        if (id == R.id.action_diagnostics) {
+            startActivity(new Intent(this, DiagnosticsActivity.class));
+            return true;
+        }
         
         return super.onOptionsItemSelected(item);
     }
 
-    private void loadExpenses() {
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                final List<Expense> expenses = database.expenseDao().getAllExpenses();
-                runOnUiThread(new Runnable() {
-                    @Override
-                    public void run() {
-                        expenseList.clear();
-                        expenseList.addAll(expenses);
-                        adapter.notifyDataSetChanged();
-                        
-                        // Update dashboard statistics
-                        updateDashboardStatistics(expenses);
-                        updateCategoryBreakdown(expenses);
-                    }
-                });
-            }
-        }).start();
+    @SuppressWarnings("deprecation")
+    private void openCsvPicker() {
+        Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType("*/*");
+        intent.putExtra(Intent.EXTRA_MIME_TYPES,
+                new String[]{"text/csv", "text/comma-separated-values", "text/plain"});
+        startActivityForResult(intent, IMPORT_CSV_REQUEST);
     }
 
-    private void updateDashboardStatistics(List<Expense> expenses) {
-        double totalAmount = 0;
-        double monthAmount = 0;
-        
-        Calendar currentMonth = Calendar.getInstance();
-        int currentYear = currentMonth.get(Calendar.YEAR);
-        int currentMonthNum = currentMonth.get(Calendar.MONTH);
-        
-        for (Expense expense : expenses) {
-            totalAmount += expense.getAmount();
-            
-            // Calculate this month's expenses
-            try {
-                SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-                Calendar expenseDate = Calendar.getInstance();
-                expenseDate.setTime(sdf.parse(expense.getDate()));
-                
-                if (expenseDate.get(Calendar.YEAR) == currentYear && 
-                    expenseDate.get(Calendar.MONTH) == currentMonthNum) {
-                    monthAmount += expense.getAmount();
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+    @Override
+    @SuppressWarnings("deprecation")
+    protected void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+
+        if (requestCode == IMPORT_CSV_REQUEST && resultCode == RESULT_OK && data != null && data.getData() != null) {
+            viewModel.importCsv(data.getData());
         }
-        
-        // Calculate average per day
-        double avgPerDay = 0;
-        if (!expenses.isEmpty()) {
-            Calendar firstExpense = Calendar.getInstance();
-            Calendar lastExpense = Calendar.getInstance();
-            
-            try {
-                SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-                firstExpense.setTime(sdf.parse(expenses.get(expenses.size() - 1).getDate()));
-                lastExpense.setTime(sdf.parse(expenses.get(0).getDate()));
-                
-                long daysDiff = (lastExpense.getTimeInMillis() - firstExpense.getTimeInMillis()) / (24 * 60 * 60 * 1000);
-                if (daysDiff > 0) {
-                    avgPerDay = totalAmount / (daysDiff + 1);
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
+
+        if (requestCode == EXPORT_REQUEST && resultCode == RESULT_OK && data != null && data.getData() != null) {
+            exportTo(data.getData(), pendingExport != null ? pendingExport : new ExpenseExporter.Options());
+            pendingExport = null;
+        }
+    }
+
+    private void showImportState(ExpenseViewModel.ImportState state) {
+        if (state == null) {
+            return;
+        }
+        if (state.finished) {
+            if (importDialog != null) {
+                importDialog.dismiss();
+                importDialog = null;
             }
+            showImportResult(state.result);
+            viewModel.onImportReported();
+            return;
         }
-        
-        String currency = SettingsActivity.getCurrentCurrency(sharedPreferences);
-        String currencySymbol = SettingsActivity.getCurrencySymbol(currency);
-        
-        tvTotalExpenses.setText(String.format("Total Expenses: %s%.2f", currencySymbol, totalAmount));
-        tvMonthAmount.setText(String.format("%s%.2f", currencySymbol, monthAmount));
-        tvAvgPerDay.setText(String.format("%s%.2f", currencySymbol, avgPerDay));
+
+        if (importDialog == null) {
+            View progressView = getLayoutInflater().inflate(R.layout.dialog_progress, null);
+            importProgressBar = progressView.findViewById(R.id.progress_bar);
+            importProgressText = progressView.findViewById(R.id.tv_progress);
+            importDialog = new AlertDialog.Builder(this)
+                .setTitle("Importing Expenses")
+                .setView(progressView)
+                .setCancelable(false)
+                .setNegativeButton("Cancel", (dialog, which) -> viewModel.cancelImport())
+                .show();
+        }
+        if (state.totalBytes > 0) {
+            importProgressBar.setIndeterminate(false);
+            importProgressBar.setProgress((int) (state.bytesRead * importProgressBar.getMax() / state.totalBytes));
+        }
+        importProgressText.setText(state.imported + " imported, " + state.skipped + " skipped");
     }
 
-    private void updateCategoryBreakdown(List<Expense> expenses) {
-        Map<String, Double> categoryTotals = new HashMap<>();
-        double totalAmount = 0;
-        
-        for (Expense expense : expenses) {
-            String category = expense.getCategory();
-            double currentTotal = categoryTotals.getOrDefault(category, 0.0);
-            categoryTotals.put(category, currentTotal + expense.getAmount());
-            totalAmount += expense.getAmount();
+    private void showImportResult(@Nullable ExpenseCsvImporter.Result result) {
+        if (result == null) {
+            Toast.makeText(this, "Could not read the selected file", Toast.LENGTH_LONG).show();
+            return;
         }
-        
-        categoryList.clear();
-        for (Map.Entry<String, Double> entry : categoryTotals.entrySet()) {
-            double percentage = totalAmount > 0 ? (entry.getValue() / totalAmount) * 100 : 0;
-            categoryList.add(new CategoryAdapter.CategorySummary(
-                entry.getKey(), entry.getValue(), percentage));
+        String message = (result.cancelled ? "Import cancelled: " : "Imported ")
+                + result.imported + " expenses";
+        if (result.skipped > 0) {
+            message += ", skipped " + result.skipped + " invalid rows";
         }
-        
-        categoryAdapter.notifyDataSetChanged();
+        if (!result.errors.isEmpty()) {
+            Log.w("MainActivity", "CSV import errors: " + result.errors);
+        }
+        Toast.makeText(this, message, Toast.LENGTH_LONG).show();
+    }
+
+    // Picker selections are UTC midnights, so whole days since the epoch
+    private void showRangePicker() {
+        MaterialDatePicker<Pair<Long, Long>> picker = MaterialDatePicker.Builder.dateRangePicker()
+                .setTitleText("Spent between")
+                .build();
+        picker.addOnPositiveButtonClickListener(selection -> viewModel.setRange(
+                (int) (selection.first / DAY_MILLIS), (int) (selection.second / DAY_MILLIS)));
+        picker.show(getSupportFragmentManager(), "rangePicker");
+    }
+
+    private void showExportDialog() {
+        View exportView = getLayoutInflater().inflate(R.layout.dialog_export, null);
+        RadioGroup formatGroup = exportView.findViewById(R.id.rg_format);
+        CheckBox gzipCheckBox = exportView.findViewById(R.id.cb_gzip);
+        Spinner categorySpinner = exportView.findViewById(R.id.sp_category);
+        Button fromButton = exportView.findViewById(R.id.btn_from);
+        Button toButton = exportView.findViewById(R.id.btn_to);
+        ExpenseExporter.Options options = new ExpenseExporter.Options();
+
+        // Categories that currently have expenses, taken from the dashboard already in memory
+        List<String> categories = new ArrayList<>();
+        List<Integer> categoryIds = new ArrayList<>();
+        categories.add("All categories");
+        categoryIds.add(ExpenseExporter.ALL_CATEGORIES);
+        DashboardAdapter.DashboardModel dashboard = viewModel.getDashboard().getValue();
+        if (dashboard != null) {
+            for (CategoryAdapter.CategorySummary category : dashboard.categories) {
+                categories.add(category.category);
+                categoryIds.add(category.categoryId);
+            }
+        }
+        ArrayAdapter<String> categoryAdapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, categories);
+        categoryAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        categorySpinner.setAdapter(categoryAdapter);
+
+        fromButton.setOnClickListener(v -> pickExportDate((year, month, day) -> {
+            options.fromTimestamp = ExpenseDates.dayStartMillis(year, month, day);
+            fromButton.setText("From: " + ExpenseDates.format(year, month, day));
+        }));
+        // The end date is inclusive, so the range runs to the start of the following day
+        toButton.setOnClickListener(v -> pickExportDate((year, month, day) -> {
+            options.toTimestamp = ExpenseDates.dayStartMillis(year, month, day + 1);
+            toButton.setText("To: " + ExpenseDates.format(year, month, day));
+        }));
+
+        new AlertDialog.Builder(this)
+            .setTitle("Export Expenses")
+            .setView(exportView)
+            .setPositiveButton("Export", (dialog, which) -> {
+                options.format = formatGroup.getCheckedRadioButtonId() == R.id.rb_json
+                        ? ExpenseExporter.Format.JSON : ExpenseExporter.Format.CSV;
+                options.gzip = gzipCheckBox.isChecked();
+                options.categoryId = categoryIds.get(categorySpinner.getSelectedItemPosition());
+                openExportDocument(options);
+            })
+            .setNegativeButton("Cancel", null)
+            .show();
+    }
+
+    private interface DateSetListener {
+        void onDateSet(int year, int month, int day);
     }
 
+    private void pickExportDate(DateSetListener listener) {
+        Calendar calendar = Calendar.getInstance();
+        new DatePickerDialog(this,
+                (view, year, month, dayOfMonth) -> listener.onDateSet(year, month + 1, dayOfMonth),
+                calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH), calendar.get(Calendar.DAY_OF_MONTH))
+                .show();
+    }
+
+    @SuppressWarnings("deprecation")
+    private void openExportDocument(ExpenseExporter.Options options) {
+        pendingExport = options;
+        Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType(options.getMimeType());
+        intent.putExtra(Intent.EXTRA_TITLE, options.getFileName());
+        startActivityForResult(intent, EXPORT_REQUEST);
+    }
+
+    private void exportTo(Uri uri, ExpenseExporter.Options options) {
+        View progressView = getLayoutInflater().inflate(R.layout.dialog_progress, null);
+        TextView tvProgress = progressView.findViewById(R.id.tv_progress);
+
+        ExpenseExporter exporter = new ExpenseExporter(database.expenseDao(), CategoryRegistry.getInstance(this));
+        AlertDialog progressDialog = new AlertDialog.Builder(this)
+            .setTitle("Exporting Expenses")
+            .setView(progressView)
+            .setCancelable(false)
+            .setNegativeButton("Cancel", (dialog, which) -> exporter.cancel())
+            .show();
 
+        // Only reads, but kept off the read pool so a long export can't starve the feed
+        dispatcher.write("export", this,
+            () -> {
+                try {
+                    return exporter.exportTo(getContentResolver(), uri, options,
+                        (rows, bytesWritten) -> runOnUiThread(() ->
+                            tvProgress.setText(rows + " rows, " + bytesWritten / 1024 + " KB")));
+                } catch (IOException e) {
+                    Log.e("MainActivity", "Export failed", e);
+                    return null;
+                }
+            },
+            result -> {
+                progressDialog.dismiss();
+                if (result == null) {
+                    Toast.makeText(MainActivity.this, "Could not write the export file", Toast.LENGTH_LONG).show();
+                    return;
+                }
+                String throughput = String.format(Locale.US, "%d rows, %d KB in %d ms (%d rows/s)",
+                        result.rows, result.bytesWritten / 1024, result.elapsedMs, result.getRowsPerSecond());
+                Log.d("MainActivity", "Export finished: " + throughput + ", "
+                        + result.getBytesPerSecond() / 1024 + " KB/s");
+                Toast.makeText(MainActivity.this,
+                        (result.cancelled ? "Export cancelled: " : "Exported ") + throughput,
+                        Toast.LENGTH_LONG).show();
+            });
+    }
 
     public void shareExpense(Expense expense) {
         String currency = SettingsActivity.getCurrentCurrency(sharedPreferences);
         String currencySymbol = SettingsActivity.getCurrencySymbol(currency);
         
         String shareText = "Expense: " + expense.getTitle() + 
-                          "\nAmount: " + currencySymbol + expense.getAmount() + 
+                          "\nAmount: " + currencySymbol + Money.toPlainString(expense.getAmountMinor()) + 
                           "\nDate: " + expense.getDate() + 
                           "\nTime: " + expense.getTime() + 
-                          "\nCategory: " + expense.getCategory() + 
+                          "\nCategory: " + CategoryRegistry.getInstance(this).get(expense.getCategoryId()).getName() + 
                           "\nNotes: " + expense.getNotes();
 
         Intent shareIntent = new Intent(Intent.ACTION_SEND);
@@ -246,26 +517,230 @@ public class MainActivity extends AppCompatActivity {
         startActivity(Intent.createChooser(shareIntent, "Share via"));
     }
 
+    // Lists every category with its budget, if any, for this month
+    private void showBudgetCategoryPicker() {
+        final String month = ExpenseDates.monthKey(Calendar.getInstance());
+        CategoryRegistry categoryRegistry = CategoryRegistry.getInstance(this);
+        dispatcher.read("budgets.categories", this, () -> {
+            categoryRegistry.load();
+            return database.budgetDao().getStatuses(month);
+        }, budgets -> {
+            List<Category> categories = categoryRegistry.getAll();
+            Map<Integer, Budget.Status> byCategory = new HashMap<>();
+            for (Budget.Status budget : budgets) {
+                byCategory.put(budget.categoryId, budget);
+            }
+            Budget.Status[] statuses = new Budget.Status[categories.size()];
+            for (int i = 0; i < statuses.length; i++) {
+                statuses[i] = byCategory.get(categories.get(i).getId());
+            }
+            ExpenseFormatter formatter = ExpenseFormatter.getInstance(this);
+            String[] labels = new String[categories.size()];
+            for (int i = 0; i < labels.length; i++) {
+                labels[i] = categories.get(i).getName() + (statuses[i] != null
+                        ? " - " + formatter.formatAmount(statuses[i].amountMinor) : "");
+            }
+            new AlertDialog.Builder(this)
+                    .setTitle("Monthly Budgets")
+                    .setItems(labels, (dialog, which) -> showBudgetDialog(categories.get(which), statuses[which]))
+                    .setNegativeButton("Close", null)
+                    .show();
+        });
+    }
+
+    private void showBudgetDialog(Category category, Budget.Status status) {
+        View view = getLayoutInflater().inflate(R.layout.dialog_budget, null);
+        TextView statusText = view.findViewById(R.id.tv_budget_status);
+        TextView amountInput = view.findViewById(R.id.et_budget_amount);
+        ExpenseFormatter formatter = ExpenseFormatter.getInstance(this);
+        if (status != null) {
+            statusText.setText("Spent this month: " + formatter.formatAmount(status.spentMinor)
+                    + " (" + status.getPercentSpent() + "%)");
+            amountInput.setText(Money.toPlainString(status.amountMinor));
+        } else {
+            statusText.setText("Get notified at " + BudgetMonitor.WARNING_PERCENT + "% and "
+                    + BudgetMonitor.LIMIT_PERCENT + "% of the budget.");
+        }
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(this)
+                .setTitle(category.getName())
+                .setView(view)
+                .setPositiveButton("Save", (dialog, which) -> {
+                    long amountMinor;
+                    try {
+                        amountMinor = Money.parse(amountInput.getText().toString());
+                    } catch (NumberFormatException e) {
+                        Toast.makeText(this, "Please enter a valid amount", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    if (amountMinor <= 0) {
+                        Toast.makeText(this, "Please enter a valid amount", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    if (status != null && status.amountMinor == amountMinor) {
+                        return;
+                    }
+                    dispatcher.write("setBudget", () -> database.budgetDao().setBudget(category.getId(), amountMinor));
+                    // Spending may already be over the new limit
+                    BudgetMonitor.getInstance(this).requestCheck();
+                    requestNotificationPermission();
+                })
+                .setNegativeButton("Cancel", null);
+        if (status != null) {
+            builder.setNeutralButton("Remove", (dialog, which) ->
+                    dispatcher.write("deleteBudget", () -> database.budgetDao().deleteBudget(category.getId())));
+        }
+        builder.show();
+    }
+
+    // Lists recurring templates soonest first; picking one offers to stop it
+    private void showRecurringExpenses() {
+        dispatcher.read("recurring.list", this, () -> database.recurringExpenseDao().getAll(), templates -> {
+            if (templates.isEmpty()) {
+                Toast.makeText(this, "No recurring expenses. Pick a frequency under Repeats when adding one.",
+                        Toast.LENGTH_LONG).show();
+                return;
+            }
+            ExpenseFormatter formatter = ExpenseFormatter.getInstance(this);
+            String[] labels = new String[templates.size()];
+            for (int i = 0; i < labels.length; i++) {
+                RecurringExpense template = templates.get(i);
+                labels[i] = template.title + " - " + formatter.formatAmount(template.amountMinor) + "\n"
+                        + template.describe() + ", next " + ExpenseDates.formatEpochDay(template.nextDueDay);
+            }
+            new AlertDialog.Builder(this)
+                    .setTitle("Recurring Expenses")
+                    .setItems(labels, (dialog, which) -> confirmStopRecurring(templates.get(which)))
+                    .setNegativeButton("Close", null)
+                    .show();
+        });
+    }
+
+    private void confirmStopRecurring(RecurringExpense template) {
+        new AlertDialog.Builder(this)
+                .setTitle("Stop Repeating")
+                .setMessage("Stop adding \"" + template.title + "\"? Expenses already added are kept.")
+                .setPositiveButton("Stop", (dialog, which) ->
+                        dispatcher.write("deleteRecurring", () -> database.recurringExpenseDao().delete(template.id)))
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    // Budget alerts are notifications, which need a runtime grant from Android 13
+    private void requestNotificationPermission() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                && ContextCompat.checkSelfPermission(this, Manifest.permission.POST_NOTIFICATIONS)
+                != PackageManager.PERMISSION_GRANTED) {
+            ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.POST_NOTIFICATIONS},
+                    NOTIFICATION_PERMISSION_REQUEST);
+        }
+    }
+
     public void deleteExpense(Expense expense) {
         new androidx.appcompat.app.AlertDialog.Builder(this)
             .setTitle("Delete Expense")
             .setMessage("Are you sure you want to delete this expense?")
-            .setPositiveButton("Delete", (dialog, which) -> {
-                new Thread(new Runnable() {
-                    @Override
-                    public void run() {
-                        database.expenseDao().deleteExpense(expense);
-                        runOnUiThread(new Runnable() {
-                            @Override
-                            public void run() {
-                                loadExpenses();
-                                Toast.makeText(MainActivity.this, "Expense deleted", Toast.LENGTH_SHORT).show();
-                            }
-                        });
-                    }
-                }).start();
-            })
+            .setPositiveButton("Delete", (dialog, which) ->
+                    deleteExpenses(Collections.singletonList(expense), Collections.singletonList(expense.getId())))
             .setNegativeButton("Cancel", null)
             .show();
     }
+
+    private void onSelectionChanged(int selectedCount) {
+        if (selectedCount == 0) {
+            finishSelection();
+            return;
+        }
+        if (selectionMode == null) {
+            selectionMode = startSupportActionMode(selectionCallback);
+        }
+        if (selectionMode != null) {
+            selectionMode.setTitle(selectedCount + " selected");
+        }
+    }
+
+    // The loaded rows leave the list and totals at once; the delete is one transaction for the
+    // whole selection, and the rows stay restorable while the Undo action is showing.
+    private void deleteExpenses(List<Expense> expenses, List<Integer> ids) {
+        ExpenseBatchEditor editor = ExpenseBatchEditor.getInstance(this);
+        ExpenseStore.getInstance(this).delete(expenses, ids, batchId -> {
+            if (isDestroyed()) {
+                return;
+            }
+            String message = ids.size() == 1 ? "Expense deleted" : ids.size() + " expenses deleted";
+            Snackbar.make(recyclerView, message, ExpenseBatchEditor.UNDO_WINDOW_MS)
+                    .setAnchorView(R.id.fab_add_expense)
+                    .setAction("Undo", v -> dispatcher.write("undoDelete", this, () -> editor.restore(batchId),
+                            restored -> {
+                                if (restored == 0) {
+                                    Toast.makeText(this, "Too late to undo", Toast.LENGTH_SHORT).show();
+                                }
+                            }))
+                    .show();
+        });
+    }
+
+    private void showRecategorizeDialog(List<Integer> ids) {
+        CategoryRegistry categoryRegistry = CategoryRegistry.getInstance(this);
+        dispatcher.read("bulk.categories", this, () -> {
+            categoryRegistry.load();
+            return categoryRegistry.getAll();
+        }, categories -> {
+            String[] names = new String[categories.size()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = categories.get(i).getName();
+            }
+            new AlertDialog.Builder(this)
+                    .setTitle("Move " + ids.size() + " to")
+                    .setItems(names, (dialog, which) -> {
+                        int categoryId = categories.get(which).getId();
+                        ExpenseBatchEditor editor = ExpenseBatchEditor.getInstance(this);
+                        dispatcher.write("recategorizeExpenses", this, () -> {
+                            editor.setCategory(ids, categoryId);
+                            return null;
+                        }, result -> Toast.makeText(this, updatedMessage(ids.size()), Toast.LENGTH_SHORT).show());
+                        finishSelection();
+                    })
+                    .setNegativeButton("Cancel", null)
+                    .show();
+        });
+    }
+
+    private void showShiftDateDialog(List<Integer> ids) {
+        View view = getLayoutInflater().inflate(R.layout.dialog_shift_date, null);
+        TextView daysInput = view.findViewById(R.id.et_shift_days);
+        new AlertDialog.Builder(this)
+                .setTitle("Shift " + ids.size() + " by days")
+                .setView(view)
+                .setPositiveButton("Shift", (dialog, which) -> {
+                    int days;
+                    try {
+                        days = Integer.parseInt(daysInput.getText().toString().trim());
+                    } catch (NumberFormatException e) {
+                        Toast.makeText(this, "Please enter a number of days", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    if (days == 0) {
+                        return;
+                    }
+                    ExpenseBatchEditor editor = ExpenseBatchEditor.getInstance(this);
+                    dispatcher.write("shiftExpenseDates", this, () -> {
+                        editor.shiftDates(ids, days);
+                        return null;
+                    }, result -> Toast.makeText(this, updatedMessage(ids.size()), Toast.LENGTH_SHORT).show());
+                    finishSelection();
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void finishSelection() {
+        if (selectionMode != null) {
+            selectionMode.finish();
+        }
+    }
+
+    private static String updatedMessage(int count) {
+        return count == 1 ? "Expense updated" : count + " expenses updated";
+    }
 } 
\ No newline at end of file
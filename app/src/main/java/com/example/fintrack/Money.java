@@ -0,0 +1,87 @@
+package com.example.fintrack;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Fixed-point money helpers. Amounts are stored and summed as long minor units at a fixed
+// storage scale of 1/100; the currency setting only decides how many decimals are shown,
+// since switching currency relabels amounts rather than converting them.
+public final class Money {
+    public static final int STORAGE_DECIMALS = 2;
+    public static final long STORAGE_SCALE = 100;
+
+    private Money() {
+    }
+
+    // Decimals shown for a currency code from SettingsActivity
+    public static int displayDecimals(String currency) {
+        return "JPY".equals(currency) ? 0 : STORAGE_DECIMALS;
+    }
+
+    // Parses a decimal string such as "12.5" into minor units, rounding half-up to the cent.
+    // Throws NumberFormatException for anything that isn't a plain decimal number.
+    public static long parse(String text) {
+        try {
+            return new BigDecimal(text.trim())
+                    .setScale(STORAGE_DECIMALS, RoundingMode.HALF_UP)
+                    .unscaledValue()
+                    .longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: " + text);
+        }
+    }
+
+    // Minor units from a legacy double amount, as used by the v5 migration
+    public static long fromDouble(double amount) {
+        return Math.round(amount * STORAGE_SCALE);
+    }
+
+    // "12.50", for editing, sharing and export
+    public static String toPlainString(long minor) {
+        StringBuilder text = new StringBuilder(16);
+        append(text, minor, STORAGE_DECIMALS);
+        return text.toString();
+    }
+
+    // Appends minor units with the given number of decimals (0 to STORAGE_DECIMALS),
+    // rounding half away from zero when decimals are dropped
+    public static void append(StringBuilder text, long minor, int decimals) {
+        long divisor = 1;
+        for (int i = decimals; i < STORAGE_DECIMALS; i++) {
+            divisor *= 10;
+        }
+        long scaled = roundedQuotient(minor, divisor);
+        if (minor < 0 && scaled != 0) {
+            text.append('-');
+        }
+
+        long unit = STORAGE_SCALE / divisor;
+        text.append(Long.toUnsignedString(Long.divideUnsigned(scaled, unit)));
+        if (decimals > 0) {
+            text.append('.');
+            long fraction = Long.remainderUnsigned(scaled, unit);
+            for (long digit = unit / 10; digit > 1 && fraction < digit; digit /= 10) {
+                text.append('0');
+            }
+            text.append(fraction);
+        }
+    }
+
+    // Exact integer average, rounded half away from zero
+    public static long divide(long minor, long divisor) {
+        if (divisor <= 0) {
+            return 0;
+        }
+        long quotient = roundedQuotient(minor, divisor);
+        // Negating the unsigned 2^63 of Long.MIN_VALUE / 1 gives Long.MIN_VALUE back
+        return minor >= 0 ? quotient : -quotient;
+    }
+
+    // |minor| / divisor rounded half up, as an unsigned long. The magnitude is unsigned, so
+    // Long.MIN_VALUE has one, and rounding on the remainder keeps it at most 2^63.
+    private static long roundedQuotient(long minor, long divisor) {
+        long magnitude = minor < 0 ? -minor : minor;
+        return Long.divideUnsigned(magnitude, divisor)
+                + (Long.remainderUnsigned(magnitude, divisor) >= divisor - divisor / 2 ? 1 : 0);
+    }
+}
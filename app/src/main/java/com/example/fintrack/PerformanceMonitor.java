@@ -0,0 +1,119 @@
+package com.example.fintrack;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.view.Choreographer;
+import android.view.Display;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+// UI-side timings shown by DiagnosticsActivity: feed and dashboard load times, row bind cost
+// and frame pacing while the list scrolls. Recording only happens in debuggable builds; in
+// release builds start() returns 0 and every record call returns at once.
+public final class PerformanceMonitor {
+    // A frame this much longer than the refresh interval counts as dropping frames
+    private static final float JANK_FACTOR = 1.5f;
+    private static final float DEFAULT_REFRESH_RATE = 60f;
+
+    private static PerformanceMonitor instance;
+
+    private final boolean enabled;
+    // Reload request to rows delivered, and to dashboard delivered
+    public final LatencyHistogram feedLoad = new LatencyHistogram();
+    public final LatencyHistogram dashboardLoad = new LatencyHistogram();
+    public final LatencyHistogram bind = new LatencyHistogram();
+    // Time between consecutive frames while a tracked list is scrolling
+    public final LatencyHistogram scrollFrames = new LatencyHistogram();
+    private long droppedFrames;
+
+    private PerformanceMonitor(Context context) {
+        enabled = isDebuggable(context);
+    }
+
+    public static synchronized PerformanceMonitor getInstance(Context context) {
+        if (instance == null) {
+            instance = new PerformanceMonitor(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    static boolean isDebuggable(Context context) {
+        return (context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Timestamp to pass to recordSince(), or 0 when not recording
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public void recordSince(LatencyHistogram histogram, long startNanos) {
+        if (startNanos != 0) {
+            histogram.record(System.nanoTime() - startNanos);
+        }
+    }
+
+    public synchronized long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    public void reset() {
+        synchronized (this) {
+            droppedFrames = 0;
+        }
+        for (LatencyHistogram histogram : new LatencyHistogram[]{feedLoad, dashboardLoad, bind, scrollFrames}) {
+            histogram.reset();
+        }
+    }
+
+    // Measures frame intervals from the first frame after scrolling starts until it settles
+    public void trackScrolling(RecyclerView recyclerView) {
+        if (!enabled) {
+            return;
+        }
+        recyclerView.addOnScrollListener(new FrameTracker());
+    }
+
+    private final class FrameTracker extends RecyclerView.OnScrollListener implements Choreographer.FrameCallback {
+        private boolean tracking;
+        private long lastFrameNanos;
+        private long frameIntervalNanos;
+
+        @Override
+        public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+            if (newState != RecyclerView.SCROLL_STATE_IDLE && !tracking) {
+                Display display = recyclerView.getDisplay();
+                float refreshRate = display != null ? display.getRefreshRate() : DEFAULT_REFRESH_RATE;
+                frameIntervalNanos = (long) (1_000_000_000L / (refreshRate > 0 ? refreshRate : DEFAULT_REFRESH_RATE));
+                tracking = true;
+                lastFrameNanos = 0;
+                Choreographer.getInstance().postFrameCallback(this);
+            } else if (newState == RecyclerView.SCROLL_STATE_IDLE && tracking) {
+                tracking = false;
+                Choreographer.getInstance().removeFrameCallback(this);
+            }
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (!tracking) {
+                return;
+            }
+            if (lastFrameNanos != 0) {
+                long interval = frameTimeNanos - lastFrameNanos;
+                scrollFrames.record(interval);
+                if (interval > frameIntervalNanos * JANK_FACTOR) {
+                    synchronized (PerformanceMonitor.this) {
+                        droppedFrames += Math.round((double) interval / frameIntervalNanos) - 1;
+                    }
+                }
+            }
+            lastFrameNanos = frameTimeNanos;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+}
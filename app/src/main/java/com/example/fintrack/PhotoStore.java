@@ -0,0 +1,233 @@
+package com.example.fintrack;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Content-addressed receipt storage. Each photo is stored once under the SHA-256 of its bytes,
+// with a downsampled JPEG thumbnail next to it. Files no longer referenced by any expense are
+// reclaimed by sweep(). All methods do file IO and belong on the dispatcher's write lane.
+public final class PhotoStore {
+    private static final String TAG = "PhotoStore";
+    private static final String DIRECTORY = "receipts";
+    private static final String ORIGINAL_SUFFIX = ".img";
+    private static final String THUMBNAIL_SUFFIX = "_thumb.jpg";
+    private static final String LEGACY_PREFIX = "expense_photo_";
+    private static final int THUMBNAIL_SIZE = 512;
+    private static final int THUMBNAIL_QUALITY = 80;
+    // Files touched this recently are never swept, in case a save referencing them is in flight
+    private static final long SWEEP_GRACE_MS = 60 * 60 * 1000L;
+
+    private static PhotoStore instance;
+
+    private final Context context;
+    private final File directory;
+    private final AtomicBoolean sweepPending = new AtomicBoolean(false);
+
+    private PhotoStore(Context context) {
+        this.context = context.getApplicationContext();
+        this.directory = new File(this.context.getFilesDir(), DIRECTORY);
+    }
+
+    public static synchronized PhotoStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new PhotoStore(context);
+        }
+        return instance;
+    }
+
+    // Copies the image into the store and returns the stored file's path. Picking the same
+    // image again returns the existing file instead of writing a second copy.
+    public String store(Uri uri) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        File temp = File.createTempFile("incoming", ".tmp", directory);
+        try {
+            String hash;
+            InputStream in = context.getContentResolver().openInputStream(uri);
+            if (in == null) {
+                throw new IOException("Unable to open " + uri);
+            }
+            try {
+                hash = copyAndHash(in, temp);
+            } finally {
+                in.close();
+            }
+
+            File original = new File(directory, hash + ORIGINAL_SUFFIX);
+            if (original.exists()) {
+                // Refresh the timestamp so the sweep grace period covers the new reference
+                original.setLastModified(System.currentTimeMillis());
+            } else if (!temp.renameTo(original)) {
+                throw new IOException("Unable to store " + original);
+            }
+
+            File thumbnail = new File(directory, hash + THUMBNAIL_SUFFIX);
+            if (!thumbnail.exists()) {
+                writeThumbnail(original, thumbnail);
+            }
+            return original.getAbsolutePath();
+        } finally {
+            temp.delete();
+        }
+    }
+
+    // Thumbnail location for a stored photo, or null for legacy photos that have none.
+    // Derived from the path alone so callers on the main thread don't touch the disk.
+    public static File thumbnailFor(String photoPath) {
+        if (photoPath == null || !photoPath.endsWith(ORIGINAL_SUFFIX)) {
+            return null;
+        }
+        return new File(photoPath.substring(0, photoPath.length() - ORIGINAL_SUFFIX.length())
+                + THUMBNAIL_SUFFIX);
+    }
+
+    // Queues a sweep on the write lane unless one is already waiting
+    public void requestSweep() {
+        if (sweepPending.compareAndSet(false, true)) {
+            DatabaseDispatcher.getInstance().write("photoSweep", () -> {
+                sweepPending.set(false);
+                sweep(ExpenseDatabase.getInstance(context).expenseDao());
+            });
+        }
+    }
+
+    // Deletes stored photos, their thumbnails and legacy expense_photo_ files that no expense
+    // references. Returns the number of bytes reclaimed.
+    public long sweep(ExpenseDao expenseDao) {
+        Set<String> referenced = new HashSet<>();
+        List<String> photoPaths = expenseDao.getPhotoPaths();
+        for (String photoPath : photoPaths) {
+            referenced.add(new File(photoPath).getName());
+        }
+
+        long cutoff = System.currentTimeMillis() - SWEEP_GRACE_MS;
+        long reclaimed = 0;
+        File[] stored = directory.listFiles();
+        if (stored != null) {
+            for (File file : stored) {
+                String name = file.getName();
+                if (name.endsWith(THUMBNAIL_SUFFIX)) {
+                    name = name.substring(0, name.length() - THUMBNAIL_SUFFIX.length()) + ORIGINAL_SUFFIX;
+                    File original = new File(directory, name);
+                    // Thumbnails follow their original, and go when it's gone
+                    if (original.exists() && (referenced.contains(name) || original.lastModified() > cutoff)) {
+                        continue;
+                    }
+                } else if (referenced.contains(name) || file.lastModified() > cutoff) {
+                    continue;
+                }
+                reclaimed += delete(file);
+            }
+        }
+
+        // Photos saved before the store existed live directly in the files dir
+        File[] legacy = context.getFilesDir().listFiles(
+                (dir, name) -> name.startsWith(LEGACY_PREFIX) && !referenced.contains(name));
+        if (legacy != null) {
+            for (File file : legacy) {
+                if (file.lastModified() <= cutoff) {
+                    reclaimed += delete(file);
+                }
+            }
+        }
+
+        if (reclaimed > 0) {
+            Log.d(TAG, "Sweep reclaimed " + reclaimed / 1024 + " KB");
+        }
+        return reclaimed;
+    }
+
+    // Bytes used by stored photos, thumbnails and legacy files; walks the directory, so call
+    // off the main thread
+    public long getStorageBytes() {
+        long bytes = 0;
+        File[] stored = directory.listFiles();
+        if (stored != null) {
+            for (File file : stored) {
+                bytes += file.length();
+            }
+        }
+        File[] legacy = context.getFilesDir().listFiles((dir, name) -> name.startsWith(LEGACY_PREFIX));
+        if (legacy != null) {
+            for (File file : legacy) {
+                bytes += file.length();
+            }
+        }
+        return bytes;
+    }
+
+    private static long delete(File file) {
+        long length = file.length();
+        return file.delete() ? length : 0;
+    }
+
+    private static String copyAndHash(InputStream in, File target) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        byte[] buffer = new byte[16 * 1024];
+        try (FileOutputStream out = new FileOutputStream(target)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+            }
+        }
+
+        byte[] hash = digest.digest();
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    // Decodes at the nearest power-of-two sample size, so the full image is never in memory
+    private static void writeThumbnail(File original, File thumbnail) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(original.getPath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return;
+        }
+
+        int sampleSize = 1;
+        while (Math.max(options.outWidth, options.outHeight) / (sampleSize * 2) >= THUMBNAIL_SIZE) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        Bitmap bitmap = BitmapFactory.decodeFile(original.getPath(), options);
+        if (bitmap == null) {
+            return;
+        }
+
+        try (FileOutputStream out = new FileOutputStream(thumbnail)) {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, THUMBNAIL_QUALITY, out);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write thumbnail " + thumbnail, e);
+            thumbnail.delete();
+        } finally {
+            bitmap.recycle();
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package com.example.fintrack;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.room.RoomDatabase;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Per-DAO-method latency histograms, rows returned and calling screens. ExpenseDatabase hands
+// out DAOs wrapped by instrument() and routes Room's query callback to onQuery(), but only when
+// metrics were enabled as the database opened; otherwise callers get the plain generated DAOs
+// and pay nothing. Calls slower than SLOW_CALL_MS are kept with the EXPLAIN QUERY PLAN of
+// the statements they ran, and can be appended to a log file in the app's files directory.
+public final class QueryMetrics {
+    private static final String TAG = "QueryMetrics";
+    private static final String PREF_NAME = "FinTrackSettings";
+    private static final String KEY_ENABLED = "query_metrics_enabled";
+    private static final String KEY_LOG_TO_FILE = "query_metrics_log_to_file";
+    private static final String LOG_FILE_NAME = "query_metrics.log";
+    // Past this the log is rotated to a single .old file
+    private static final long MAX_LOG_BYTES = 1024 * 1024;
+    private static final long SLOW_CALL_MS = 50;
+    private static final int MAX_SLOW_CALLS = 50;
+    // Statements remembered per call for the query plan; @Transaction methods run several
+    private static final int MAX_STATEMENTS_PER_CALL = 8;
+    private static final String UNKNOWN_CALLER = "background";
+
+    private static QueryMetrics instance;
+    // Set once a database has been instrumented; setCaller() is a no-op until then
+    private static volatile QueryMetrics active;
+
+    // Aggregates for one DAO method
+    public static class MethodStats {
+        public final String method;
+        public final LatencyHistogram latency;
+        public long totalRows;
+        public long maxRows;
+        // Calls per caller, as named by setCaller()
+        public final Map<String, Long> callers;
+
+        MethodStats(String method) {
+            this(method, new LatencyHistogram(), new HashMap<>());
+        }
+
+        private MethodStats(String method, LatencyHistogram latency, Map<String, Long> callers) {
+            this.method = method;
+            this.latency = latency;
+            this.callers = callers;
+        }
+
+        MethodStats copy() {
+            MethodStats copy = new MethodStats(method, latency.copy(), new HashMap<>(callers));
+            copy.totalRows = totalRows;
+            copy.maxRows = maxRows;
+            return copy;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            long calls = latency.getCount();
+            return method + ": " + latency + " rows(avg/max)=" + (calls > 0 ? totalRows / calls : 0) + "/" + maxRows
+                    + " callers=" + callers;
+        }
+    }
+
+    public static class SlowCall {
+        public final long timeMillis;
+        public final String method;
+        public final String caller;
+        public final long durationNanos;
+        public final int rows;
+        // Each statement the call ran, followed by its plan
+        public final List<String> plans;
+
+        SlowCall(long timeMillis, String method, String caller, long durationNanos, int rows, List<String> plans) {
+            this.timeMillis = timeMillis;
+            this.method = method;
+            this.caller = caller;
+            this.durationNanos = durationNanos;
+            this.rows = rows;
+            this.plans = plans;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder()
+                    .append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US).format(new Date(timeMillis)))
+                    .append(" slow ").append(method)
+                    .append(" from ").append(caller)
+                    .append(": ").append(LatencyHistogram.formatMillis(durationNanos))
+                    .append(", ").append(rows).append(" rows");
+            for (String plan : plans) {
+                builder.append("\n  ").append(plan.replace("\n", "\n  "));
+            }
+            return builder.toString();
+        }
+    }
+
+    // State of the DAO call running on a thread
+    private static final class CallTrace {
+        String caller = UNKNOWN_CALLER;
+        int depth;
+        boolean explaining;
+        final List<String> statements = new ArrayList<>();
+        final List<Object[]> statementArgs = new ArrayList<>();
+    }
+
+    private final SharedPreferences preferences;
+    private final File logFile;
+    private volatile boolean enabled;
+    private volatile boolean logToFile;
+    private final Map<String, MethodStats> stats = new HashMap<>();
+    private final ArrayDeque<SlowCall> slowCalls = new ArrayDeque<>();
+    private final ThreadLocal<CallTrace> traces = ThreadLocal.withInitial(CallTrace::new);
+    // Created on first use; file appends stay off the database threads
+    private ExecutorService logExecutor;
+
+    private QueryMetrics(Context context) {
+        preferences = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        logFile = new File(context.getFilesDir(), LOG_FILE_NAME);
+        // On by default in debuggable builds only
+        enabled = preferences.getBoolean(KEY_ENABLED, PerformanceMonitor.isDebuggable(context));
+        logToFile = preferences.getBoolean(KEY_LOG_TO_FILE, false);
+    }
+
+    public static synchronized QueryMetrics getInstance(Context context) {
+        if (instance == null) {
+            instance = new QueryMetrics(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Whether the open database is being measured, which can differ from isEnabled() until
+    // the next launch
+    public boolean isActive() {
+        return active == this;
+    }
+
+    // DAOs are wrapped when the database opens, so this takes effect on the next launch
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        preferences.edit().putBoolean(KEY_ENABLED, enabled).apply();
+    }
+
+    public boolean isLoggingToFile() {
+        return logToFile;
+    }
+
+    public void setLogToFile(boolean logToFile) {
+        this.logToFile = logToFile;
+        preferences.edit().putBoolean(KEY_LOG_TO_FILE, logToFile).apply();
+    }
+
+    public File getLogFile() {
+        return logFile;
+    }
+
+    // Names the screen or task behind the DAO calls that follow on this thread. Set by
+    // DatabaseDispatcher around each task; returns the previous caller for restoring.
+    static String setCaller(String caller) {
+        QueryMetrics metrics = active;
+        if (metrics == null) {
+            return null;
+        }
+        CallTrace trace = metrics.traces.get();
+        String previous = trace.caller;
+        trace.caller = caller != null ? caller : UNKNOWN_CALLER;
+        return previous;
+    }
+
+    // Returns a DAO that times every method of the given one
+    @SuppressWarnings("unchecked")
+    <T> T instrument(Class<T> daoClass, T dao, RoomDatabase database) {
+        active = this;
+        String prefix = daoClass.getSimpleName() + ".";
+        return (T) Proxy.newProxyInstance(daoClass.getClassLoader(), new Class<?>[]{daoClass},
+                (proxy, method, args) -> {
+                    if (method.getDeclaringClass() == Object.class) {
+                        return method.invoke(dao, args);
+                    }
+                    return invoke(prefix + method.getName(), dao, method, args, database);
+                });
+    }
+
+    private Object invoke(String name, Object dao, Method method, Object[] args, RoomDatabase database)
+            throws Throwable {
+        CallTrace trace = traces.get();
+        // Nested calls, from a @Transaction or default method, count towards the outer one
+        if (trace.depth++ == 0) {
+            trace.statements.clear();
+            trace.statementArgs.clear();
+        }
+        long startedAt = SystemClock.elapsedRealtimeNanos();
+        Object result;
+        try {
+            result = method.invoke(dao, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        } finally {
+            trace.depth--;
+        }
+        if (trace.depth == 0) {
+            record(trace, name, SystemClock.elapsedRealtimeNanos() - startedAt, rowCount(result), database);
+        }
+        return result;
+    }
+
+    // Room's query callback, run synchronously on the querying thread before the statement.
+    // Only statements issued inside an instrumented DAO call are kept.
+    void onQuery(@NonNull String sql, @NonNull List<?> bindArgs) {
+        CallTrace trace = traces.get();
+        if (trace.depth == 0 || trace.explaining || trace.statements.size() >= MAX_STATEMENTS_PER_CALL) {
+            return;
+        }
+        String keyword = sql.trim().toUpperCase(Locale.US);
+        if (keyword.startsWith("SELECT") || keyword.startsWith("WITH") || keyword.startsWith("INSERT")
+                || keyword.startsWith("UPDATE") || keyword.startsWith("DELETE")) {
+            trace.statements.add(sql);
+            trace.statementArgs.add(bindArgs.toArray());
+        }
+    }
+
+    private void record(CallTrace trace, String name, long nanos, int rows, RoomDatabase database) {
+        synchronized (stats) {
+            MethodStats methodStats = stats.get(name);
+            if (methodStats == null) {
+                methodStats = new MethodStats(name);
+                stats.put(name, methodStats);
+            }
+            methodStats.latency.record(nanos);
+            methodStats.totalRows += rows;
+            methodStats.maxRows = Math.max(methodStats.maxRows, rows);
+            Long calls = methodStats.callers.get(trace.caller);
+            methodStats.callers.put(trace.caller, calls != null ? calls + 1 : 1);
+        }
+        if (nanos < SLOW_CALL_MS * 1_000_000) {
+            return;
+        }
+
+        SlowCall slowCall = new SlowCall(System.currentTimeMillis(), name, trace.caller, nanos, rows,
+                explain(trace, database));
+        Log.w(TAG, slowCall.toString());
+        synchronized (slowCalls) {
+            slowCalls.addLast(slowCall);
+            if (slowCalls.size() > MAX_SLOW_CALLS) {
+                slowCalls.removeFirst();
+            }
+        }
+        if (logToFile) {
+            appendToLog(slowCall.toString());
+        }
+    }
+
+    // Runs on the thread that made the slow call, after it has finished
+    private List<String> explain(CallTrace trace, RoomDatabase database) {
+        List<String> plans = new ArrayList<>(trace.statements.size());
+        trace.explaining = true;
+        try {
+            for (int i = 0; i < trace.statements.size(); i++) {
+                String sql = trace.statements.get(i);
+                StringBuilder plan = new StringBuilder(sql.trim());
+                Cursor cursor = database.query("EXPLAIN QUERY PLAN " + sql, trace.statementArgs.get(i));
+                try {
+                    int detail = cursor.getColumnIndex("detail");
+                    while (cursor.moveToNext()) {
+                        plan.append("\n  ").append(cursor.getString(detail));
+                    }
+                } finally {
+                    cursor.close();
+                }
+                plans.add(plan.toString());
+            }
+        } catch (RuntimeException e) {
+            plans.add("EXPLAIN QUERY PLAN failed: " + e);
+        } finally {
+            trace.explaining = false;
+        }
+        return plans;
+    }
+
+    private static int rowCount(Object result) {
+        if (result == null) {
+            return 0;
+        }
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Cursor) {
+            // Fills the first window early; the caller was about to read it anyway
+            return ((Cursor) result).getCount();
+        }
+        if (result instanceof long[]) {
+            return ((long[]) result).length;
+        }
+        return 1;
+    }
+
+    // Sorted by total time spent, slowest first
+    public List<MethodStats> getStatsSnapshot() {
+        List<MethodStats> snapshot;
+        synchronized (stats) {
+            snapshot = new ArrayList<>(stats.size());
+            for (MethodStats methodStats : stats.values()) {
+                snapshot.add(methodStats.copy());
+            }
+        }
+        snapshot.sort((a, b) -> Long.compare(
+                b.latency.getMeanNanos() * b.latency.getCount(), a.latency.getMeanNanos() * a.latency.getCount()));
+        return snapshot;
+    }
+
+    // Oldest first
+    public List<SlowCall> getSlowCalls() {
+        synchronized (slowCalls) {
+            return new ArrayList<>(slowCalls);
+        }
+    }
+
+    public void reset() {
+        synchronized (stats) {
+            stats.clear();
+        }
+        synchronized (slowCalls) {
+            slowCalls.clear();
+        }
+    }
+
+    // Appends the current aggregates to the log file
+    public void writeSnapshotToLog() {
+        StringBuilder report = new StringBuilder(
+                new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US).format(new Date()))
+                .append(" snapshot");
+        for (MethodStats methodStats : getStatsSnapshot()) {
+            report.append("\n  ").append(methodStats);
+        }
+        appendToLog(report.toString());
+    }
+
+    private void appendToLog(String entry) {
+        ExecutorService executor;
+        synchronized (this) {
+            if (logExecutor == null) {
+                logExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "query-metrics-log"));
+            }
+            executor = logExecutor;
+        }
+        executor.execute(() -> {
+            if (logFile.length() > MAX_LOG_BYTES) {
+                File old = new File(logFile.getPath() + ".old");
+                old.delete();
+                logFile.renameTo(old);
+            }
+            try (Writer writer = new FileWriter(logFile, true)) {
+                writer.write(entry);
+                writer.write('\n');
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to write " + logFile, e);
+            }
+        });
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.fintrack;
+
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.widget.ImageView;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.resource.bitmap.DownsampleStrategy;
+
+import java.io.File;
+
+// Single entry point for showing receipt photos. Decoding happens off the main thread at the
+// size of the target view, results go through the bounded caches in FinTrackGlideModule, and
+// requests started through a view are cancelled when its activity is destroyed.
+public final class ReceiptImageLoader {
+    private ReceiptImageLoader() {
+    }
+
+    public static void load(ImageView target, String photoPath) {
+        if (photoPath == null || photoPath.isEmpty()) {
+            clear(target);
+            return;
+        }
+        // The precomputed thumbnail shows first while the full photo decodes
+        File thumbnail = PhotoStore.thumbnailFor(photoPath);
+        RequestBuilder<Drawable> request = request(target, new File(photoPath));
+        if (thumbnail != null) {
+            request = request.thumbnail(request(target, thumbnail));
+        }
+        request.into(target);
+    }
+
+    public static void load(ImageView target, Uri uri) {
+        request(target, uri).into(target);
+    }
+
+    private static RequestBuilder<Drawable> request(ImageView target, Object model) {
+        return Glide.with(target)
+                .load(model)
+                .downsample(DownsampleStrategy.CENTER_INSIDE)
+                .diskCacheStrategy(DiskCacheStrategy.RESOURCE)
+                .centerCrop();
+    }
+
+    public static void clear(ImageView target) {
+        Glide.with(target).clear(target);
+        target.setImageDrawable(null);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.fintrack;
+
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+// A template that RecurringScheduler turns into expenses: every repeatEvery days, weeks or
+// months from anchorDay. nextIndex and nextDueDay mark the first occurrence not yet generated
+// and move forward in the same transaction as the inserts, so a catch-up never runs twice.
+@Entity(tableName = "recurring_expenses",
+        foreignKeys = {
+                @ForeignKey(entity = Category.class, parentColumns = "id", childColumns = "categoryId",
+                        onDelete = ForeignKey.CASCADE)
+        },
+        indices = {
+                @Index("nextDueDay"),
+                @Index("categoryId")
+        })
+public class RecurringExpense {
+    public static final int DAILY = 0;
+    public static final int WEEKLY = 1;
+    public static final int MONTHLY = 2;
+
+    @PrimaryKey(autoGenerate = true)
+    public int id;
+    public String title;
+    // Minor units, like Expense
+    public long amountMinor;
+    public int categoryId;
+    public String notes;
+    // "HH:mm" given to every generated expense
+    public String time;
+    // DAILY, WEEKLY or MONTHLY
+    public int frequency;
+    // At least 1; 2 with WEEKLY means fortnightly
+    public int repeatEvery;
+    // Epoch day of occurrence 0
+    public long anchorDay;
+    public int nextIndex;
+    // occurrenceDay(nextIndex), stored so due templates can be found through an index
+    public long nextDueDay;
+
+    // Computed from the anchor rather than the previous occurrence, so a monthly series on the
+    // 31st comes back to the 31st after a shorter month
+    public long occurrenceDay(int index) {
+        long steps = (long) index * repeatEvery;
+        switch (frequency) {
+            case DAILY:
+                return anchorDay + steps;
+            case WEEKLY:
+                return anchorDay + 7 * steps;
+            default:
+                return ExpenseDates.plusMonths(anchorDay, (int) steps);
+        }
+    }
+
+    public Expense toExpense(long epochDay) {
+        return new Expense(title, amountMinor, ExpenseDates.formatEpochDay(epochDay), time, categoryId, notes, "");
+    }
+
+    // "Monthly", "Every 2 weeks"
+    public String describe() {
+        String[] units = {"day", "week", "month"};
+        String[] single = {"Daily", "Weekly", "Monthly"};
+        if (repeatEvery == 1) {
+            return single[frequency];
+        }
+        return "Every " + repeatEvery + " " + units[frequency] + "s";
+    }
+
+    // Same schema Room generates for RecurringExpense
+    static void createTable(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS `recurring_expenses` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                + "`title` TEXT, `amountMinor` INTEGER NOT NULL, `categoryId` INTEGER NOT NULL, `notes` TEXT, "
+                + "`time` TEXT, `frequency` INTEGER NOT NULL, `repeatEvery` INTEGER NOT NULL, "
+                + "`anchorDay` INTEGER NOT NULL, `nextIndex` INTEGER NOT NULL, `nextDueDay` INTEGER NOT NULL, "
+                + "FOREIGN KEY(`categoryId`) REFERENCES `categories`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+        db.execSQL("CREATE INDEX IF NOT EXISTS `index_recurring_expenses_nextDueDay` "
+                + "ON `recurring_expenses` (`nextDueDay`)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS `index_recurring_expenses_categoryId` "
+                + "ON `recurring_expenses` (`categoryId`)");
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.fintrack;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface RecurringExpenseDao {
+    @Insert
+    long insert(RecurringExpense recurringExpense);
+
+    @Query("SELECT * FROM recurring_expenses ORDER BY nextDueDay, id")
+    List<RecurringExpense> getAll();
+
+    // A range scan on index_recurring_expenses_nextDueDay, so templates with nothing due
+    // aren't read at all
+    @Query("SELECT * FROM recurring_expenses WHERE nextDueDay <= :today ORDER BY nextDueDay")
+    List<RecurringExpense> getDue(long today);
+
+    @Query("UPDATE recurring_expenses SET nextIndex = :nextIndex, nextDueDay = :nextDueDay WHERE id = :id")
+    void advance(int id, int nextIndex, long nextDueDay);
+
+    // Expenses already generated are kept
+    @Query("DELETE FROM recurring_expenses WHERE id = :id")
+    void delete(int id);
+}
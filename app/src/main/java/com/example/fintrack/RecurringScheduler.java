@@ -0,0 +1,66 @@
+package com.example.fintrack;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Generates the expenses recurring templates owe up to today. Only templates with something
+// due are read, and each yields exactly its missed occurrences, so after months away the cost
+// is proportional to what gets inserted. Everything lands in one transaction together with the
+// templates' new positions: observers see one change, and an interrupted run leaves nothing
+// half done to repeat.
+public final class RecurringScheduler {
+    private static RecurringScheduler instance;
+
+    private final ExpenseDatabase database;
+    private final AtomicBoolean catchUpPending = new AtomicBoolean(false);
+
+    private RecurringScheduler(Context context) {
+        database = ExpenseDatabase.getInstance(context.getApplicationContext());
+    }
+
+    public static synchronized RecurringScheduler getInstance(Context context) {
+        if (instance == null) {
+            instance = new RecurringScheduler(context);
+        }
+        return instance;
+    }
+
+    // Queues a catch-up on the write lane unless one is already waiting. Cheap when nothing
+    // is due: one index probe.
+    public void requestCatchUp() {
+        if (catchUpPending.compareAndSet(false, true)) {
+            DatabaseDispatcher.getInstance().write("recurringCatchUp", () -> {
+                catchUpPending.set(false);
+                catchUp(ExpenseDates.toEpochDay(Calendar.getInstance()));
+            });
+        }
+    }
+
+    // Inserts every occurrence on or before today and returns how many. Call on the write lane.
+    int catchUp(long today) {
+        RecurringExpenseDao recurringDao = database.recurringExpenseDao();
+        return database.runInTransaction(() -> {
+            List<RecurringExpense> due = recurringDao.getDue(today);
+            if (due.isEmpty()) {
+                return 0;
+            }
+            List<Expense> expenses = new ArrayList<>();
+            for (RecurringExpense template : due) {
+                int index = template.nextIndex;
+                long day = template.nextDueDay;
+                while (day <= today) {
+                    expenses.add(template.toExpense(day));
+                    index++;
+                    day = template.occurrenceDay(index);
+                }
+                recurringDao.advance(template.id, index, day);
+            }
+            database.expenseDao().insertExpenses(expenses);
+            return expenses.size();
+        });
+    }
+}
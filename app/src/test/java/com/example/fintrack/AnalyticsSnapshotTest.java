@@ -0,0 +1,120 @@
+package com.example.fintrack;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class AnalyticsSnapshotTest {
+    private static final int BASE_DAY = 19_500;
+
+    // Ids 1..rows, amount 100 * id, category id % 3 + 1, one row a day
+    private static AnalyticsSnapshot build(int rows) {
+        AnalyticsSnapshot.Builder builder = new AnalyticsSnapshot.Builder(rows);
+        for (int id = 1; id <= rows; id++) {
+            builder.put(id, BASE_DAY + id, 100L * id, id % 3 + 1);
+        }
+        return builder.build();
+    }
+
+    private static void assertOriginal(AnalyticsSnapshot snapshot, int rows) {
+        assertEquals(rows, snapshot.getRowCount());
+        assertEquals(100L * rows * (rows + 1) / 2, snapshot.getTotal());
+        assertEquals(-1, snapshot.indexOf(rows + 1));
+        for (int id = 1; id <= rows; id++) {
+            int slot = snapshot.indexOf(id);
+            assertEquals(100L * id, snapshot.getAmountAt(slot));
+            assertEquals(id % 3 + 1, snapshot.getCategoryIdAt(slot));
+        }
+    }
+
+    @Test
+    public void appendsLeaveSourceUnchanged() {
+        AnalyticsSnapshot original = build(20);
+        AnalyticsSnapshot.Builder builder = original.toBuilder();
+        builder.put(21, BASE_DAY, 5, 7);
+        builder.put(22, BASE_DAY, 6, 1);
+        AnalyticsSnapshot next = builder.build();
+
+        assertOriginal(original, 20);
+        assertEquals(4, original.getCategoryTotals().length);
+        assertEquals(22, next.getRowCount());
+        assertEquals(100L * 20 * 21 / 2 + 11, next.getTotal());
+        assertEquals(5, next.getCategoryTotals()[7]);
+    }
+
+    // The spare slots go to the first builder only; a second one from the same snapshot copies
+    @Test
+    public void secondBuilderDoesNotOverwriteFirst() {
+        AnalyticsSnapshot original = build(20);
+        AnalyticsSnapshot.Builder first = original.toBuilder();
+        first.put(21, BASE_DAY, 5, 1);
+        AnalyticsSnapshot firstBuilt = first.build();
+        AnalyticsSnapshot.Builder second = original.toBuilder();
+        second.put(21, BASE_DAY, 9, 2);
+        AnalyticsSnapshot secondBuilt = second.build();
+
+        assertEquals(5, firstBuilt.getAmountAt(firstBuilt.indexOf(21)));
+        assertEquals(9, secondBuilt.getAmountAt(secondBuilt.indexOf(21)));
+        assertOriginal(original, 20);
+    }
+
+    @Test
+    public void editsAndDeletesLeaveSourceUnchanged() {
+        AnalyticsSnapshot original = build(40);
+        AnalyticsSnapshot.Builder builder = original.toBuilder();
+        builder.put(41, BASE_DAY, 1, 1);
+        builder.put(5, BASE_DAY, 1, 1);
+        builder.remove(6);
+        AnalyticsSnapshot next = builder.build();
+
+        assertOriginal(original, 40);
+        assertEquals(40, next.getRowCount());
+        assertEquals(-1, next.getCategoryIdAt(next.indexOf(6)));
+        assertEquals(100L * 40 * 41 / 2 - 500 - 600 + 2, next.getTotal());
+    }
+
+    // Enough deletes to compact, and an id below the largest, inserted mid-table
+    @Test
+    public void compactionAndMiddleInsertLeaveSourceUnchanged() {
+        AnalyticsSnapshot original = build(12);
+        AnalyticsSnapshot.Builder builder = original.toBuilder();
+        for (int id = 1; id <= 6; id++) {
+            builder.remove(id);
+        }
+        AnalyticsSnapshot compacted = builder.build();
+        assertOriginal(original, 12);
+        assertEquals(6, compacted.getSlotCount());
+        assertEquals(-1, compacted.indexOf(3));
+
+        builder = compacted.toBuilder();
+        builder.put(3, BASE_DAY, 1, 2);
+        AnalyticsSnapshot inserted = builder.build();
+        assertEquals(6, compacted.getRowCount());
+        assertEquals(-1, compacted.indexOf(3));
+        assertEquals(0, inserted.indexOf(3));
+        assertEquals(7, inserted.getRowCount());
+    }
+
+    // Many refreshes in a row, each appending a few rows, grow past the first capacity
+    @Test
+    public void chainedAppends() {
+        AnalyticsSnapshot snapshot = build(1);
+        AnalyticsSnapshot[] history = new AnalyticsSnapshot[50];
+        int id = 1;
+        for (int step = 0; step < history.length; step++) {
+            history[step] = snapshot;
+            AnalyticsSnapshot.Builder builder = snapshot.toBuilder();
+            for (int i = 0; i < 3; i++) {
+                id++;
+                builder.put(id, BASE_DAY + id, 100L * id, id % 3 + 1);
+            }
+            snapshot = builder.build();
+        }
+        assertOriginal(snapshot, id);
+        for (int step = 0; step < history.length; step++) {
+            assertOriginal(history[step], 1 + 3 * step);
+        }
+        assertArrayEquals(build(id).getCategoryTotals(), snapshot.getCategoryTotals());
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.fintrack;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class DayTotalsIndexTest {
+    private static final int CATEGORIES = 20;
+    // Around 2023-2024 in epoch days
+    private static final int BASE_DAY = 19_500;
+
+    // The same data as the index, summed by brute force
+    private static final class Entry {
+        final int day;
+        final int categoryId;
+        final long amount;
+
+        Entry(int day, int categoryId, long amount) {
+            this.day = day;
+            this.categoryId = categoryId;
+            this.amount = amount;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    private long expectedTotal(int fromDay, int toDay) {
+        long sum = 0;
+        for (Entry entry : entries) {
+            if (entry.day >= fromDay && entry.day < toDay) {
+                sum += entry.amount;
+            }
+        }
+        return sum;
+    }
+
+    private long expectedCategoryTotal(int categoryId, int fromDay, int toDay) {
+        long sum = 0;
+        for (Entry entry : entries) {
+            if (entry.categoryId == categoryId && entry.day >= fromDay && entry.day < toDay) {
+                sum += entry.amount;
+            }
+        }
+        return sum;
+    }
+
+    private void assertMatches(DayTotalsIndex index, Random random, int minDay, int maxDay) {
+        for (int i = 0; i < 200; i++) {
+            int from = minDay + random.nextInt(maxDay - minDay + 1);
+            int to = minDay + random.nextInt(maxDay - minDay + 1);
+            assertEquals(expectedTotal(from, to), index.getTotalBetween(from, to));
+            int categoryId = random.nextInt(CATEGORIES + 2);
+            assertEquals(expectedCategoryTotal(categoryId, from, to),
+                    index.getCategoryTotalBetween(categoryId, from, to));
+        }
+        assertEquals(expectedTotal(Integer.MIN_VALUE, Integer.MAX_VALUE),
+                index.getTotalBetween(Integer.MIN_VALUE, Integer.MAX_VALUE));
+    }
+
+    private DayTotalsIndex buildRandom(Random random, int rows, int days) {
+        AnalyticsSnapshot.Builder builder = new AnalyticsSnapshot.Builder(rows);
+        for (int id = 1; id <= rows; id++) {
+            int day = BASE_DAY + random.nextInt(days);
+            int categoryId = 1 + random.nextInt(CATEGORIES);
+            long amount = random.nextInt(100_000) - 10_000;
+            builder.put(id, day, amount, categoryId);
+            entries.add(new Entry(day, categoryId, amount));
+        }
+        return DayTotalsIndex.build(builder.build());
+    }
+
+    @Test
+    public void rangeSumsMatchBruteForce() {
+        Random random = new Random(1);
+        DayTotalsIndex index = buildRandom(random, 2_000, 400);
+        assertMatches(index, random, BASE_DAY - 50, BASE_DAY + 450);
+    }
+
+    @Test
+    public void updatesMatchBruteForce() {
+        Random random = new Random(2);
+        DayTotalsIndex index = buildRandom(random, 500, 200);
+        for (int i = 0; i < 1_000; i++) {
+            int day = BASE_DAY + random.nextInt(200);
+            int categoryId = 1 + random.nextInt(CATEGORIES);
+            long amount = random.nextInt(20_000) - 10_000;
+            index.add(day, categoryId, amount);
+            entries.add(new Entry(day, categoryId, amount));
+        }
+        assertMatches(index, random, BASE_DAY - 10, BASE_DAY + 210);
+    }
+
+    @Test
+    public void deletedAndUndatedRowsLeftOut() {
+        AnalyticsSnapshot.Builder builder = new AnalyticsSnapshot.Builder(4);
+        builder.put(1, BASE_DAY, 100, 1);
+        builder.put(2, BASE_DAY + 1, 200, 2);
+        builder.put(3, AnalyticsSnapshot.NO_DAY, 400, 1);
+        builder.remove(2);
+        DayTotalsIndex index = DayTotalsIndex.build(builder.build());
+
+        assertEquals(100, index.getTotalBetween(BASE_DAY - 1000, BASE_DAY + 1000));
+        assertEquals(0, index.getCategoryTotalBetween(2, BASE_DAY - 1000, BASE_DAY + 1000));
+        index.add(AnalyticsSnapshot.NO_DAY, 1, 50);
+        assertEquals(100, index.getTotalBetween(BASE_DAY - 1000, BASE_DAY + 1000));
+    }
+
+    @Test
+    public void emptyRanges() {
+        Random random = new Random(3);
+        DayTotalsIndex index = buildRandom(random, 100, 30);
+        assertEquals(0, index.getTotalBetween(BASE_DAY + 5, BASE_DAY + 5));
+        assertEquals(0, index.getTotalBetween(BASE_DAY + 20, BASE_DAY + 5));
+        assertEquals(0, index.getTotalBetween(BASE_DAY - 5000, BASE_DAY - 4000));
+        assertEquals(0, index.getTotalBetween(BASE_DAY + 4000, BASE_DAY + 5000));
+        assertEquals(0, index.getCategoryTotalBetween(-1, BASE_DAY, BASE_DAY + 30));
+        assertEquals(0, index.getCategoryTotalBetween(CATEGORIES + 100, BASE_DAY, BASE_DAY + 30));
+    }
+
+    @Test
+    public void emptyIndex() {
+        DayTotalsIndex index = DayTotalsIndex.build(AnalyticsSnapshot.EMPTY);
+        assertEquals(0, index.getTotalBetween(Integer.MIN_VALUE, Integer.MAX_VALUE));
+        assertEquals(0, index.getRollingTotal(BASE_DAY, 30));
+
+        index.add(BASE_DAY, 3, 700);
+        index.add(BASE_DAY + 2, 3, 300);
+        assertEquals(1000, index.getTotalBetween(BASE_DAY, BASE_DAY + 3));
+        assertEquals(700, index.getCategoryTotalBetween(3, BASE_DAY, BASE_DAY + 1));
+        assertEquals(1000, index.getRollingTotal(BASE_DAY + 2, 3));
+        assertEquals(300, index.getRollingTotal(BASE_DAY + 2, 2));
+    }
+
+    // Days far before and after the allocated range re-base the trees without losing totals
+    @Test
+    public void daysBeyondInitialCapacity() {
+        Random random = new Random(4);
+        DayTotalsIndex index = buildRandom(random, 300, 60);
+        int[] days = {BASE_DAY + 5_000, BASE_DAY - 3_000, BASE_DAY + 20_000, BASE_DAY - 10_000, BASE_DAY + 61};
+        for (int day : days) {
+            int categoryId = 1 + random.nextInt(CATEGORIES);
+            index.add(day, categoryId, 1234);
+            entries.add(new Entry(day, categoryId, 1234));
+            assertMatches(index, random, BASE_DAY - 11_000, BASE_DAY + 21_000);
+        }
+        for (int i = 0; i < 500; i++) {
+            int day = BASE_DAY - 10_000 + random.nextInt(30_001);
+            int categoryId = 1 + random.nextInt(CATEGORIES);
+            long amount = random.nextInt(5_000) - 2_500;
+            index.add(day, categoryId, amount);
+            entries.add(new Entry(day, categoryId, amount));
+        }
+        assertMatches(index, random, BASE_DAY - 11_000, BASE_DAY + 21_000);
+    }
+
+    // Moving a copy, including past its range and into new categories, leaves the original
+    // answering as before
+    @Test
+    public void copyLeavesOriginalUnchanged() {
+        Random random = new Random(6);
+        DayTotalsIndex original = buildRandom(random, 300, 90);
+        List<Entry> before = new ArrayList<>(entries);
+        DayTotalsIndex copy = original.copy();
+        int[] days = {BASE_DAY + 10, BASE_DAY + 40, BASE_DAY - 2_000, BASE_DAY + 5_000};
+        for (int day : days) {
+            int categoryId = 1 + random.nextInt(CATEGORIES + 30);
+            copy.add(day, categoryId, 777);
+            entries.add(new Entry(day, categoryId, 777));
+        }
+        assertMatches(copy, random, BASE_DAY - 2_100, BASE_DAY + 5_100);
+
+        entries.clear();
+        entries.addAll(before);
+        assertMatches(original, random, BASE_DAY - 2_100, BASE_DAY + 5_100);
+    }
+
+    // A category first seen after the build, past the initial category slots
+    @Test
+    public void newCategoryAfterBuild() {
+        Random random = new Random(5);
+        DayTotalsIndex index = buildRandom(random, 50, 10);
+        index.add(BASE_DAY + 3, 40, 900);
+        entries.add(new Entry(BASE_DAY + 3, 40, 900));
+        assertEquals(900, index.getCategoryTotalBetween(40, BASE_DAY, BASE_DAY + 10));
+        assertEquals(expectedTotal(BASE_DAY, BASE_DAY + 10), index.getTotalBetween(BASE_DAY, BASE_DAY + 10));
+    }
+}
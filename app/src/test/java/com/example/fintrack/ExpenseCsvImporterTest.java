@@ -0,0 +1,112 @@
+package com.example.fintrack;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ExpenseCsvImporterTest {
+    private static final long INVALID = ExpenseCsvImporter.ColumnMapping.INVALID_AMOUNT;
+
+    private static long parse(String amount) {
+        return new ExpenseCsvImporter.ColumnMapping().parseAmount(amount);
+    }
+
+    @Test
+    public void commaDecimal() {
+        assertEquals(1250, parse("12,50"));
+        assertEquals(1250, parse("\u20AC 12,5"));
+    }
+
+    @Test
+    public void pointGroupingWithCommaDecimal() {
+        assertEquals(123456, parse("1.234,56"));
+        assertEquals(123456700, parse("1.234.567"));
+    }
+
+    @Test
+    public void commaGroupingWithPointDecimal() {
+        assertEquals(123456, parse("1,234.56"));
+        assertEquals(123456700, parse("$1,234,567"));
+    }
+
+    // Credits and refunds stay negative rather than importing as spending
+    @Test
+    public void signKept() {
+        assertEquals(-1250, parse("(12.50)"));
+        assertEquals(-1250, parse("-12.50"));
+        assertEquals(-1250, parse("-$12.50"));
+        assertEquals(-1250, parse("$ -12,50"));
+        assertEquals(-1250, parse("12.50-"));
+        assertEquals(-123456, parse("(1,234.56)"));
+        assertEquals(1250, parse("+12.50"));
+    }
+
+    @Test
+    public void misplacedSignRejected() {
+        assertEquals(INVALID, parse("--12.50"));
+        assertEquals(INVALID, parse("(-12.50)"));
+        assertEquals(INVALID, parse("12-50"));
+        assertEquals(INVALID, parse("1,2-34.56"));
+        assertEquals(INVALID, parse("-"));
+    }
+
+    @Test
+    public void ambiguousSeparatorRejected() {
+        assertEquals(INVALID, parse("1,234"));
+        assertEquals(INVALID, parse("1.234"));
+    }
+
+    @Test
+    public void fileStyleSettlesAmbiguousSeparator() {
+        ExpenseCsvImporter.ColumnMapping mapping = new ExpenseCsvImporter.ColumnMapping();
+        assertEquals(1250, mapping.parseAmount("12,50"));
+        assertEquals(123400, mapping.parseAmount("1.234"));
+        assertEquals(INVALID, mapping.parseAmount("1,234"));
+
+        mapping = new ExpenseCsvImporter.ColumnMapping();
+        assertEquals(123456, mapping.parseAmount("1,234.56"));
+        assertEquals(123400, mapping.parseAmount("1,234"));
+    }
+
+    @Test
+    public void conflictingStyleRejected() {
+        ExpenseCsvImporter.ColumnMapping mapping = new ExpenseCsvImporter.ColumnMapping();
+        assertEquals(1250, mapping.parseAmount("12,50"));
+        assertEquals(INVALID, mapping.parseAmount("12.50"));
+        assertEquals(INVALID, mapping.parseAmount("1,234.56"));
+        assertEquals(123456, mapping.parseAmount("1.234,56"));
+    }
+
+    @Test
+    public void malformedAmountsRejected() {
+        assertEquals(INVALID, parse(""));
+        assertEquals(INVALID, parse("n/a"));
+        assertEquals(INVALID, parse("12.345"));
+        assertEquals(INVALID, parse("12,34,56"));
+        assertEquals(INVALID, parse("1.2.3,45"));
+        assertEquals(INVALID, parse("1,23.45,6"));
+    }
+
+    @Test
+    public void plainAmounts() {
+        assertEquals(1200, parse("12"));
+        assertEquals(5, parse("0.05"));
+        assertEquals(50, parse(".50"));
+    }
+
+    @Test
+    public void datesNormalised() {
+        assertEquals("2024-02-29", ExpenseCsvImporter.ColumnMapping.parseDate("2024/02/29"));
+        assertEquals("2024-03-01", ExpenseCsvImporter.ColumnMapping.parseDate("2024-03-01 12:30"));
+    }
+
+    @Test
+    public void impossibleDatesRejected() {
+        assertNull(ExpenseCsvImporter.ColumnMapping.parseDate("2024-02-31"));
+        assertNull(ExpenseCsvImporter.ColumnMapping.parseDate("2023-02-29"));
+        assertNull(ExpenseCsvImporter.ColumnMapping.parseDate("2024-04-31"));
+        assertNull(ExpenseCsvImporter.ColumnMapping.parseDate("2024-13-01"));
+        assertNull(ExpenseCsvImporter.ColumnMapping.parseDate("15/01/2024"));
+    }
+}
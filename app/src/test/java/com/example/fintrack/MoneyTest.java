@@ -0,0 +1,118 @@
+package com.example.fintrack;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class MoneyTest {
+
+    private static String format(long minor, int decimals) {
+        StringBuilder text = new StringBuilder();
+        Money.append(text, minor, decimals);
+        return text.toString();
+    }
+
+    private static void assertUnparseable(String text) {
+        try {
+            Money.parse(text);
+            fail("Parsed " + text);
+        } catch (NumberFormatException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void parse() {
+        assertEquals(1250, Money.parse("12.5"));
+        assertEquals(1250, Money.parse(" 12.50 "));
+        assertEquals(1200, Money.parse("12"));
+        assertEquals(5, Money.parse("0.05"));
+        assertEquals(0, Money.parse("0"));
+    }
+
+    @Test
+    public void parseNegative() {
+        assertEquals(-1250, Money.parse("-12.5"));
+        assertEquals(-5, Money.parse("-0.05"));
+    }
+
+    @Test
+    public void parseRoundsHalfUp() {
+        assertEquals(1235, Money.parse("12.345"));
+        assertEquals(1234, Money.parse("12.3449"));
+        assertEquals(-1235, Money.parse("-12.345"));
+        assertEquals(1, Money.parse("0.005"));
+        assertEquals(0, Money.parse("0.004"));
+    }
+
+    @Test
+    public void parseRejectsNonNumbers() {
+        assertUnparseable("");
+        assertUnparseable("12,50");
+        assertUnparseable("$12");
+        assertUnparseable("twelve");
+    }
+
+    @Test
+    public void parseOverflow() {
+        assertEquals(Long.MAX_VALUE, Money.parse("92233720368547758.07"));
+        assertEquals(Long.MIN_VALUE, Money.parse("-92233720368547758.08"));
+        assertUnparseable("92233720368547758.08");
+        assertUnparseable("-92233720368547758.09");
+        assertUnparseable("1e30");
+    }
+
+    @Test
+    public void toPlainString() {
+        assertEquals("12.50", Money.toPlainString(1250));
+        assertEquals("0.05", Money.toPlainString(5));
+        assertEquals("0.00", Money.toPlainString(0));
+        assertEquals("-12.50", Money.toPlainString(-1250));
+        assertEquals("-0.05", Money.toPlainString(-5));
+        assertEquals("92233720368547758.07", Money.toPlainString(Long.MAX_VALUE));
+        assertEquals("-92233720368547758.08", Money.toPlainString(Long.MIN_VALUE));
+    }
+
+    @Test
+    public void roundTrip() {
+        long[] amounts = {0, 1, 9, 10, 99, 100, 101, 1250, 123456789, Long.MAX_VALUE};
+        for (long amount : amounts) {
+            assertEquals(amount, Money.parse(Money.toPlainString(amount)));
+            assertEquals(-amount, Money.parse(Money.toPlainString(-amount)));
+        }
+        // Has no positive counterpart, so Math.abs() can't be used on it
+        assertEquals(Long.MIN_VALUE, Money.parse(Money.toPlainString(Long.MIN_VALUE)));
+    }
+
+    @Test
+    public void appendFewerDecimals() {
+        assertEquals("12", format(1249, 0));
+        assertEquals("13", format(1250, 0));
+        assertEquals("-13", format(-1250, 0));
+        assertEquals("0", format(-49, 0));
+        assertEquals("92233720368547758", format(Long.MAX_VALUE, 0));
+        assertEquals("-92233720368547758", format(Long.MIN_VALUE, 0));
+        assertEquals("-92233720368547758.1", format(Long.MIN_VALUE, 1));
+    }
+
+    @Test
+    public void divide() {
+        assertEquals(333, Money.divide(1000, 3));
+        assertEquals(500, Money.divide(1000, 2));
+        assertEquals(3, Money.divide(5, 2));
+        assertEquals(-3, Money.divide(-5, 2));
+        assertEquals(-2, Money.divide(-7, 3));
+        assertEquals(0, Money.divide(1000, 0));
+        assertEquals(Long.MAX_VALUE / 2 + 1, Money.divide(Long.MAX_VALUE, 2));
+        assertEquals(Long.MIN_VALUE, Money.divide(Long.MIN_VALUE, 1));
+        assertEquals(Long.MIN_VALUE / 2, Money.divide(Long.MIN_VALUE, 2));
+        assertEquals(-3074457345618258603L, Money.divide(Long.MIN_VALUE, 3));
+    }
+
+    @Test
+    public void displayDecimals() {
+        assertEquals(0, Money.displayDecimals("JPY"));
+        assertEquals(2, Money.displayDecimals("USD"));
+    }
+}
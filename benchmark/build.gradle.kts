@@ -0,0 +1,37 @@
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// The app's plain-Java classes, compiled for the host JVM so they can be measured without a
+// device. Anything touching Android or Room is benchmarked on-device by :microbenchmark.
+sourceSets {
+    main {
+        java {
+            srcDir("../app/src/main/java")
+            include(
+                "com/example/fintrack/AnalyticsSnapshot.java",
+                "com/example/fintrack/DayTotalsIndex.java",
+                "com/example/fintrack/Money.java",
+                "com/example/fintrack/ExpenseDates.java",
+                "com/example/fintrack/CsvReader.java",
+                "com/example/fintrack/DashboardSummary.java"
+            )
+        }
+    }
+}
+
+// ./gradlew :benchmark:jmh writes build/results/jmh/results.json
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+}
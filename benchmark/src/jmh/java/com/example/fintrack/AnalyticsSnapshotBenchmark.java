@@ -0,0 +1,82 @@
+package com.example.fintrack;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Dashboard-style aggregations over the columnar snapshot; above 100k rows they run in
+// parallel slices
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AnalyticsSnapshotBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private AnalyticsSnapshot snapshot;
+    // Grown by applyOneInsert, and started over from snapshot to keep memory bounded
+    private AnalyticsSnapshot appended;
+    private int nextId;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        AnalyticsSnapshot.Builder builder = new AnalyticsSnapshot.Builder(rows);
+        for (int i = 0; i < rows; i++) {
+            builder.put(i + 1, 18_993 + i % 1096, 1 + random.nextInt(50_000), 1 + random.nextInt(8));
+        }
+        snapshot = builder.build();
+        appended = snapshot;
+        nextId = rows + 1;
+    }
+
+    @Benchmark
+    public long total() {
+        return snapshot.getTotal();
+    }
+
+    // One calendar year out of the three
+    @Benchmark
+    public long totalBetween() {
+        return snapshot.getTotalBetween(19_358, 19_723);
+    }
+
+    @Benchmark
+    public long[] categoryTotals() {
+        return snapshot.getCategoryTotals();
+    }
+
+    @Benchmark
+    public long[] dayOfWeekTotals() {
+        return snapshot.getDayOfWeekTotals();
+    }
+
+    // An edit of one row: copy the columns, overwrite, publish
+    @Benchmark
+    public AnalyticsSnapshot applyOneChange() {
+        AnalyticsSnapshot.Builder builder = snapshot.toBuilder();
+        builder.put(rows / 2, 19_000, 1234, 3);
+        return builder.build();
+    }
+
+    // A new row: appended into the previous snapshot's spare capacity, copied only when full
+    @Benchmark
+    public AnalyticsSnapshot applyOneInsert() {
+        if (nextId > rows + 100_000) {
+            appended = snapshot;
+            nextId = rows + 1;
+        }
+        AnalyticsSnapshot.Builder builder = appended.toBuilder();
+        builder.put(nextId++, 19_000, 1234, 3);
+        appended = builder.build();
+        return appended;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.fintrack;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Parsing cost of a CSV import, without the database inserts
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CsvReaderBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private String document;
+
+    @Setup
+    public void setUp() {
+        document = SyntheticExpenses.csv(rows);
+    }
+
+    @Benchmark
+    public long readAll() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader(document));
+        long fields = 0;
+        List<String> record;
+        while ((record = reader.readRecord()) != null) {
+            fields += record.size();
+        }
+        return fields;
+    }
+}
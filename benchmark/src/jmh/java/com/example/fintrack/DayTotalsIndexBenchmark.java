@@ -0,0 +1,67 @@
+package com.example.fintrack;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Range totals from the Fenwick index should stay flat as rows grow, unlike
+// AnalyticsSnapshotBenchmark.totalBetween which scans every row
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DayTotalsIndexBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private AnalyticsSnapshot snapshot;
+    private DayTotalsIndex index;
+    private int step;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        AnalyticsSnapshot.Builder builder = new AnalyticsSnapshot.Builder(rows);
+        for (int i = 0; i < rows; i++) {
+            builder.put(i + 1, 18_993 + i % 1096, 1 + random.nextInt(50_000), 1 + random.nextInt(8));
+        }
+        snapshot = builder.build();
+        index = DayTotalsIndex.build(snapshot);
+    }
+
+    @Benchmark
+    public DayTotalsIndex build() {
+        return DayTotalsIndex.build(snapshot);
+    }
+
+    // The same calendar year AnalyticsSnapshotBenchmark.totalBetween sums
+    @Benchmark
+    public long totalBetween() {
+        return index.getTotalBetween(19_358, 19_723);
+    }
+
+    @Benchmark
+    public long rolling30Days() {
+        return index.getRollingTotal(20_088, 30);
+    }
+
+    @Benchmark
+    public long categoryTotalBetween() {
+        return index.getCategoryTotalBetween(3, 19_358, 19_723);
+    }
+
+    // An edit moving one expense between days, as ExpenseAnalytics applies it
+    @Benchmark
+    public void moveOneExpense() {
+        int day = 18_993 + (step++ & 1023);
+        index.add(day, 3, -1234);
+        index.add(day + 1, 3, 1234);
+    }
+}
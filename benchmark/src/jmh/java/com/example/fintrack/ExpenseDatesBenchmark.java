@@ -0,0 +1,58 @@
+package com.example.fintrack;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+// Date parsing used by the timestamp backfill, CSV import and the dashboard average
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ExpenseDatesBenchmark {
+    private static final int VALUES = 1024;
+
+    private final String[] dates = new String[VALUES];
+    private final String[] times = new String[VALUES];
+    private final Calendar calendar = Calendar.getInstance();
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < VALUES; i++) {
+            dates[i] = SyntheticExpenses.date(i);
+            times[i] = SyntheticExpenses.time(i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void toEpochDay(Blackhole blackhole) {
+        for (String date : dates) {
+            blackhole.consume(ExpenseDates.toEpochDay(date));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void toTimestampSharedCalendar(Blackhole blackhole) {
+        for (int i = 0; i < VALUES; i++) {
+            blackhole.consume(ExpenseDates.toTimestamp(dates[i], times[i], calendar));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void toTimestamp(Blackhole blackhole) {
+        for (int i = 0; i < VALUES; i++) {
+            blackhole.consume(ExpenseDates.toTimestamp(dates[i], times[i]));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.fintrack;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Amount parsing and formatting, run once per row on import, edit and every bound list row
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MoneyBenchmark {
+    private static final int VALUES = 1024;
+
+    private final long[] amounts = new long[VALUES];
+    private final String[] texts = new String[VALUES];
+    private final StringBuilder text = new StringBuilder(32);
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < VALUES; i++) {
+            amounts[i] = random.nextInt(5_000_000);
+            texts[i] = Money.toPlainString(amounts[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void parse(Blackhole blackhole) {
+        for (String value : texts) {
+            blackhole.consume(Money.parse(value));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void toPlainString(Blackhole blackhole) {
+        for (long amount : amounts) {
+            blackhole.consume(Money.toPlainString(amount));
+        }
+    }
+
+    // What ExpenseFormatter does for a JPY display, dropping both decimals
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void appendWithoutDecimals(Blackhole blackhole) {
+        for (long amount : amounts) {
+            text.setLength(0);
+            Money.append(text, amount, 0);
+            blackhole.consume(text.length());
+        }
+    }
+}
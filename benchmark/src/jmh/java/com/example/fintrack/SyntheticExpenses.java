@@ -0,0 +1,52 @@
+package com.example.fintrack;
+
+import java.util.Locale;
+import java.util.Random;
+
+// Deterministic rows shaped like real data, shared by the JVM benchmarks
+final class SyntheticExpenses {
+    private static final String[] TITLES = {
+            "Coffee", "Groceries", "Bus ticket", "Dinner, with friends", "Pharmacy",
+            "Electricity bill", "Cinema", "Book \"Refactoring\"", "Taxi", "Lunch"
+    };
+    private static final String[] CATEGORIES = {
+            "Food & Dining", "Transportation", "Shopping", "Entertainment",
+            "Healthcare", "Education", "Utilities", "Other"
+    };
+
+    private SyntheticExpenses() {
+    }
+
+    // Spread over roughly three years
+    static String date(int row) {
+        int day = row % 1096;
+        return ExpenseDates.format(2022 + day / 365, day % 365 / 31 % 12 + 1, day % 28 + 1);
+    }
+
+    static String time(int row) {
+        int minutes = row * 37 % (24 * 60);
+        return String.format(Locale.US, "%02d:%02d", minutes / 60, minutes % 60);
+    }
+
+    // The same header and quoting ExpenseExporter writes
+    static String csv(int rows) {
+        Random random = new Random(42);
+        StringBuilder csv = new StringBuilder(rows * 64);
+        csv.append("title,amount,date,time,category,notes\r\n");
+        for (int i = 0; i < rows; i++) {
+            String title = TITLES[random.nextInt(TITLES.length)];
+            if (title.indexOf(',') >= 0 || title.indexOf('"') >= 0) {
+                csv.append('"').append(title.replace("\"", "\"\"")).append('"');
+            } else {
+                csv.append(title);
+            }
+            csv.append(',').append(Money.toPlainString(random.nextInt(50_000)))
+                    .append(',').append(date(i))
+                    .append(',').append(time(i))
+                    .append(',').append(CATEGORIES[random.nextInt(CATEGORIES.length)])
+                    .append(',').append(i % 5 == 0 ? "receipt kept" : "")
+                    .append("\r\n");
+        }
+        return csv.toString();
+    }
+}
@@ -0,0 +1,77 @@
+plugins {
+    alias(libs.plugins.android.library)
+    alias(libs.plugins.androidx.benchmark)
+}
+
+// On-device data-layer benchmarks. An application module can't be depended on, so the app's
+// sources and resources are compiled into this library, the same way :benchmark compiles its
+// plain-Java classes for the host. The tests run from a non-debuggable release test APK, and
+// the runner's checks for debuggable builds and emulators are left on.
+android {
+    namespace = "com.example.fintrack"
+    compileSdk = 34
+    testBuildType = "release"
+
+    defaultConfig {
+        minSdk = 24
+
+        testInstrumentationRunner = "androidx.benchmark.junit4.AndroidBenchmarkRunner"
+        // Results are written as JSON next to the connected test output
+        testInstrumentationRunnerArguments["androidx.benchmark.output.enable"] = "true"
+
+        javaCompileOptions {
+            annotationProcessorOptions {
+                // The app module exports the schemas
+                arguments["room.exportSchema"] = "false"
+            }
+        }
+    }
+
+    sourceSets {
+        getByName("main") {
+            java.srcDir("../app/src/main/java")
+            res.srcDir("../app/src/main/res")
+        }
+    }
+
+    buildTypes {
+        release {
+            isDefault = true
+            isMinifyEnabled = false
+        }
+    }
+    compileOptions {
+        sourceCompatibility = JavaVersion.VERSION_11
+        targetCompatibility = JavaVersion.VERSION_11
+    }
+}
+
+dependencies {
+    implementation(libs.androidx.appcompat)
+    implementation(libs.androidx.core.ktx)
+    implementation(libs.androidx.constraintlayout)
+    implementation(libs.androidx.recyclerview)
+    implementation(libs.androidx.cardview)
+    implementation(libs.androidx.material)
+    implementation(libs.androidx.room.runtime)
+    implementation(libs.androidx.room.ktx)
+    annotationProcessor(libs.androidx.room.compiler)
+    implementation(libs.androidx.lifecycle.viewmodel)
+    implementation(libs.androidx.lifecycle.livedata)
+    implementation(libs.androidx.activity)
+    implementation(libs.androidx.fragment)
+    implementation("com.github.bumptech.glide:glide:4.16.0")
+    annotationProcessor("com.github.bumptech.glide:compiler:4.16.0")
+    androidTestImplementation(libs.androidx.junit)
+    androidTestImplementation(libs.androidx.benchmark.junit4)
+
+    // Same Kotlin dependency constraints as the app
+    constraints {
+        implementation("org.jetbrains.kotlin:kotlin-stdlib-jdk7:1.8.20") {
+            because("kotlin-stdlib-jdk7 is now a part of kotlin-stdlib")
+        }
+        implementation("org.jetbrains.kotlin:kotlin-stdlib-jdk8:1.8.20") {
+            because("kotlin-stdlib-jdk8 is now a part of kotlin-stdlib")
+        }
+    }
+}
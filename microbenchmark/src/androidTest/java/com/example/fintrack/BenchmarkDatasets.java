@@ -0,0 +1,71 @@
+package com.example.fintrack;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+// Synthetic databases for the benchmarks, one file per size. A database is only reseeded when
+// its row count is wrong, so repeated runs on a device skip the (slow) 1M-row seed.
+final class BenchmarkDatasets {
+    private static final int SEED_CHUNK_SIZE = 10_000;
+    private static final String[] TITLES = {
+            "Coffee", "Groceries", "Bus ticket", "Dinner with friends", "Pharmacy",
+            "Electricity bill", "Cinema", "Textbook", "Taxi", "Lunch"
+    };
+
+    private static final Map<Integer, ExpenseDatabase> databases = new HashMap<>();
+
+    private BenchmarkDatasets() {
+    }
+
+    static synchronized ExpenseDatabase open(Context context, int rows) {
+        ExpenseDatabase database = databases.get(rows);
+        if (database != null) {
+            return database;
+        }
+
+        String name = "benchmark_" + rows;
+        database = ExpenseDatabase.create(context, name, false);
+        if (database.expenseDao().getExpenseCount() != rows) {
+            database.close();
+            context.deleteDatabase(name);
+            database = ExpenseDatabase.create(context, name, false);
+            seed(database.expenseDao(), rows);
+        }
+        databases.put(rows, database);
+        return database;
+    }
+
+    // Ids 1..rows, so anything a benchmark inserts on top has id > rows
+    private static void seed(ExpenseDao expenseDao, int rows) {
+        Random random = new Random(42);
+        Calendar calendar = Calendar.getInstance();
+        for (int start = 0; start < rows; start += SEED_CHUNK_SIZE) {
+            expenseDao.insertExpenses(rows(random, calendar, start, Math.min(SEED_CHUNK_SIZE, rows - start)));
+        }
+    }
+
+    static List<Expense> rows(Random random, Calendar calendar, int start, int count) {
+        List<Expense> expenses = new ArrayList<>(count);
+        for (int i = start; i < start + count; i++) {
+            // About three years of history, every category, a few notes for the FTS index
+            calendar.clear();
+            calendar.set(2022, Calendar.JANUARY, 1);
+            calendar.add(Calendar.DAY_OF_YEAR, i % 1096);
+            String date = ExpenseDates.format(calendar.get(Calendar.YEAR),
+                    calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.DAY_OF_MONTH));
+            int minutes = random.nextInt(24 * 60);
+            String time = String.format(Locale.US, "%02d:%02d", minutes / 60, minutes % 60);
+            expenses.add(new Expense(TITLES[random.nextInt(TITLES.length)], 1 + random.nextInt(50_000),
+                    date, time, 1 + random.nextInt(Category.OTHER_ID),
+                    i % 5 == 0 ? "receipt kept" : "", ""));
+        }
+        return expenses;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.fintrack;
+
+import android.content.Context;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assume.assumeTrue;
+
+// Data-layer timings at 1k, 100k and 1M rows. Run with ./gradlew :microbenchmark:connectedCheck;
+// each test writes its results to the JSON file androidx.benchmark leaves in the
+// connected test output, which is what builds are compared on.
+@RunWith(Parameterized.class)
+public class ExpenseDaoBenchmark {
+    private static final int INSERT_BATCH_SIZE = 1000;
+    // A full 1M-row list doesn't fit the default test heap
+    private static final int MAX_FULL_LIST_ROWS = 100_000;
+
+    @Parameterized.Parameters(name = "rows={0}")
+    public static List<Object[]> sizes() {
+        return Arrays.asList(new Object[][]{{1_000}, {100_000}, {1_000_000}});
+    }
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final int rows;
+    private ExpenseDatabase database;
+    private ExpenseDao expenseDao;
+
+    public ExpenseDaoBenchmark(int rows) {
+        this.rows = rows;
+    }
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = BenchmarkDatasets.open(context, rows);
+        expenseDao = database.expenseDao();
+    }
+
+    @Test
+    public void getAllExpenses() {
+        assumeTrue(rows <= MAX_FULL_LIST_ROWS);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            expenseDao.getAllExpenses();
+        }
+    }
+
+    @Test
+    public void getExpensesByCategory() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            expenseDao.getExpensesByCategory(1);
+        }
+    }
+
+    @Test
+    public void getTotalExpenses() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            expenseDao.getTotalExpenses();
+        }
+    }
+
+    // What the dashboard header costs: rollup reads plus building the render model
+    @Test
+    public void dashboardModel() {
+        ExpenseFormatter formatter = ExpenseFormatter.getInstance(ApplicationProvider.getApplicationContext());
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            new DashboardAdapter.DashboardModel(expenseDao.getDashboardSummary("2023-06"), formatter);
+        }
+    }
+
+    // One batch insert, with the FTS and rollup triggers it fires. The rows are removed again
+    // outside the timed region so every iteration sees the same table size.
+    @Test
+    public void insertBatch() {
+        List<Expense> batch = BenchmarkDatasets.rows(new Random(7), Calendar.getInstance(), 0, INSERT_BATCH_SIZE);
+        SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            expenseDao.insertExpenses(batch);
+            state.pauseTiming();
+            db.execSQL("DELETE FROM expenses WHERE id > " + rows);
+            state.resumeTiming();
+        }
+    }
+}